@@ -1,12 +1,50 @@
 package org.siglo21;
 
 import org.siglo21.app.InterfazConsola;
+import org.siglo21.app.SistemaAerolinea;
+import org.siglo21.persistencia.CargadorRed;
+import org.siglo21.persistencia.ResultadoCarga;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 //TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
 // click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
 public class Main {
     public static void main(String[] args) {
-        InterfazConsola interfaz = new InterfazConsola();
+        InterfazConsola interfaz;
+        if (args.length >= 2 && args[0].equals("--snapshot")) {
+            // Estado persistente: java org.siglo21.Main --snapshot estado.snap
+            // Los cambios posteriores al snapshot se registran en estado.snap.wal
+            Path archivo = Path.of(args[1]);
+            Path archivoRegistro = Path.of(args[1] + ".wal");
+            SistemaAerolinea sistema;
+            long inicio = System.nanoTime();
+            try {
+                sistema = SistemaAerolinea.recuperar(archivo, archivoRegistro);
+            } catch (IOException e) {
+                System.out.println("No se pudo restaurar el estado: " + e.getMessage());
+                return;
+            }
+            System.out.printf("Estado recuperado de %s en %.3f s%n", archivo, (System.nanoTime() - inicio) / 1e9);
+            interfaz = new InterfazConsola(sistema, archivo);
+        } else if (args.length >= 2) {
+            // Red propia: java org.siglo21.Main ciudades.csv rutas.csv
+            ResultadoCarga carga;
+            try {
+                carga = CargadorRed.cargar(Path.of(args[0]), Path.of(args[1]));
+            } catch (IOException e) {
+                System.out.println("No se pudo cargar la red: " + e.getMessage());
+                return;
+            }
+            System.out.println(carga);
+            for (String error : carga.getErrores()) {
+                System.out.println("  " + error);
+            }
+            interfaz = new InterfazConsola(new SistemaAerolinea(carga.getGrafo()));
+        } else {
+            interfaz = new InterfazConsola();
+        }
         interfaz.ejecutar();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package org.siglo21.app;
+
+import org.siglo21.grafo.Ciudad;
+import org.siglo21.grafo.Itinerario;
+
+import java.util.List;
+
+/**
+ * Cotización de un pasaje: el itinerario mínimo y su precio final con recargos
+ */
+public final class Cotizacion {
+    private final Itinerario itinerario;
+    private final double precioFinal;
+
+    public Cotizacion(Itinerario itinerario, double precioFinal) {
+        this.itinerario = itinerario;
+        this.precioFinal = precioFinal;
+    }
+
+    public Itinerario getItinerario() {
+        return itinerario;
+    }
+
+    public double getPrecioFinal() {
+        return precioFinal;
+    }
+
+    /**
+     * Ciudad de destino del itinerario cotizado
+     */
+    public Ciudad getDestino() {
+        List<Ciudad> ciudades = itinerario.getCiudades();
+        return ciudades.get(ciudades.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.1fh, $%.2f (%d tramo%s)", getDestino(), itinerario.getTiempoTotal(),
+                precioFinal, itinerario.getAristas().size(), itinerario.esDirecto() ? "" : "s");
+    }
+}
@@ -1,23 +1,42 @@
 package org.siglo21.app;
 
+import org.siglo21.avion.ConfiguracionCabina;
 import org.siglo21.grafo.Arista;
 import org.siglo21.grafo.Ciudad;
 import org.siglo21.grafo.Itinerario;
 import org.siglo21.vuelo.Reserva;
 import org.siglo21.vuelo.Vuelo;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
  * Interfaz de consola para el sistema de aerolínea
  */
 public class InterfazConsola {
+    private static final int MAX_SUGERENCIAS = 10;
+    private static final int RESERVAS_POR_PAGINA = 20;
+
     private SistemaAerolinea sistema;
     private Scanner scanner;
+    private Path archivoSnapshot; // null: no se guarda el estado al salir
 
     public InterfazConsola() {
-        this.sistema = new SistemaAerolinea();
+        this(new SistemaAerolinea());
+    }
+
+    public InterfazConsola(SistemaAerolinea sistema) {
+        this(sistema, null);
+    }
+
+    /**
+     * Consola que guarda el estado en el snapshot indicado al salir
+     */
+    public InterfazConsola(SistemaAerolinea sistema, Path archivoSnapshot) {
+        this.sistema = sistema;
         this.scanner = new Scanner(System.in);
+        this.archivoSnapshot = archivoSnapshot;
     }
 
     public void ejecutar() {
@@ -47,6 +66,7 @@ public class InterfazConsola {
                     recorridosGrafo();
                     break;
                 case 7:
+                    guardarEstado();
                     System.out.println("¡Hasta luego!");
                     return;
                 default:
@@ -58,6 +78,19 @@ public class InterfazConsola {
         }
     }
 
+    private void guardarEstado() {
+        if (archivoSnapshot == null) {
+            return;
+        }
+        try {
+            sistema.guardarSnapshot(archivoSnapshot);
+            sistema.cerrar();
+            System.out.println("Estado guardado en " + archivoSnapshot);
+        } catch (IOException e) {
+            System.out.println("No se pudo guardar el estado: " + e.getMessage());
+        }
+    }
+
     private void mostrarMenu() {
         System.out.println("\n--- MENÚ PRINCIPAL ---");
         System.out.println("1. Alta de vuelo");
@@ -81,7 +114,7 @@ public class InterfazConsola {
             return;
 
         // Intentar obtener la ruta mínima (permite múltiples tramos)
-        Itinerario itinerario = sistema.getGrafo().dijkstra(origen, destino);
+        Itinerario itinerario = sistema.buscarRuta(origen, destino);
         if (itinerario == null) {
             System.out.println("No existe ruta entre " + origen + " y " + destino);
             return;
@@ -133,7 +166,7 @@ public class InterfazConsola {
         if (destino == null)
             return;
 
-        Itinerario itinerario = sistema.getGrafo().dijkstra(origen, destino);
+        Itinerario itinerario = sistema.buscarRuta(origen, destino);
 
         if (itinerario == null) {
             System.out.println("No existe ruta entre " + origen + " y " + destino);
@@ -155,6 +188,32 @@ public class InterfazConsola {
             System.out.println("  " + ciudades.get(i) + " → " + ciudades.get(i + 1) +
                     " | Tiempo: " + arista.getTiempo() + "h | Precio: $" + arista.getPrecioBase());
         }
+
+        // Rutas más lentas pero más baratas que ninguna otra mejora en ambos criterios;
+        // la búsqueda de Pareto es mucho más cara que la ruta mínima, así que solo se hace si se pide
+        String respuesta = leerString("\n¿Ver opciones más lentas pero más baratas? (s/n): ");
+        if (!respuesta.equalsIgnoreCase("s")) {
+            return;
+        }
+        List<Itinerario> frente = sistema.getGrafo().rutasPareto(origen, destino);
+        if (frente.size() <= 1) {
+            System.out.println("La ruta mínima es también la más barata.");
+        } else {
+            System.out.println("\n--- OPCIONES TIEMPO / PRECIO ---");
+            for (Itinerario opcion : frente) {
+                System.out.println("  " + String.format("%.2f", opcion.getTiempoTotal()) + " h | $" +
+                        String.format("%.2f", opcion.getPrecioBaseTotal()) + " | " +
+                        String.join(" → ", nombres(opcion.getCiudades())));
+            }
+        }
+    }
+
+    private List<String> nombres(List<Ciudad> ciudades) {
+        List<String> nombres = new ArrayList<>();
+        for (Ciudad ciudad : ciudades) {
+            nombres.add(ciudad.getNombre());
+        }
+        return nombres;
     }
 
     private void reservarPasaje() {
@@ -196,7 +255,7 @@ public class InterfazConsola {
             if (vuelo != null) {
                 System.out.println("  Vuelo " + vuelo.getCodigoVuelo() + ":");
                 System.out.println("    Ocupación: " + String.format("%.2f", vuelo.getPorcentajeOcupacion()) + "%");
-                if (vuelo.alcanza95Porciento()) {
+                if (vuelo.alcanza95Porciento(sistema.isRetencionesEnRecargo())) {
                     System.out.println("    ✓ Recargo +10% por ocupación ≥95%");
                 }
             }
@@ -224,19 +283,31 @@ public class InterfazConsola {
                 + vuelo.getAvion().getTotalAsientos());
 
         System.out.println("\nOcupación por sección:");
-        Map<String, Integer> ocupacionSecciones = vuelo.getAvion().getOcupacionPorSeccion();
-        for (Map.Entry<String, Integer> entry : ocupacionSecciones.entrySet()) {
-            System.out.println("  Sección " + entry.getKey() + ": " + entry.getValue() + " / 10");
+        ConfiguracionCabina cabina = vuelo.getAvion().getConfiguracion();
+        for (int s = 0; s < cabina.getCantidadSecciones(); s++) {
+            System.out.println("  Sección " + cabina.getNombre(s) + ": " + vuelo.getAvion().getOcupacionSeccion(s)
+                    + " / " + cabina.getCapacidad(s));
         }
 
         System.out.println("\n--- RESERVAS (InOrder del AVL) ---");
-        List<Reserva> reservas = vuelo.getReservas().inOrder();
-        if (reservas.isEmpty()) {
+        int total = vuelo.getReservas().tamano();
+        if (total == 0) {
             System.out.println("No hay reservas.");
-        } else {
-            for (Reserva reserva : reservas) {
+            return;
+        }
+        // Cada página se pide por posición al árbol, sin armar la lista completa
+        for (int desde = 0; desde < total; desde += RESERVAS_POR_PAGINA) {
+            for (Reserva reserva : vuelo.getReservas().pagina(desde, RESERVAS_POR_PAGINA)) {
                 System.out.println("  " + reserva);
             }
+            int mostradas = Math.min(desde + RESERVAS_POR_PAGINA, total);
+            if (mostradas < total) {
+                String respuesta = leerString("  (" + mostradas + " de " + total
+                        + ") Enter para ver más, 'q' para terminar: ");
+                if (respuesta.equalsIgnoreCase("q")) {
+                    break;
+                }
+            }
         }
     }
 
@@ -258,7 +329,8 @@ public class InterfazConsola {
         System.out.println("\n--- RECORRIDOS DEL GRAFO ---");
         System.out.println("1. BFS desde una ciudad");
         System.out.println("2. DFS desde una ciudad");
-        System.out.println("3. Detectar componentes conexas");
+        System.out.println("3. Detectar componentes fuertemente conexas");
+        System.out.println("4. Verificar si una ciudad es alcanzable desde otra");
 
         int opcion = leerEntero("Seleccione: ");
 
@@ -279,11 +351,27 @@ public class InterfazConsola {
                 break;
             case 3:
                 List<List<Ciudad>> componentes = sistema.getGrafo().detectarComponentes();
-                System.out.println("Componentes conexas: " + componentes.size());
+                System.out.println("Componentes fuertemente conexas: " + componentes.size());
                 for (int i = 0; i < componentes.size(); i++) {
                     System.out.println("  Componente " + (i + 1) + ": " + componentes.get(i));
                 }
                 break;
+            case 4:
+                Ciudad desde = leerCiudad("Ciudad origen: ");
+                if (desde == null)
+                    break;
+                Ciudad hasta = leerCiudad("Ciudad destino: ");
+                if (hasta == null)
+                    break;
+                if (sistema.getGrafo().esAlcanzable(desde, hasta)) {
+                    System.out.println(hasta + " es alcanzable desde " + desde);
+                    if (sistema.getGrafo().mismaComponente(desde, hasta)) {
+                        System.out.println("Ambas ciudades están en la misma componente (ida y vuelta posibles)");
+                    }
+                } else {
+                    System.out.println(hasta + " no es alcanzable desde " + desde);
+                }
+                break;
             default:
                 System.out.println("Opción inválida.");
         }
@@ -293,16 +381,34 @@ public class InterfazConsola {
         System.out.print(mensaje);
         String nombre = scanner.nextLine().trim();
         Ciudad ciudad = sistema.getGrafo().getCiudadPorNombre(nombre);
+        if (ciudad != null) {
+            return ciudad;
+        }
 
-        if (ciudad == null) {
+        // Tomar el texto como prefijo: si una sola ciudad coincide se usa esa
+        List<Ciudad> sugerencias = sistema.getGrafo().sugerirCiudades(nombre, MAX_SUGERENCIAS);
+        if (sugerencias.size() == 1) {
+            System.out.println("  → " + descripcion(sugerencias.get(0)));
+            return sugerencias.get(0);
+        }
+
+        if (!sugerencias.isEmpty()) {
+            System.out.println("Ciudad no encontrada. ¿Quiso decir?");
+            for (Ciudad c : sugerencias) {
+                System.out.println("  - " + descripcion(c));
+            }
+        } else {
             System.out.println("Ciudad no encontrada. Ciudades disponibles:");
             for (Ciudad c : sistema.getGrafo().getCiudades()) {
-                System.out.println("  - " + c.getNombre());
+                System.out.println("  - " + descripcion(c));
             }
-            return null;
         }
+        return null;
+    }
 
-        return ciudad;
+    private String descripcion(Ciudad ciudad) {
+        return ciudad.getCodigo() == null ? ciudad.getNombre()
+                : ciudad.getNombre() + " (" + ciudad.getCodigo() + ")";
     }
 
     private int leerEntero(String mensaje) {
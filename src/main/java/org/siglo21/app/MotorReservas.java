@@ -0,0 +1,457 @@
+package org.siglo21.app;
+
+import org.siglo21.avion.Asiento;
+import org.siglo21.estructuras.ArbolReservas;
+import org.siglo21.persistencia.RegistroCambios;
+import org.siglo21.vuelo.InventarioTramos;
+import org.siglo21.vuelo.Reserva;
+import org.siglo21.vuelo.Vuelo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reservas concurrentes: asigna los asientos de todos los tramos de un
+ * itinerario o de ninguno, y cancela reservas, desde varios hilos a la vez
+ * <p>
+ * Cada vuelo cae en una franja de cerrojos según su código. Una reserva toma
+ * las franjas de todos sus tramos en orden creciente (así dos reservas nunca
+ * se esperan en círculo) y las suelta al terminar; reservas en vuelos de
+ * franjas distintas no se bloquean entre sí. Todo cambio de un vuelo (asientos,
+ * árbol de reservas y registro de cambios) ocurre con su franja tomada, por
+ * eso el registro guarda los cambios de cada vuelo en el mismo orden en que
+ * se aplicaron.
+ * <p>
+ * El índice global por número está partido en árboles que se sincronizan por
+ * separado; la franja del vuelo siempre se toma antes que la del índice.
+ * <p>
+ * Las retenciones toman sus asientos igual que una reserva; confirmarlas o
+ * liberarlas también se hace con las franjas de sus vuelos tomadas.
+ * <p>
+ * Después de cambiar la ocupación de un vuelo (todavía con su franja tomada)
+ * lo reubica en el inventario de su tramo.
+ */
+final class MotorReservas {
+    private static final int FRANJAS_VUELOS = 256;  // potencias de 2
+    private static final int FRANJAS_INDICE = 16;
+
+    private final AtomicInteger contadorReservas = new AtomicInteger(1); // propio de cada sistema
+
+    private final Map<String, Vuelo> vuelos; // Código de vuelo -> Vuelo (compartido con el sistema)
+    private final InventarioTramos inventario;
+    private final ReentrantLock[] cerrojos = new ReentrantLock[FRANJAS_VUELOS];
+    private final ArbolReservas[] reservasPorNumero = new ArbolReservas[FRANJAS_INDICE]; // número & (FRANJAS_INDICE - 1)
+    private final Map<String, List<Reserva>> tramosSiguientes = new ConcurrentHashMap<>(); // Código de itinerario -> reservas del 2.º tramo en adelante
+    private volatile boolean retencionesEnRecargo = true;
+
+    MotorReservas(Map<String, Vuelo> vuelos, InventarioTramos inventario) {
+        this.vuelos = vuelos;
+        this.inventario = inventario;
+        for (int i = 0; i < FRANJAS_VUELOS; i++) {
+            cerrojos[i] = new ReentrantLock();
+        }
+        for (int i = 0; i < FRANJAS_INDICE; i++) {
+            reservasPorNumero[i] = new ArbolReservas();
+        }
+    }
+
+    /**
+     * Número que usará la próxima reserva de este sistema
+     */
+    int getProximaReserva() {
+        return contadorReservas.get();
+    }
+
+    /**
+     * Hace que los números siguientes no repitan uno ya usado
+     */
+    void avanzarContador(long usado) {
+        contadorReservas.accumulateAndGet((int) Math.min(usado + 1, Integer.MAX_VALUE), Math::max);
+    }
+
+    /**
+     * Si los asientos retenidos cuentan para el recargo del 95% de ocupación
+     */
+    boolean isRetencionesEnRecargo() {
+        return retencionesEnRecargo;
+    }
+
+    void setRetencionesEnRecargo(boolean retencionesEnRecargo) {
+        this.retencionesEnRecargo = retencionesEnRecargo;
+    }
+
+    private static int franja(Vuelo vuelo) {
+        int h = vuelo.getCodigoVuelo().hashCode();
+        return (h ^ (h >>> 16)) & (FRANJAS_VUELOS - 1);
+    }
+
+    private ArbolReservas parteIndice(long numero) {
+        return reservasPorNumero[(int) numero & (FRANJAS_INDICE - 1)];
+    }
+
+    /**
+     * Franjas de los vuelos, sin repetir y en orden creciente
+     */
+    private static int[] franjasOrdenadas(List<Vuelo> tramos) {
+        int[] franjas = new int[tramos.size()];
+        for (int i = 0; i < franjas.length; i++) {
+            franjas[i] = franja(tramos.get(i));
+        }
+        Arrays.sort(franjas);
+        int distintas = 0;
+        for (int i = 0; i < franjas.length; i++) {
+            if (i == 0 || franjas[i] != franjas[i - 1]) {
+                franjas[distintas++] = franjas[i];
+            }
+        }
+        return Arrays.copyOf(franjas, distintas);
+    }
+
+    private void bloquear(int[] franjas) {
+        for (int f : franjas) {
+            cerrojos[f].lock();
+        }
+    }
+
+    private void desbloquear(int[] franjas) {
+        for (int i = franjas.length - 1; i >= 0; i--) {
+            cerrojos[franjas[i]].unlock();
+        }
+    }
+
+    /**
+     * Reubica los vuelos en el inventario después de cambiar su ocupación
+     */
+    private void reubicar(List<Vuelo> tramos) {
+        for (Vuelo vuelo : tramos) {
+            inventario.actualizar(vuelo);
+        }
+    }
+
+    /**
+     * Asigna un asiento en cada vuelo y crea las reservas (con los recargos
+     * por ocupación y por itinerario directo); si algún vuelo está lleno no
+     * reserva nada y retorna null
+     */
+    List<Reserva> reservar(List<Vuelo> tramos, RegistroCambios registro) {
+        int[] franjas = franjasOrdenadas(tramos);
+        bloquear(franjas);
+        try {
+            double[] precios = new double[tramos.size()];
+            Asiento[] asientos = tomarAsientos(tramos, precios, false);
+            if (asientos == null) {
+                return null;
+            }
+            String[] etiquetas = new String[asientos.length];
+            for (int i = 0; i < asientos.length; i++) {
+                etiquetas[i] = asientos[i].toString();
+            }
+            reubicar(tramos);
+            return publicar(tramos, etiquetas, precios, registro);
+        } finally {
+            desbloquear(franjas);
+        }
+    }
+
+    /**
+     * Retiene un asiento en cada vuelo, con los precios que tendría la
+     * reserva; si algún vuelo está lleno no retiene nada y retorna null
+     */
+    Retencion retener(List<Vuelo> tramos, String codigo, long vencimientoMillis) {
+        int[] franjas = franjasOrdenadas(tramos);
+        bloquear(franjas);
+        try {
+            double[] precios = new double[tramos.size()];
+            Asiento[] asientos = tomarAsientos(tramos, precios, true);
+            if (asientos == null) {
+                return null;
+            }
+            String[] etiquetas = new String[asientos.length];
+            for (int i = 0; i < asientos.length; i++) {
+                etiquetas[i] = asientos[i].toString();
+            }
+            reubicar(tramos);
+            return new Retencion(codigo, new ArrayList<>(tramos), etiquetas, precios, vencimientoMillis);
+        } finally {
+            desbloquear(franjas);
+        }
+    }
+
+    /**
+     * Confirma una retención pendiente: sus asientos quedan vendidos y se
+     * crean las reservas con los precios retenidos
+     * Retorna null si la retención ya no estaba pendiente
+     */
+    List<Reserva> confirmar(Retencion retencion, RegistroCambios registro) {
+        List<Vuelo> tramos = retencion.getTramos();
+        int[] franjas = franjasOrdenadas(tramos);
+        bloquear(franjas);
+        try {
+            if (retencion.getEstado() != Retencion.Estado.PENDIENTE) {
+                return null;
+            }
+            String[] etiquetas = new String[tramos.size()];
+            double[] precios = new double[tramos.size()];
+            for (int i = 0; i < etiquetas.length; i++) {
+                etiquetas[i] = retencion.getAsiento(i);
+                precios[i] = retencion.getPrecio(i);
+                tramos.get(i).getAvion().confirmarAsiento(etiquetas[i]);
+            }
+            retencion.setEstado(Retencion.Estado.CONFIRMADA);
+            reubicar(tramos); // el precio con recargo puede cambiar si las retenciones no cuentan
+            return publicar(tramos, etiquetas, precios, registro);
+        } finally {
+            desbloquear(franjas);
+        }
+    }
+
+    /**
+     * Libera los asientos de una retención pendiente y la deja en el estado
+     * indicado (LIBERADA o VENCIDA); false si ya no estaba pendiente
+     */
+    boolean soltar(Retencion retencion, Retencion.Estado estado) {
+        List<Vuelo> tramos = retencion.getTramos();
+        int[] franjas = franjasOrdenadas(tramos);
+        bloquear(franjas);
+        try {
+            if (retencion.getEstado() != Retencion.Estado.PENDIENTE) {
+                return false;
+            }
+            for (int i = 0; i < tramos.size(); i++) {
+                tramos.get(i).getAvion().liberarRetencion(retencion.getAsiento(i));
+            }
+            retencion.setEstado(estado);
+            reubicar(tramos);
+            return true;
+        } finally {
+            desbloquear(franjas);
+        }
+    }
+
+    /**
+     * Toma (o retiene) un asiento en cada vuelo y calcula el precio de cada
+     * tramo; si algún vuelo está lleno devuelve los ya tomados y retorna null
+     * Se llama con las franjas de los vuelos tomadas
+     */
+    private Asiento[] tomarAsientos(List<Vuelo> tramos, double[] precios, boolean retener) {
+        Asiento[] asientos = new Asiento[tramos.size()];
+        for (int i = 0; i < asientos.length; i++) {
+            Vuelo vuelo = tramos.get(i);
+            // Verificar ocupación ANTES de asignar para calcular recargo
+            boolean alcanza95Antes = vuelo.alcanza95Porciento(retencionesEnRecargo);
+            asientos[i] = retener ? vuelo.getAvion().retenerAsiento() : vuelo.getAvion().asignarAsiento();
+            if (asientos[i] == null) {
+                // Vuelo lleno: devolver los asientos ya tomados
+                for (int j = 0; j < i; j++) {
+                    if (retener) {
+                        tramos.get(j).getAvion().liberarRetencion(asientos[j].toString());
+                    } else {
+                        tramos.get(j).getAvion().liberarAsiento(asientos[j].toString());
+                    }
+                }
+                return null;
+            }
+            precios[i] = alcanza95Antes ? vuelo.getPrecioBase() * 1.10 : vuelo.getPrecioBase();
+        }
+        // +20% si el itinerario es directo (solo un tramo)
+        if (precios.length == 1) {
+            precios[0] *= 1.20;
+        }
+        return asientos;
+    }
+
+    /**
+     * Crea las reservas de asientos ya vendidos, las registra y las agrega a
+     * los árboles de sus vuelos y a los índices
+     * Se llama con las franjas de los vuelos tomadas
+     */
+    private List<Reserva> publicar(List<Vuelo> tramos, String[] asientos, double[] precios,
+                                   RegistroCambios registro) {
+        List<Reserva> reservas = new ArrayList<>(asientos.length);
+        for (int i = 0; i < asientos.length; i++) {
+            Vuelo vuelo = tramos.get(i);
+            String codigoReserva = Reserva.codigoDeNumero(contadorReservas.getAndIncrement());
+            // El itinerario se identifica con el código de su primer tramo
+            String codigoItinerario = i == 0 ? codigoReserva : reservas.get(0).getCodigoReserva();
+            reservas.add(new Reserva(codigoReserva, codigoItinerario, vuelo.getCodigoVuelo(),
+                    asientos[i], vuelo.getOrigen(), vuelo.getDestino(), precios[i]));
+        }
+
+        // Registrar antes de publicarlas: nadie puede cancelar una reserva
+        // que todavía no está en el registro
+        if (registro != null) {
+            for (Reserva reserva : reservas) {
+                registro.reservaCreada(reserva);
+            }
+        }
+        for (int i = 0; i < asientos.length; i++) {
+            Reserva reserva = reservas.get(i);
+            tramos.get(i).getReservas().insertar(reserva.getNumero(), reserva);
+            indexarTramo(reserva);
+        }
+        for (Reserva reserva : reservas) {
+            indexar(reserva);
+        }
+        return reservas;
+    }
+
+    /**
+     * Agrega una reserva ya hecha (al reproducir el registro) ocupando su
+     * asiento; false si el asiento ya estaba ocupado
+     */
+    boolean agregar(Vuelo vuelo, Reserva reserva) {
+        ReentrantLock cerrojo = cerrojos[franja(vuelo)];
+        cerrojo.lock();
+        try {
+            if (!vuelo.getAvion().ocuparAsiento(reserva.getAsiento())) {
+                return false;
+            }
+            vuelo.getReservas().insertar(reserva.getNumero(), reserva);
+            indexarTramo(reserva);
+            indexar(reserva);
+            inventario.actualizar(vuelo);
+        } finally {
+            cerrojo.unlock();
+        }
+        avanzarContador(reserva.getNumero());
+        return true;
+    }
+
+    /**
+     * Arma el índice global con las reservas de un snapshot, ya ordenadas por
+     * número (que es también el orden en que se reservaron los tramos de cada
+     * itinerario); los asientos y los árboles de los vuelos ya vienen cargados
+     */
+    void cargar(Reserva[] ordenadas, int cantidad) {
+        List<List<Reserva>> partes = new ArrayList<>(FRANJAS_INDICE);
+        for (int i = 0; i < FRANJAS_INDICE; i++) {
+            partes.add(new ArrayList<>(cantidad / FRANJAS_INDICE + 1));
+        }
+        for (int i = 0; i < cantidad; i++) {
+            partes.get((int) ordenadas[i].getNumero() & (FRANJAS_INDICE - 1)).add(ordenadas[i]);
+            indexarTramo(ordenadas[i]);
+        }
+        for (int i = 0; i < FRANJAS_INDICE; i++) {
+            List<Reserva> parte = partes.get(i);
+            synchronized (reservasPorNumero[i]) {
+                reservasPorNumero[i].insertarOrdenadas(parte.iterator(), parte.size());
+            }
+        }
+        if (cantidad > 0) {
+            avanzarContador(ordenadas[cantidad - 1].getNumero());
+        }
+    }
+
+    /**
+     * Libera el asiento de una reserva y la quita del árbol de su vuelo y del
+     * índice global; registra la cancelación si hay registro
+     * Retorna la reserva cancelada, o null si no existe (o ya se canceló)
+     */
+    Reserva cancelar(String codigoReserva, RegistroCambios registro) {
+        long numero = Reserva.numeroDeCodigo(codigoReserva);
+        Reserva reserva = numero < 0 ? null : buscar(numero);
+        if (reserva == null) {
+            return null;
+        }
+        Vuelo vuelo = vuelos.get(reserva.getCodigoVuelo());
+        ReentrantLock cerrojo = cerrojos[franja(vuelo)];
+        cerrojo.lock();
+        try {
+            ArbolReservas parte = parteIndice(numero);
+            synchronized (parte) {
+                if (parte.eliminar(numero) == null) {
+                    return null; // la canceló otro hilo mientras esperábamos
+                }
+            }
+            // Liberar asiento
+            vuelo.getAvion().liberarAsiento(reserva.getAsiento());
+            // Eliminar del árbol AVL
+            vuelo.getReservas().eliminar(numero);
+            inventario.actualizar(vuelo);
+
+            String codigoItinerario = reserva.getCodigoItinerario();
+            if (!codigoItinerario.equals(reserva.getCodigoReserva())) {
+                List<Reserva> siguientes = tramosSiguientes.get(codigoItinerario);
+                siguientes.remove(reserva);
+                if (siguientes.isEmpty()) {
+                    tramosSiguientes.remove(codigoItinerario, siguientes);
+                }
+            }
+            if (registro != null) {
+                registro.cancelacion(reserva.getCodigoReserva());
+            }
+            return reserva;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Reserva vigente con ese número, o null
+     */
+    Reserva buscar(long numero) {
+        ArbolReservas parte = parteIndice(numero);
+        synchronized (parte) {
+            return parte.buscar(numero);
+        }
+    }
+
+    /**
+     * Tramos vigentes del itinerario al que pertenece la reserva, en el orden
+     * en que se reservaron (vacío si la reserva no existe)
+     */
+    List<Reserva> tramosDe(String codigoReserva) {
+        long numero = Reserva.numeroDeCodigo(codigoReserva);
+        Reserva reserva = numero < 0 ? null : buscar(numero);
+        List<Reserva> tramos = new ArrayList<>();
+        if (reserva == null) {
+            return tramos;
+        }
+        String codigoItinerario = reserva.getCodigoItinerario();
+        Reserva primera = buscar(Reserva.numeroDeCodigo(codigoItinerario));
+        if (primera != null) {
+            tramos.add(primera);
+        }
+        List<Reserva> siguientes = tramosSiguientes.get(codigoItinerario);
+        if (siguientes != null) {
+            tramos.addAll(siguientes);
+        }
+        return tramos;
+    }
+
+    /**
+     * Toma todas las franjas, en orden: mientras tanto ninguna reserva ni
+     * cancelación está a mitad de camino (por ejemplo, para guardar un snapshot)
+     */
+    void bloquearTodo() {
+        for (ReentrantLock cerrojo : cerrojos) {
+            cerrojo.lock();
+        }
+    }
+
+    void desbloquearTodo() {
+        for (int i = cerrojos.length - 1; i >= 0; i--) {
+            cerrojos[i].unlock();
+        }
+    }
+
+    private void indexar(Reserva reserva) {
+        ArbolReservas parte = parteIndice(reserva.getNumero());
+        synchronized (parte) {
+            parte.insertar(reserva.getNumero(), reserva);
+        }
+    }
+
+    /**
+     * Agrega la reserva al índice por itinerario si no es su primer tramo
+     */
+    private void indexarTramo(Reserva reserva) {
+        if (!reserva.getCodigoItinerario().equals(reserva.getCodigoReserva())) {
+            tramosSiguientes.computeIfAbsent(reserva.getCodigoItinerario(), k -> new CopyOnWriteArrayList<>())
+                    .add(reserva);
+        }
+    }
+}
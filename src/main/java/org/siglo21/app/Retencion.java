@@ -0,0 +1,109 @@
+package org.siglo21.app;
+
+import org.siglo21.estructuras.RuedaTemporizadores;
+import org.siglo21.vuelo.Vuelo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Asientos retenidos en todos los tramos de un itinerario mientras se paga
+ * Los precios quedan fijos al retener; confirmar la retención crea las
+ * reservas con esos precios. Si vence antes, los asientos se liberan.
+ */
+public final class Retencion {
+
+    public enum Estado { PENDIENTE, CONFIRMADA, LIBERADA, VENCIDA }
+
+    private final String codigo;
+    private final List<Vuelo> tramos;
+    private final String[] asientos;
+    private final double[] precios;
+    private final long vencimientoMillis; // hora del sistema (System.currentTimeMillis)
+    private volatile Estado estado = Estado.PENDIENTE; // cambia con las franjas de sus vuelos tomadas
+    private RuedaTemporizadores.Temporizador<Retencion> temporizador; // solo con la rueda sincronizada
+    private long vencimientoTick; // tick de la rueda en que vence; se fija antes de publicarla
+
+    Retencion(String codigo, List<Vuelo> tramos, String[] asientos, double[] precios, long vencimientoMillis) {
+        this.codigo = codigo;
+        this.tramos = Collections.unmodifiableList(tramos);
+        this.asientos = asientos;
+        this.precios = precios;
+        this.vencimientoMillis = vencimientoMillis;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public List<Vuelo> getTramos() {
+        return tramos;
+    }
+
+    /**
+     * Asientos retenidos, uno por tramo
+     */
+    public List<String> getAsientos() {
+        return Collections.unmodifiableList(Arrays.asList(asientos));
+    }
+
+    String getAsiento(int tramo) {
+        return asientos[tramo];
+    }
+
+    double getPrecio(int tramo) {
+        return precios[tramo];
+    }
+
+    public double getPrecioTotal() {
+        double total = 0;
+        for (double precio : precios) {
+            total += precio;
+        }
+        return total;
+    }
+
+    public long getVencimientoMillis() {
+        return vencimientoMillis;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    void setEstado(Estado estado) {
+        this.estado = estado;
+    }
+
+    long getVencimientoTick() {
+        return vencimientoTick;
+    }
+
+    void setVencimientoTick(long vencimientoTick) {
+        this.vencimientoTick = vencimientoTick;
+    }
+
+    /**
+     * Programa el vencimiento en la rueda; quien llama la tiene sincronizada
+     */
+    void programarEn(RuedaTemporizadores<Retencion> rueda) {
+        temporizador = rueda.programar(this, vencimientoTick);
+    }
+
+    /**
+     * Quita el vencimiento de la rueda si estaba programado; quien llama la
+     * tiene sincronizada
+     */
+    void cancelarEn(RuedaTemporizadores<Retencion> rueda) {
+        if (temporizador != null) {
+            rueda.cancelar(temporizador);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d tramo%s, $%.2f (%s)", codigo, tramos.size(), tramos.size() == 1 ? "" : "s",
+                getPrecioTotal(), estado);
+    }
+}
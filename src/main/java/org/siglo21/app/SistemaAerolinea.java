@@ -1,43 +1,105 @@
 package org.siglo21.app;
 
-import org.siglo21.avion.Asiento;
+import org.siglo21.avion.ConfiguracionCabina;
+import org.siglo21.estructuras.RuedaTemporizadores;
+import org.siglo21.grafo.ArbolRutas;
 import org.siglo21.grafo.Arista;
+import org.siglo21.grafo.CacheRutas;
 import org.siglo21.grafo.Ciudad;
 import org.siglo21.grafo.Grafo;
 import org.siglo21.grafo.Itinerario;
+import org.siglo21.persistencia.EstadoSnapshot;
+import org.siglo21.persistencia.EventoRegistro;
+import org.siglo21.persistencia.RegistroCambios;
+import org.siglo21.persistencia.SnapshotSistema;
+import org.siglo21.vuelo.InventarioTramos;
 import org.siglo21.vuelo.Reserva;
+import org.siglo21.vuelo.TablaConexiones;
 import org.siglo21.vuelo.Vuelo;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 /**
  * Sistema principal de gestión de la aerolínea
+ * <p>
+ * Las reservas y cancelaciones pueden llegar desde varios hilos: las resuelve
+ * el MotorReservas con un cerrojo por franja de vuelos, sin pasar por el lock
+ * del sistema. Ese lock queda para las altas de vuelos, la configuración y
+ * los snapshots.
+ * <p>
+ * Una compra en dos pasos retiene los asientos de todos los tramos y después
+ * confirma o libera la retención; si no se confirma a tiempo, vence sola. Los
+ * vencimientos los lleva una rueda de temporizadores que se avanza al pasar
+ * por las operaciones de reserva (o llamando a vencerRetenciones), sin una
+ * tarea programada por retención. Las retenciones no se registran: tras un
+ * reinicio esos asientos vuelven a estar libres.
  */
 public class SistemaAerolinea {
+    private static final int CAPACIDAD_CACHE_RUTAS = 1024;
+    private static final int ALTERNATIVAS_RESERVA = 5;
+    private static final long PRESUPUESTO_ALTERNATIVAS_MS = 50;
+    private static final int CONEXION_MINIMA_MINUTOS = 45;
+    private static final long DURACION_RETENCION_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long RESOLUCION_RETENCIONES_MS = 100; // duración de un tick de la rueda
+
     private Grafo grafo;
+    private CacheRutas cacheRutas;
     private Map<String, Vuelo> vuelos; // Código de vuelo -> Vuelo
-    private Map<String, List<Vuelo>> vuelosPorTramo; // "Origen-Destino" -> Lista de vuelos
-    private static int contadorReservas = 1;
+    private InventarioTramos inventario; // Vuelos de cada tramo, del mejor al peor
+    private MotorReservas motor; // Reservas vigentes, por número y por itinerario
+    private int alternativasReserva = ALTERNATIVAS_RESERVA;
+    private long presupuestoAlternativasMs = PRESUPUESTO_ALTERNATIVAS_MS;
+    private int conexionMinimaMinutos = CONEXION_MINIMA_MINUTOS;
+    private ConfiguracionCabina configuracionCabina = ConfiguracionCabina.ESTANDAR;
+    private Map<Ciudad, Integer> conexionMinimaPorCiudad = new HashMap<>(); // con el lock del sistema
+    private volatile TablaConexiones tablaConexiones; // null: hay que reconstruirla
+    private RegistroCambios registro; // null: los cambios no se registran
+    private final Map<String, Retencion> retenciones = new ConcurrentHashMap<>(); // Código -> retención pendiente
+    private final AtomicLong contadorRetenciones = new AtomicLong(1);
+    private final long origenReloj = System.nanoTime(); // tick 0 de la rueda
+    private final RuedaTemporizadores<Retencion> vencimientos = new RuedaTemporizadores<>(0);
+    private final ReentrantLock cerrojoVencimientos = new ReentrantLock(); // protege la rueda
+    private volatile long tickProcesado; // último tick hasta el que se avanzó la rueda
+    private volatile long duracionRetencionMs = DURACION_RETENCION_MS;
+    private volatile boolean abrirVuelosAutomaticamente = true;
 
     public SistemaAerolinea() {
-        this.grafo = new Grafo();
-        this.vuelos = new HashMap<>();
-        this.vuelosPorTramo = new HashMap<>();
+        this(new Grafo());
         inicializarDatos();
     }
 
+    /**
+     * Sistema sobre una red ya cargada (sin los datos de ejemplo)
+     */
+    public SistemaAerolinea(Grafo grafo) {
+        this.grafo = grafo;
+        this.cacheRutas = new CacheRutas(grafo, CAPACIDAD_CACHE_RUTAS);
+        this.vuelos = new ConcurrentHashMap<>();
+        this.inventario = new InventarioTramos(() -> motor.isRetencionesEnRecargo());
+        this.motor = new MotorReservas(vuelos, inventario);
+    }
+
     /**
      * Inicializa los datos del problema
      */
     private void inicializarDatos() {
-        // Crear ciudades
-        Ciudad buenosAires = new Ciudad("Buenos Aires");
-        Ciudad cordoba = new Ciudad("Córdoba");
-        Ciudad mendoza = new Ciudad("Mendoza");
-        Ciudad bariloche = new Ciudad("Bariloche");
-        Ciudad santaFe = new Ciudad("Santa Fe");
-        Ciudad posadas = new Ciudad("Posadas");
-        Ciudad santaCruz = new Ciudad("Santa Cruz");
+        // Crear ciudades (código y coordenadas de sus aeropuertos)
+        Ciudad buenosAires = new Ciudad("Buenos Aires", "AEP", -34.5592, -58.4156);
+        Ciudad cordoba = new Ciudad("Córdoba", "COR", -31.3236, -64.2080);
+        Ciudad mendoza = new Ciudad("Mendoza", "MDZ", -32.8317, -68.7929);
+        Ciudad bariloche = new Ciudad("Bariloche", "BRC", -41.1512, -71.1578);
+        Ciudad santaFe = new Ciudad("Santa Fe", "SFN", -31.7117, -60.8117);
+        Ciudad posadas = new Ciudad("Posadas", "PSS", -27.3858, -55.9707);
+        Ciudad santaCruz = new Ciudad("Santa Cruz", "RGL", -51.6089, -69.3126);
 
         // Agregar ciudades al grafo
         grafo.agregarCiudad(buenosAires);
@@ -64,6 +126,134 @@ public class SistemaAerolinea {
         grafo.agregarAristaBidireccional(santaFe, posadas, 1.2, 80000);
     }
 
+    /**
+     * Restaura el sistema completo (red, vuelos, asientos y reservas) desde un snapshot
+     *
+     * @throws IOException si el archivo no se puede leer o está dañado
+     */
+    public static SistemaAerolinea restaurar(Path archivo) throws IOException {
+        return desdeSnapshot(SnapshotSistema.leer(archivo));
+    }
+
+    /**
+     * Recupera el sistema después de un reinicio o una caída: restaura el
+     * snapshot (si existe; si no, arranca con los datos de ejemplo), aplica los
+     * cambios del registro posteriores al snapshot y deja el registro abierto
+     * para los cambios siguientes
+     *
+     * @throws IOException si alguno de los archivos no se puede leer o el snapshot está dañado
+     */
+    public static SistemaAerolinea recuperar(Path archivoSnapshot, Path archivoRegistro) throws IOException {
+        SistemaAerolinea sistema;
+        long secuencia = 0;
+        if (Files.exists(archivoSnapshot)) {
+            EstadoSnapshot estado = SnapshotSistema.leer(archivoSnapshot);
+            sistema = desdeSnapshot(estado);
+            secuencia = estado.getSecuencia();
+        } else {
+            sistema = new SistemaAerolinea();
+        }
+        long ultima = RegistroCambios.reproducir(archivoRegistro, secuencia, sistema::aplicarCambio);
+        sistema.registro = new RegistroCambios(archivoRegistro, ultima);
+        return sistema;
+    }
+
+    private static SistemaAerolinea desdeSnapshot(EstadoSnapshot estado) {
+        SistemaAerolinea sistema = new SistemaAerolinea(estado.getGrafo());
+        // Los vuelos vienen ordenados por código: mismo orden de alta que al guardarlos
+        Reserva[] todas = new Reserva[(int) estado.getCantidadReservas()];
+        int cantidad = 0;
+        for (Vuelo vuelo : estado.getVuelos()) {
+            sistema.registrarVuelo(vuelo);
+            for (Reserva reserva : vuelo.getReservas()) {
+                todas[cantidad++] = reserva;
+            }
+        }
+        // Índice global armado en tiempo lineal
+        Arrays.sort(todas, Comparator.comparingLong(Reserva::getNumero));
+        sistema.motor.cargar(todas, cantidad);
+        sistema.motor.avanzarContador(estado.getProximaReserva() - 1);
+        return sistema;
+    }
+
+    /**
+     * Aplica un cambio del registro al reproducirlo (sin volver a registrarlo)
+     */
+    private void aplicarCambio(EventoRegistro cambio) {
+        switch (cambio.getTipo()) {
+            case VUELO_CREADO:
+                Ciudad origen = grafo.getCiudadPorNombre(cambio.getOrigen());
+                Ciudad destino = grafo.getCiudadPorNombre(cambio.getDestino());
+                if (origen == null || destino == null) {
+                    throw new IllegalStateException("Registro de cambios inconsistente: ciudad desconocida en " + cambio);
+                }
+                registrarVuelo(new Vuelo(cambio.getCodigoVuelo(), origen, destino, cambio.getPrecio(),
+                        cambio.getTiempo(), cambio.esDirecto(), cambio.getSalida(), cambio.getCabina()));
+                break;
+            case RESERVA_CREADA:
+                Vuelo vuelo = vuelos.get(cambio.getCodigoVuelo());
+                if (vuelo == null || !motor.agregar(vuelo, new Reserva(cambio.getCodigoReserva(),
+                        cambio.getCodigoItinerario(), vuelo.getCodigoVuelo(), cambio.getAsiento(),
+                        vuelo.getOrigen(), vuelo.getDestino(), cambio.getPrecio()))) {
+                    throw new IllegalStateException("Registro de cambios inconsistente: " + cambio);
+                }
+                break;
+            case CANCELACION:
+                motor.cancelar(cambio.getCodigoReserva(), null);
+                break;
+        }
+    }
+
+    /**
+     * Guarda todo el estado en un snapshot binario (reemplaza el archivo al terminar)
+     * Si hay registro de cambios y nada cambió mientras tanto, lo vacía: el
+     * snapshot ya incluye todo lo registrado. Las reservas esperan mientras se escribe.
+     */
+    public void guardarSnapshot(Path archivo) throws IOException {
+        long secuencia;
+        synchronized (this) {
+            motor.bloquearTodo();
+            try {
+                secuencia = registro == null ? 0 : registro.getUltimaSecuencia();
+                SnapshotSistema.escribir(archivo, grafo, vuelos.values(), motor.getProximaReserva(),
+                        secuencia);
+            } finally {
+                motor.desbloquearTodo();
+            }
+        }
+        if (registro != null) {
+            registro.descartarHasta(secuencia);
+        }
+    }
+
+    /**
+     * Registro de cambios en uso, o null si los cambios no se registran
+     */
+    public RegistroCambios getRegistro() {
+        return registro;
+    }
+
+    /**
+     * Espera a que los cambios registrados hasta ahora estén sincronizados en
+     * disco. Se llama fuera del lock del sistema, así varios hilos comparten
+     * un mismo fsync.
+     */
+    private void hacerDurable() {
+        RegistroCambios actual = registro;
+        if (actual != null) {
+            actual.esperar(actual.getUltimaSecuencia());
+        }
+    }
+
+    /**
+     * Cierra el registro de cambios (sincroniza lo pendiente)
+     */
+    public void cerrar() throws IOException {
+        if (registro != null) {
+            registro.close();
+        }
+    }
+
     /**
      * Obtiene el grafo
      */
@@ -71,13 +261,125 @@ public class SistemaAerolinea {
         return grafo;
     }
 
+    /**
+     * Obtiene la caché de rutas (para consultar sus estadísticas)
+     */
+    public CacheRutas getCacheRutas() {
+        return cacheRutas;
+    }
+
+    /**
+     * Obtiene la ruta mínima entre dos ciudades pasando por la caché de rutas
+     */
+    public Itinerario buscarRuta(Ciudad origen, Ciudad destino) {
+        return cacheRutas.buscarRuta(origen, destino);
+    }
+
+    /**
+     * Cantidad máxima de rutas (incluida la mínima) que se prueban al reservar
+     */
+    public int getAlternativasReserva() {
+        return alternativasReserva;
+    }
+
+    public void setAlternativasReserva(int alternativasReserva) {
+        if (alternativasReserva <= 0) {
+            throw new IllegalArgumentException("La cantidad de alternativas debe ser positiva");
+        }
+        this.alternativasReserva = alternativasReserva;
+    }
+
+    /**
+     * Tiempo máximo (en milisegundos) para buscar rutas alternativas al reservar
+     */
+    public long getPresupuestoAlternativasMs() {
+        return presupuestoAlternativasMs;
+    }
+
+    public void setPresupuestoAlternativasMs(long presupuestoAlternativasMs) {
+        if (presupuestoAlternativasMs < 0) {
+            throw new IllegalArgumentException("El presupuesto no puede ser negativo");
+        }
+        this.presupuestoAlternativasMs = presupuestoAlternativasMs;
+    }
+
+    /**
+     * Distribución de asientos de los aviones de los vuelos que se crean desde ahora
+     */
+    public synchronized ConfiguracionCabina getConfiguracionCabina() {
+        return configuracionCabina;
+    }
+
+    public synchronized void setConfiguracionCabina(ConfiguracionCabina configuracionCabina) {
+        if (configuracionCabina == null) {
+            throw new IllegalArgumentException("La configuración de cabina no puede ser nula");
+        }
+        this.configuracionCabina = configuracionCabina;
+    }
+
+    /**
+     * Tiempo (en milisegundos) que una retención guarda los asientos
+     */
+    public long getDuracionRetencionMs() {
+        return duracionRetencionMs;
+    }
+
+    public void setDuracionRetencionMs(long duracionRetencionMs) {
+        if (duracionRetencionMs <= 0) {
+            throw new IllegalArgumentException("La duración de la retención debe ser positiva");
+        }
+        this.duracionRetencionMs = duracionRetencionMs;
+    }
+
+    /**
+     * Si los asientos retenidos cuentan para el recargo por ocupación ≥95%
+     * (por defecto sí: un asiento retenido no se puede vender)
+     */
+    public boolean isRetencionesEnRecargo() {
+        return motor.isRetencionesEnRecargo();
+    }
+
+    public void setRetencionesEnRecargo(boolean retencionesEnRecargo) {
+        motor.setRetencionesEnRecargo(retencionesEnRecargo);
+        inventario.reordenar(); // cambia el precio con recargo de algunos vuelos
+    }
+
+    /**
+     * Qué vuelo de un tramo se usa al reservar: el de más asientos libres o
+     * el más barato con recargo
+     */
+    public InventarioTramos.Criterio getCriterioVuelos() {
+        return inventario.getCriterio();
+    }
+
+    public void setCriterioVuelos(InventarioTramos.Criterio criterio) {
+        inventario.setCriterio(criterio);
+    }
+
+    /**
+     * Si al llenarse todos los vuelos de un tramo se abre uno nuevo cuando
+     * tampoco hay lugar en las rutas alternativas (si no, la reserva falla)
+     */
+    public boolean isAbrirVuelosAutomaticamente() {
+        return abrirVuelosAutomaticamente;
+    }
+
+    public void setAbrirVuelosAutomaticamente(boolean abrirVuelosAutomaticamente) {
+        this.abrirVuelosAutomaticamente = abrirVuelosAutomaticamente;
+    }
+
+    /**
+     * Vuelos de un tramo, del que se usaría primero al último
+     */
+    public List<Vuelo> getVuelosTramo(Ciudad origen, Ciudad destino) {
+        return inventario.getVuelos(origen, destino);
+    }
+
     /**
      * Verifica si ya existe un vuelo registrado para un tramo
      */
     public boolean existeTramoRegistrado(Ciudad origen, Ciudad destino) {
-        String claveTramo = origen.getNombre() + "-" + destino.getNombre();
-        List<Vuelo> vuelosTramo = vuelosPorTramo.get(claveTramo);
-        return vuelosTramo != null && !vuelosTramo.isEmpty();
+        return inventario.tieneVuelos(origen, destino);
     }
 
     /**
@@ -101,32 +403,119 @@ public class SistemaAerolinea {
      * Crea un nuevo vuelo para un tramo
      */
     public Vuelo crearVuelo(Ciudad origen, Ciudad destino, double precioBase, double tiempo, boolean esDirecto) {
-        Vuelo vuelo = new Vuelo(origen, destino, precioBase, tiempo, esDirecto);
-        vuelos.put(vuelo.getCodigoVuelo(), vuelo);
+        return crearVuelo(origen, destino, precioBase, tiempo, esDirecto, null);
+    }
 
-        // Agregar a vuelos por tramo
-        String claveTramo = origen.getNombre() + "-" + destino.getNombre();
-        vuelosPorTramo.computeIfAbsent(claveTramo, k -> new ArrayList<>()).add(vuelo);
+    /**
+     * Crea un nuevo vuelo para un tramo con fecha y hora de salida (null: sin horario)
+     */
+    public Vuelo crearVuelo(Ciudad origen, Ciudad destino, double precioBase, double tiempo, boolean esDirecto,
+                            LocalDateTime salida) {
+        Vuelo vuelo;
+        synchronized (this) {
+            vuelo = nuevoVuelo(origen, destino, precioBase, tiempo, esDirecto, salida);
+        }
+        hacerDurable();
+        return vuelo;
+    }
 
+    private Vuelo nuevoVuelo(Ciudad origen, Ciudad destino, double precioBase, double tiempo, boolean esDirecto,
+                             LocalDateTime salida) {
+        Vuelo vuelo = new Vuelo(origen, destino, precioBase, tiempo, esDirecto, salida, configuracionCabina);
+        // Se registra antes de que otros hilos lo encuentren: sus reservas van después del alta en el registro
+        if (registro != null) {
+            registro.vueloCreado(vuelo);
+        }
+        registrarVuelo(vuelo);
         return vuelo;
     }
 
+    private void registrarVuelo(Vuelo vuelo) {
+        vuelos.put(vuelo.getCodigoVuelo(), vuelo);
+        if (vuelo.tieneHorario()) {
+            tablaConexiones = null;
+        }
+
+        // Agregar al inventario de su tramo
+        inventario.agregar(vuelo);
+    }
+
     /**
      * Obtiene o crea un vuelo para un tramo
      */
     public Vuelo obtenerOCrearVuelo(Ciudad origen, Ciudad destino, double precioBase, double tiempo,
                                     boolean esDirecto) {
-        String claveTramo = origen.getNombre() + "-" + destino.getNombre();
-        List<Vuelo> vuelosTramo = vuelosPorTramo.get(claveTramo);
+        Vuelo vuelo = vueloParaTramo(origen, destino, precioBase, tiempo, esDirecto,
+                abrirVuelosAutomaticamente ? new ArrayList<>(1) : null);
+        if (vuelo == null) {
+            vuelo = inventario.mejor(origen, destino); // todos llenos y no se abren vuelos
+        }
+        hacerDurable();
+        return vuelo;
+    }
 
-        if (vuelosTramo != null && !vuelosTramo.isEmpty()) {
-            // Retornar el primer vuelo disponible (podría mejorarse con lógica de
-            // selección)
-            return vuelosTramo.get(0);
+    /**
+     * Mejor vuelo del tramo con asientos libres según el criterio del
+     * inventario. Si no hay, abre uno cuando el tramo no tiene vuelos, o
+     * cuando abiertos no es null y todavía no tiene un vuelo de este tramo
+     * (lo agrega ahí); si no, retorna null. Abre con el lock del sistema y
+     * volviendo a mirar, así dos hilos no abren dos vuelos a la vez
+     */
+    private Vuelo vueloParaTramo(Ciudad origen, Ciudad destino, double precioBase, double tiempo,
+                                 boolean esDirecto, List<Vuelo> abiertos) {
+        Vuelo conLugar = inventario.mejorConLugar(origen, destino);
+        if (conLugar != null) {
+            return conLugar;
         }
+        synchronized (this) {
+            conLugar = inventario.mejorConLugar(origen, destino);
+            if (conLugar != null) {
+                return conLugar;
+            }
+            if (!puedeAbrir(origen, destino, abiertos)) {
+                return null;
+            }
+            // Crear nuevo vuelo
+            Vuelo vuelo = nuevoVuelo(origen, destino, precioBase, tiempo, esDirecto, null);
+            if (abiertos != null) {
+                abiertos.add(vuelo);
+            }
+            return vuelo;
+        }
+    }
 
-        // Crear nuevo vuelo
-        return crearVuelo(origen, destino, precioBase, tiempo, esDirecto);
+    /**
+     * Si se puede abrir un vuelo en un tramo sin lugar: el primero del tramo
+     * siempre; otro, solo si los que ya abrió esta reserva en el tramo se
+     * llenaron (abiertos tiene los que abrió, null si no se abren vuelos en
+     * tramos llenos). Otros hilos ven el vuelo nuevo apenas entra al
+     * inventario y pueden llenarlo antes de que esta reserva tome su asiento
+     */
+    private boolean puedeAbrir(Ciudad origen, Ciudad destino, List<Vuelo> abiertos) {
+        if (!inventario.tieneVuelos(origen, destino)) {
+            return true;
+        }
+        if (abiertos == null) {
+            return false;
+        }
+        for (Vuelo vuelo : abiertos) {
+            if (vuelo.getOrigen().equals(origen) && vuelo.getDestino().equals(destino)
+                    && vuelo.getAvion().hayAsientosLibres()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mejor vuelo del tramo, o null si hay que abrir uno nuevo
+     */
+    private Vuelo vueloUsable(Ciudad origen, Ciudad destino) {
+        Vuelo mejor = inventario.mejor(origen, destino);
+        if (mejor != null && abrirVuelosAutomaticamente && !mejor.getAvion().hayAsientosLibres()) {
+            return null; // todos llenos
+        }
+        return mejor;
     }
 
     /**
@@ -140,7 +529,7 @@ public class SistemaAerolinea {
             double precioTramo = vuelo.getPrecioBase();
 
             // +10% si el vuelo alcanza ≥95% de ocupación
-            if (vuelo.alcanza95Porciento()) {
+            if (vuelo.alcanza95Porciento(motor.isRetencionesEnRecargo())) {
                 precioTramo *= 1.10;
             }
 
@@ -155,17 +544,214 @@ public class SistemaAerolinea {
         return precioTotal;
     }
 
+    /**
+     * Cotiza en una sola pasada todas las ciudades alcanzables desde un origen
+     * Usa el árbol de rutas mínimas del origen (guardado en la caché) y aplica los
+     * mismos recargos que calcularPrecioFinal, sin crear vuelos. Las cotizaciones
+     * van de la ciudad más cercana a la más lejana.
+     */
+    public List<Cotizacion> cotizarDesde(Ciudad origen) {
+        List<Cotizacion> cotizaciones = new ArrayList<>();
+        ArbolRutas arbol = cacheRutas.arbolDesde(origen);
+        if (arbol == null) {
+            return cotizaciones;
+        }
+
+        // Suma de los precios de tramo acumulada sobre el árbol: cada ciudad viene
+        // después de su predecesora, así que el acumulado de esta ya está calculado
+        Map<Ciudad, Double> acumulado = new HashMap<>();
+        acumulado.put(origen, 0.0);
+        for (Ciudad ciudad : arbol.getCiudadesAlcanzables()) {
+            Ciudad previa = arbol.getPredecesor(ciudad);
+            double precio = acumulado.get(previa) + precioTramo(previa, ciudad, arbol.getAristaLlegada(ciudad));
+            acumulado.put(ciudad, precio);
+
+            Itinerario itinerario = arbol.getItinerario(ciudad);
+            // +20% si el itinerario es directo (un solo tramo)
+            double precioFinal = itinerario.esDirecto() ? precio * 1.20 : precio;
+            cotizaciones.add(new Cotizacion(itinerario, precioFinal));
+        }
+        return cotizaciones;
+    }
+
+    /**
+     * Precio de un tramo según el vuelo que le tocaría, con +10% si ese vuelo
+     * alcanza el 95% de ocupación; sin vuelos todavía, el de la arista
+     */
+    private double precioTramo(Ciudad origen, Ciudad destino, Arista arista) {
+        Vuelo vuelo = vueloUsable(origen, destino);
+        if (vuelo == null) {
+            return arista.getPrecioBase();
+        }
+        return vuelo.alcanza95Porciento(motor.isRetencionesEnRecargo()) ? vuelo.getPrecioBase() * 1.10
+                : vuelo.getPrecioBase();
+    }
+
     /**
      * Realiza una reserva de pasaje
+     * Usa la ruta mínima; si algún tramo está lleno prueba las rutas alternativas
+     * en orden de (tiempo, precio) hasta encontrar una con asientos en todos los
+     * tramos. Si ninguna tiene y se abren vuelos automáticamente, abre un vuelo
+     * en cada tramo lleno de la ruta mínima
      */
     public List<Reserva> realizarReserva(Ciudad origen, Ciudad destino) {
+        vencerRetencionesPendientes();
+        List<Reserva> reservas = tomarRuta(origen, destino, tramos -> motor.reservar(tramos, registro));
+        hacerDurable();
+        return reservas;
+    }
+
+    /**
+     * Aplica la acción (reservar o retener) a los vuelos de la ruta mínima; si
+     * algún tramo está lleno prueba las rutas alternativas y, como último
+     * recurso, abre vuelos en la ruta mínima. Retorna el primer resultado no nulo
+     */
+    private <T> T tomarRuta(Ciudad origen, Ciudad destino, Function<List<Vuelo>, T> tomar) {
         // Calcular ruta mínima
-        Itinerario itinerario = grafo.dijkstra(origen, destino);
+        Itinerario itinerario = buscarRuta(origen, destino);
 
         if (itinerario == null) {
             return null; // No hay ruta disponible
         }
+        T resultado = intentar(itinerario, tomar, null);
+        if (resultado != null) {
+            return resultado;
+        }
+
+        // Algún tramo está lleno: buscar la siguiente ruta con lugar (la
+        // primera alternativa es la ruta mínima, que ya se probó)
+        List<Itinerario> alternativas = grafo.rutasAlternativas(origen, destino, alternativasReserva,
+                TimeUnit.MILLISECONDS.toNanos(presupuestoAlternativasMs));
+        for (Itinerario alternativa : alternativas) {
+            if (alternativa.getAristas().equals(itinerario.getAristas())) {
+                continue;
+            }
+            resultado = intentar(alternativa, tomar, null);
+            if (resultado != null) {
+                return resultado;
+            }
+        }
+
+        // Ninguna ruta tiene lugar: vuelos nuevos en los tramos llenos, uno a la vez
+        if (abrirVuelosAutomaticamente) {
+            return intentar(itinerario, tomar, new ArrayList<>());
+        }
+        return null;
+    }
+
+    /**
+     * Aplica la acción a los vuelos del itinerario mientras todos sus tramos
+     * tengan lugar. Si otro hilo toma el último asiento de algún tramo entre
+     * la elección de los vuelos y la reserva, se vuelven a elegir (el
+     * inventario ya lo tiene reubicado); los vuelos que se abran quedan en
+     * abiertos (ver vueloParaTramo). Sin límite de intentos: cada intento
+     * fallido es un asiento que tomó otra reserva, así que termina al
+     * conseguir lugar o al llenarse el itinerario
+     */
+    private <T> T intentar(Itinerario itinerario, Function<List<Vuelo>, T> tomar, List<Vuelo> abiertos) {
+        while (hayAsientosEnTodosLosTramos(itinerario, abiertos)) {
+            List<Vuelo> tramos = vuelosDe(itinerario, abiertos);
+            if (tramos != null) {
+                T resultado = tomar.apply(tramos);
+                if (resultado != null) {
+                    return resultado;
+                }
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Escala mínima por defecto (en minutos) entre vuelos con horario
+     */
+    public synchronized int getConexionMinimaMinutos() {
+        return conexionMinimaMinutos;
+    }
+
+    public synchronized void setConexionMinimaMinutos(int minutos) {
+        if (minutos < 0) {
+            throw new IllegalArgumentException("La escala mínima no puede ser negativa");
+        }
+        this.conexionMinimaMinutos = minutos;
+        tablaConexiones = null;
+    }
+
+    /**
+     * Fija una escala mínima propia para una ciudad (por ejemplo, un aeropuerto grande)
+     */
+    public synchronized void setConexionMinima(Ciudad ciudad, int minutos) {
+        if (minutos < 0) {
+            throw new IllegalArgumentException("La escala mínima no puede ser negativa");
+        }
+        conexionMinimaPorCiudad.put(ciudad, minutos);
+        tablaConexiones = null;
+    }
+
+    /**
+     * Obtiene la tabla de conexiones de los vuelos con horario
+     * Se reconstruye solo si hubo altas de vuelos con horario o cambios de
+     * escalas; las escalas se leen con el mismo lock con el que se cambian
+     */
+    public TablaConexiones getTablaConexiones() {
+        TablaConexiones tabla = tablaConexiones;
+        if (tabla == null) {
+            synchronized (this) {
+                tabla = tablaConexiones;
+                if (tabla == null) {
+                    tabla = new TablaConexiones(vuelos.values(), conexionMinimaMinutos, conexionMinimaPorCiudad);
+                    tablaConexiones = tabla;
+                }
+            }
+        }
+        return tabla;
+    }
+
+    /**
+     * Vuelos con horario que llegan antes a destino saliendo desde la fecha indicada
+     * Retorna null si no hay combinación posible
+     */
+    public List<Vuelo> buscarConexiones(Ciudad origen, Ciudad destino, LocalDateTime salidaMinima) {
+        return getTablaConexiones().llegadaMasTemprana(origen, destino, salidaMinima);
+    }
+
+    /**
+     * Reserva los vuelos con horario que llegan antes a destino saliendo desde
+     * la fecha indicada, respetando las escalas mínimas
+     * Retorna null si no hay combinación con asientos libres
+     */
+    public List<Reserva> realizarReservaHorario(Ciudad origen, Ciudad destino, LocalDateTime salidaMinima) {
+        vencerRetencionesPendientes();
+        List<Vuelo> vuelosConexion = buscarConexiones(origen, destino, salidaMinima);
+        if (vuelosConexion == null || vuelosConexion.isEmpty()) {
+            return null;
+        }
+        List<Reserva> reservas = motor.reservar(vuelosConexion, registro);
+        hacerDurable();
+        return reservas;
+    }
+
+    /**
+     * Verifica, sin asignar nada, que cada tramo tenga un vuelo con asientos
+     * libres o que se le pueda abrir uno (ver puedeAbrir)
+     */
+    private boolean hayAsientosEnTodosLosTramos(Itinerario itinerario, List<Vuelo> abiertos) {
+        List<Ciudad> ciudades = itinerario.getCiudades();
+        for (int i = 0; i < ciudades.size() - 1; i++) {
+            Ciudad origenTramo = ciudades.get(i);
+            Ciudad destinoTramo = ciudades.get(i + 1);
+            if (inventario.mejorConLugar(origenTramo, destinoTramo) == null
+                    && !puedeAbrir(origenTramo, destinoTramo, abiertos)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Vuelos de cada tramo del itinerario (ver vueloParaTramo), o null si
+     * algún tramo se llenó y no se le puede abrir otro
+     */
+    private List<Vuelo> vuelosDe(Itinerario itinerario, List<Vuelo> abiertos) {
         // Obtener o crear vuelos para cada tramo
         List<Vuelo> vuelosItinerario = new ArrayList<>();
         List<Arista> aristas = itinerario.getAristas();
@@ -176,68 +762,229 @@ public class SistemaAerolinea {
             Ciudad origenTramo = ciudades.get(i);
             Ciudad destinoTramo = ciudades.get(i + 1);
 
-            Vuelo vuelo = obtenerOCrearVuelo(origenTramo, destinoTramo,
-                    arista.getPrecioBase(), arista.getTiempo(), arista.isEsDirecto());
+            Vuelo vuelo = vueloParaTramo(origenTramo, destinoTramo,
+                    arista.getPrecioBase(), arista.getTiempo(), arista.isEsDirecto(), abiertos);
+            if (vuelo == null) {
+                return null;
+            }
             vuelosItinerario.add(vuelo);
         }
+        return vuelosItinerario;
+    }
+
+    /**
+     * Retiene un asiento en cada tramo de la ruta (elegida igual que en
+     * realizarReserva) durante getDuracionRetencionMs
+     * Retorna null si no hay ruta con asientos libres
+     */
+    public Retencion retenerAsientos(Ciudad origen, Ciudad destino) {
+        vencerRetencionesPendientes();
+        return tomarRuta(origen, destino, this::retener);
+    }
+
+    /**
+     * Retiene un asiento en cada tramo de un itinerario dado; null si algún
+     * tramo está lleno
+     */
+    public Retencion retenerAsientos(Itinerario itinerario) {
+        vencerRetencionesPendientes();
+        List<Vuelo> tramos = vuelosDe(itinerario, abrirVuelosAutomaticamente ? new ArrayList<>() : null);
+        return tramos == null ? null : retener(tramos);
+    }
+
+    private Retencion retener(List<Vuelo> tramos) {
+        long duracion = duracionRetencionMs;
+        String codigo = "RET-" + String.format("%06d", contadorRetenciones.getAndIncrement());
+        Retencion retencion = motor.retener(tramos, codigo, System.currentTimeMillis() + duracion);
+        if (retencion == null) {
+            return null;
+        }
+        // Vence al terminar el tick que contiene el vencimiento
+        retencion.setVencimientoTick(tickActual() + (duracion + RESOLUCION_RETENCIONES_MS - 1) / RESOLUCION_RETENCIONES_MS);
+        retenciones.put(codigo, retencion);
+        cerrojoVencimientos.lock();
+        try {
+            retencion.programarEn(vencimientos);
+        } finally {
+            cerrojoVencimientos.unlock();
+        }
+        return retencion;
+    }
+
+    /**
+     * Confirma una retención: crea las reservas con los precios retenidos
+     * Retorna null si la retención no existe, ya venció o ya se liberó
+     */
+    public List<Reserva> confirmarRetencion(String codigo) {
+        vencerRetencionesPendientes();
+        Retencion retencion = codigo == null ? null : retenciones.get(normalizarCodigo(codigo));
+        if (retencion == null) {
+            return null;
+        }
+        if (tickActual() >= retencion.getVencimientoTick()) {
+            // Venció pero la rueda todavía no pasó por su tick
+            terminarRetencion(retencion, Retencion.Estado.VENCIDA);
+            return null;
+        }
+        List<Reserva> reservas = motor.confirmar(retencion, registro);
+        if (reservas == null) {
+            return null;
+        }
+        olvidarRetencion(retencion);
+        hacerDurable();
+        return reservas;
+    }
 
-        // Asignar asientos y crear reservas
-        List<Reserva> reservas = new ArrayList<>();
+    /**
+     * Libera los asientos de una retención; false si no existe o ya terminó
+     */
+    public boolean liberarRetencion(String codigo) {
+        Retencion retencion = codigo == null ? null : retenciones.get(normalizarCodigo(codigo));
+        return retencion != null && terminarRetencion(retencion, Retencion.Estado.LIBERADA);
+    }
 
-        // Primero asignar todos los asientos y calcular precios
-        for (Vuelo vuelo : vuelosItinerario) {
-            // Verificar ocupación ANTES de asignar para calcular recargo
-            double porcentajeOcupacionAntes = vuelo.getPorcentajeOcupacion();
-            boolean alcanza95Antes = porcentajeOcupacionAntes >= 95.0;
+    /**
+     * Obtiene una retención pendiente por código, o null
+     */
+    public Retencion getRetencion(String codigo) {
+        return codigo == null ? null : retenciones.get(normalizarCodigo(codigo));
+    }
 
-            Asiento asiento = vuelo.getAvion().asignarAsiento();
+    /**
+     * Cantidad de retenciones pendientes
+     */
+    public int getCantidadRetenciones() {
+        return retenciones.size();
+    }
 
-            if (asiento == null) {
-                // No hay asientos disponibles, cancelar todas las reservas
-                for (Reserva reserva : reservas) {
-                    cancelarReserva(reserva.getCodigoReserva());
-                }
-                return null;
-            }
+    /**
+     * Libera los asientos de las retenciones vencidas hasta ahora; retorna
+     * cuántas vencieron
+     */
+    public int vencerRetenciones() {
+        List<Retencion> vencidas = new ArrayList<>();
+        cerrojoVencimientos.lock();
+        try {
+            avanzarVencimientos(vencidas);
+        } finally {
+            cerrojoVencimientos.unlock();
+        }
+        return liberarVencidas(vencidas);
+    }
 
-            // Calcular precio del tramo (con recargo de ocupación si aplica)
-            double precioTramo = vuelo.getPrecioBase();
-            if (alcanza95Antes) {
-                precioTramo *= 1.10; // +10% por ocupación ≥95% (antes de asignar)
+    /**
+     * Como vencerRetenciones, pero sin esperar: si la rueda ya está al día o
+     * la está avanzando otro hilo, no hace nada
+     */
+    private void vencerRetencionesPendientes() {
+        if (tickActual() == tickProcesado || !cerrojoVencimientos.tryLock()) {
+            return;
+        }
+        List<Retencion> vencidas = new ArrayList<>();
+        try {
+            avanzarVencimientos(vencidas);
+        } finally {
+            cerrojoVencimientos.unlock();
+        }
+        liberarVencidas(vencidas);
+    }
+
+    /**
+     * Avanza la rueda hasta el tick actual (con su cerrojo tomado); los
+     * asientos se liberan después, fuera del cerrojo
+     */
+    private void avanzarVencimientos(List<Retencion> vencidas) {
+        long tick = tickActual();
+        vencimientos.avanzar(tick, vencidas::add);
+        tickProcesado = tick;
+    }
+
+    private int liberarVencidas(List<Retencion> vencidas) {
+        int liberadas = 0;
+        for (Retencion retencion : vencidas) {
+            if (motor.soltar(retencion, Retencion.Estado.VENCIDA)) {
+                liberadas++;
             }
-            String codigoReserva = "RES-" + String.format("%06d", contadorReservas++);
-            Reserva reserva = new Reserva(codigoReserva, vuelo.getCodigoVuelo(),
-                    asiento.toString(), vuelo.getOrigen(), vuelo.getDestino(), precioTramo);
+            retenciones.remove(retencion.getCodigo(), retencion);
+        }
+        return liberadas;
+    }
 
-            // Insertar en el árbol AVL del vuelo
-            vuelo.getReservas().insertar(codigoReserva, reserva);
-            reservas.add(reserva);
+    private boolean terminarRetencion(Retencion retencion, Retencion.Estado estado) {
+        if (!motor.soltar(retencion, estado)) {
+            return false;
         }
+        olvidarRetencion(retencion);
+        return true;
+    }
 
-        // Aplicar +20% si el itinerario es directo (solo un tramo)
-        if (itinerario.esDirecto() && !reservas.isEmpty()) {
-            double precioAnterior = reservas.get(0).getPrecioFinal();
-            reservas.get(0).setPrecioFinal(precioAnterior * 1.20);
+    /**
+     * Quita una retención terminada del índice y de la rueda
+     */
+    private void olvidarRetencion(Retencion retencion) {
+        retenciones.remove(retencion.getCodigo(), retencion);
+        cerrojoVencimientos.lock();
+        try {
+            retencion.cancelarEn(vencimientos);
+        } finally {
+            cerrojoVencimientos.unlock();
         }
+    }
 
-        return reservas;
+    private long tickActual() {
+        return (System.nanoTime() - origenReloj) / TimeUnit.MILLISECONDS.toNanos(RESOLUCION_RETENCIONES_MS);
     }
 
     /**
      * Cancela una reserva
      */
     public boolean cancelarReserva(String codigoReserva) {
-        for (Vuelo vuelo : vuelos.values()) {
-            Reserva reserva = vuelo.getReservas().buscar(codigoReserva);
-            if (reserva != null) {
-                // Liberar asiento
-                vuelo.getAvion().liberarAsiento(reserva.getAsiento());
-                // Eliminar del árbol AVL
-                vuelo.getReservas().eliminar(codigoReserva);
-                return true;
+        if (motor.cancelar(normalizarCodigo(codigoReserva), registro) == null) {
+            return false;
+        }
+        hacerDurable();
+        return true;
+    }
+
+    /**
+     * Cancela todos los tramos que siguen vigentes del itinerario al que
+     * pertenece la reserva; retorna cuántos se cancelaron (0 si no existe)
+     */
+    public int cancelarItinerario(String codigoReserva) {
+        int cancelados = 0;
+        for (Reserva reserva : motor.tramosDe(normalizarCodigo(codigoReserva))) {
+            if (motor.cancelar(reserva.getCodigoReserva(), registro) != null) {
+                cancelados++;
             }
         }
-        return false;
+        if (cancelados > 0) {
+            hacerDurable();
+        }
+        return cancelados;
+    }
+
+    /**
+     * Obtiene una reserva vigente por código, o null
+     */
+    public Reserva getReserva(String codigoReserva) {
+        long numero = Reserva.numeroDeCodigo(normalizarCodigo(codigoReserva));
+        return numero < 0 ? null : motor.buscar(numero);
+    }
+
+    /**
+     * Tramos vigentes del itinerario al que pertenece la reserva, en el orden
+     * en que se reservaron (vacío si la reserva no existe)
+     */
+    public List<Reserva> getItinerario(String codigoReserva) {
+        return motor.tramosDe(normalizarCodigo(codigoReserva));
+    }
+
+    /**
+     * Código de reserva o de retención tal como se guarda: sin espacios
+     * alrededor y en mayúsculas (null queda null)
+     */
+    private static String normalizarCodigo(String codigo) {
+        return codigo == null ? null : codigo.trim().toUpperCase();
     }
 
     /**
@@ -1,15 +1,16 @@
 package org.siglo21.avion;
 
+/**
+ * Asiento asignado de un avión (inmutable: la ocupación la lleva el Avion)
+ */
 public class Asiento {
 
-    private String seccion; // A,B,C
-    private int numero;
-    private boolean ocupado;
+    private final String seccion; // A,B,C
+    private final int numero;
 
     public Asiento(String seccion, int numero) {
         this.seccion = seccion;
         this.numero = numero;
-        this.ocupado = false;
     }
 
     public String getSeccion() {
@@ -21,14 +22,6 @@ public class Asiento {
     }
 
 
-    public boolean isOcupado() {
-        return ocupado;
-    }
-
-    public void setOcupado(boolean ocupado) {
-        this.ocupado = ocupado;
-    }
-
     @Override
     public String toString() {
         return seccion + numero;
@@ -1,144 +1,424 @@
 package org.siglo21.avion;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Avión con su mapa de asientos
+ * <p>
+ * La ocupación se guarda en un mapa de bits: cada sección ocupa sus propias
+ * palabras de 64 bits (el bit i es el asiento i + 1), así que contar los
+ * libres de una sección es un popcount por palabra y elegir el k-ésimo libre
+ * no recorre asientos uno por uno. Las etiquetas ("B7") se interpretan sin
+ * crear objetos.
+ * <p>
+ * Se puede usar desde varios hilos sin bloqueos: un asiento se toma o se
+ * libera con compareAndSet sobre su palabra, así que dos hilos nunca se
+ * quedan con el mismo. Los contadores de ocupación son LongAdder; se
+ * actualizan después del bit y, mientras haya operaciones en curso, pueden
+ * ir un paso atrás del mapa.
+ * <p>
+ * Un asiento ocupado puede estar retenido (apartado mientras se paga): tiene
+ * su bit en 1 también en el mapa de retenidos. Confirmarlo lo deja vendido y
+ * liberar la retención lo deja libre. Las retenciones no se guardan en el
+ * mapa de ocupación.
+ */
 public class Avion {
 
-    private static final int ASIENTOS_SECCION = 10;
-    private static final String[] SECCIONES = {"A", "B", "C"};
-
-    private Map<String, List<Asiento>> asientos;
-    private int[] ocupacionPorSeccion;
+    private final ConfiguracionCabina cabina;
+    private final int[] primeraPalabra; // palabras de la sección s: [primeraPalabra[s], primeraPalabra[s + 1])
+    private final AtomicLongArray ocupados;
+    private final LongAdder[] ocupacionPorSeccion;
+    private final LongAdder totalOcupados = new LongAdder();
+    private final AtomicLongArray retenidos; // subconjunto de ocupados
+    private final LongAdder totalRetenidos = new LongAdder();
 
     public Avion() {
-        this.asientos = new HashMap<>();
-        this.ocupacionPorSeccion = new int[3];
+        this(ConfiguracionCabina.ESTANDAR);
+    }
 
-        for (String seccion : SECCIONES) {
-            List<Asiento> listaAsientos = new ArrayList<>();
-            for (int i = 1; i <= ASIENTOS_SECCION; i++) {
-                listaAsientos.add(new Asiento(seccion, i));
-            }
-            asientos.put(seccion, listaAsientos);
+    public Avion(ConfiguracionCabina cabina) {
+        this.cabina = cabina;
+        int secciones = cabina.getCantidadSecciones();
+        this.primeraPalabra = new int[secciones + 1];
+        for (int s = 0; s < secciones; s++) {
+            primeraPalabra[s + 1] = primeraPalabra[s] + (cabina.getCapacidad(s) + 63) / 64;
+        }
+        this.ocupados = new AtomicLongArray(primeraPalabra[secciones]);
+        this.retenidos = new AtomicLongArray(primeraPalabra[secciones]);
+        this.ocupacionPorSeccion = new LongAdder[secciones];
+        for (int s = 0; s < secciones; s++) {
+            ocupacionPorSeccion[s] = new LongAdder();
         }
     }
 
+    public ConfiguracionCabina getConfiguracion() {
+        return cabina;
+    }
+
     /**
      * Asigna un asiento aleatorio manteniendo el balance entre las secciones
+     * Retorna null si el avión está lleno
      */
     public Asiento asignarAsiento() {
-        // Buscamos la seccion con menor ocupación
-        List<String> seccionesMinimas = new ArrayList<>();
-        int minOcupacion = Integer.MAX_VALUE;
-
-        for (int i = 0; i < SECCIONES.length; i++) {
-            int ocupacion = ocupacionPorSeccion[i];
-            if (ocupacion < minOcupacion) {
-                minOcupacion = ocupacion;
-                seccionesMinimas.clear();
-                seccionesMinimas.add(SECCIONES[i]);
-            } else if (ocupacion == minOcupacion) {
-                seccionesMinimas.add(SECCIONES[i]);
+        return tomarAsiento(false);
+    }
+
+    /**
+     * Retiene un asiento aleatorio (elegido igual que en asignarAsiento)
+     * hasta que se confirme o se libere; retorna null si el avión está lleno
+     */
+    public Asiento retenerAsiento() {
+        return tomarAsiento(true);
+    }
+
+    private Asiento tomarAsiento(boolean retener) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean[] agotadas = null; // secciones sin bits libres aunque el contador no lo muestre todavía
+        while (true) {
+            int elegida = elegirSeccion(agotadas, random);
+            if (elegida < 0) {
+                return null; // Esta lleno
+            }
+            int indice = tomarLibre(elegida, random);
+            if (indice < 0) {
+                if (agotadas == null) {
+                    agotadas = new boolean[ocupacionPorSeccion.length];
+                }
+                agotadas[elegida] = true;
+                continue;
             }
+
+            // Acutalizamos el contador de la ocupación
+            ocupacionPorSeccion[elegida].increment();
+            totalOcupados.increment();
+            if (retener) {
+                cambiarBit(retenidos, (primeraPalabra[elegida] << 6) + indice, true);
+                totalRetenidos.increment();
+            }
+            return new Asiento(cabina.getNombre(elegida), indice + 1);
         }
+    }
 
-        // Si hay empate elegimos una al azar
-        Random random = new Random();
-        String seccionElegida = seccionesMinimas.get(random.nextInt(seccionesMinimas.size()));
+    /**
+     * Sección con menor ocupación relativa a su capacidad (con secciones
+     * iguales, la de menos asientos ocupados); los empates se eligen al azar
+     * en una sola pasada, así que cada contador se lee una vez
+     */
+    private int elegirSeccion(boolean[] agotadas, ThreadLocalRandom random) {
+        int elegida = -1;
+        long ocupacionElegida = 0;
+        int empates = 0;
+        for (int s = 0; s < ocupacionPorSeccion.length; s++) {
+            long ocupacion = ocupacionPorSeccion[s].sum();
+            if (ocupacion >= cabina.getCapacidad(s) || (agotadas != null && agotadas[s])) {
+                continue; // llena
+            }
+            int comparacion = elegida < 0 ? -1
+                    : Long.compare(ocupacion * cabina.getCapacidad(elegida),
+                            ocupacionElegida * cabina.getCapacidad(s));
+            if (comparacion < 0) {
+                elegida = s;
+                ocupacionElegida = ocupacion;
+                empates = 1;
+            } else if (comparacion == 0 && random.nextInt(++empates) == 0) {
+                elegida = s;
+                ocupacionElegida = ocupacion;
+            }
+        }
+        return elegida;
+    }
 
-        // Obtenemos los asientos libres de la seccion elegida
-        List<Asiento> asientosLibres = new ArrayList<>();
-        for (Asiento asiento : asientos.get(seccionElegida)) {
-            if (!asiento.isOcupado()) {
-                asientosLibres.add(asiento);
+    /**
+     * Toma un asiento libre al azar de la sección y retorna su índice
+     * (desde 0), o -1 si no queda ninguno. Si otro hilo gana la palabra
+     * elegida, vuelve a contar y elegir
+     */
+    private int tomarLibre(int seccion, ThreadLocalRandom random) {
+        int primera = primeraPalabra[seccion];
+        int palabras = primeraPalabra[seccion + 1] - primera;
+        while (true) {
+            int libres = 0;
+            for (int w = 0; w < palabras; w++) {
+                libres += Long.bitCount(libresEnPalabra(seccion, w, ocupados.get(primera + w)));
+            }
+            if (libres == 0) {
+                return -1;
+            }
+            int k = random.nextInt(libres);
+            for (int w = 0; w < palabras; w++) {
+                long palabra = ocupados.get(primera + w);
+                long candidatos = libresEnPalabra(seccion, w, palabra);
+                int cantidad = Long.bitCount(candidatos);
+                if (k >= cantidad) {
+                    k -= cantidad;
+                    continue;
+                }
+                for (; k > 0; k--) {
+                    candidatos &= candidatos - 1; // apaga el libre más bajo
+                }
+                long bit = Long.lowestOneBit(candidatos);
+                if (ocupados.compareAndSet(primera + w, palabra, palabra | bit)) {
+                    return (w << 6) + Long.numberOfTrailingZeros(bit);
+                }
+                break; // la palabra cambió: otra vuelta con los libres actuales
             }
         }
+    }
 
-        if (asientosLibres.isEmpty()) {
-            return null; // Esta lleno
+    /**
+     * Bits libres de la palabra w de una sección, sin los que pasan de su capacidad
+     */
+    private long libresEnPalabra(int seccion, int w, long palabra) {
+        long libres = ~palabra;
+        int restantes = cabina.getCapacidad(seccion) - (w << 6);
+        if (restantes < 64) {
+            libres &= (1L << restantes) - 1;
         }
+        return libres;
+    }
 
-        // Elegimos un asiento aleatorio entre los libres
-        Asiento asientoElegido = asientosLibres.get(random.nextInt(asientosLibres.size()));
-        asientoElegido.setOcupado(true);
+    /**
+     * Sección (32 bits altos) y posición en el mapa (32 bits bajos) de una
+     * etiqueta, o -1 si no es un asiento de este avión
+     */
+    private long ubicar(String etiqueta) {
+        if (etiqueta == null) {
+            return -1;
+        }
+        int largo = 0;
+        while (largo < etiqueta.length() && !Character.isDigit(etiqueta.charAt(largo))) {
+            largo++;
+        }
+        if (largo == 0 || largo == etiqueta.length()) {
+            return -1;
+        }
+        int seccion = cabina.buscarSeccion(etiqueta, largo);
+        if (seccion < 0) {
+            return -1;
+        }
+        int capacidad = cabina.getCapacidad(seccion);
+        int numero = 0;
+        for (int i = largo; i < etiqueta.length(); i++) {
+            int digito = Character.digit(etiqueta.charAt(i), 10);
+            if (digito < 0) {
+                return -1;
+            }
+            numero = numero * 10 + digito;
+            if (numero > capacidad) {
+                return -1;
+            }
+        }
+        if (numero < 1) {
+            return -1;
+        }
+        return ((long) seccion << 32) | ((primeraPalabra[seccion] << 6) + numero - 1);
+    }
 
-        // Acutalizamos el contador de la ocupación
-        int indiceSeccion = Arrays.asList(SECCIONES).indexOf(seccionElegida);
-        ocupacionPorSeccion[indiceSeccion]++;
+    private boolean estaOcupado(int posicion) {
+        return (ocupados.get(posicion >>> 6) & (1L << posicion)) != 0;
+    }
 
-        return asientoElegido;
+    private boolean estaRetenido(int posicion) {
+        return (retenidos.get(posicion >>> 6) & (1L << posicion)) != 0;
     }
 
     /**
-     * Liberar un asiento
+     * Pone el bit de la posición en 1 (o en 0); false si ya tenía ese valor
      */
-    public void liberarAsiento(String etiqueta) {
-        String seccion = etiqueta.substring(0, 1);
-        int numero = Integer.parseInt(etiqueta.substring(1));
-
-        List<Asiento> listaAsientos = asientos.get(seccion);
-        if (listaAsientos != null && numero >= 1 && numero <= ASIENTOS_SECCION) {
-            Asiento asiento = listaAsientos.get(numero - 1);
-            if (asiento.isOcupado()) {
-                asiento.setOcupado(false);
-                int indiceSeccion = Arrays.asList(SECCIONES).indexOf(seccion);
-                ocupacionPorSeccion[indiceSeccion]--;
+    private static boolean cambiarBit(AtomicLongArray mapa, int posicion, boolean valor) {
+        int indice = posicion >>> 6;
+        long bit = 1L << posicion;
+        while (true) {
+            long palabra = mapa.get(indice);
+            if (((palabra & bit) != 0) == valor) {
+                return false;
+            }
+            if (mapa.compareAndSet(indice, palabra, palabra ^ bit)) {
+                return true;
             }
         }
     }
 
+    /**
+     * Ocupa un asiento determinado (por ejemplo, al reproducir una reserva ya hecha)
+     * Retorna false si la etiqueta no existe o el asiento ya estaba ocupado
+     */
+    public boolean ocuparAsiento(String etiqueta) {
+        long ubicacion = ubicar(etiqueta);
+        if (ubicacion < 0 || !cambiarBit(ocupados, (int) ubicacion, true)) {
+            return false;
+        }
+        ocupacionPorSeccion[(int) (ubicacion >>> 32)].increment();
+        totalOcupados.increment();
+        return true;
+    }
+
+    /**
+     * Liberar un asiento vendido (uno retenido se libera con liberarRetencion)
+     */
+    public void liberarAsiento(String etiqueta) {
+        long ubicacion = ubicar(etiqueta);
+        if (ubicacion >= 0 && !estaRetenido((int) ubicacion) && cambiarBit(ocupados, (int) ubicacion, false)) {
+            ocupacionPorSeccion[(int) (ubicacion >>> 32)].decrement();
+            totalOcupados.decrement();
+        }
+    }
+
+    /**
+     * Confirma un asiento retenido: queda vendido
+     * Retorna false si el asiento no estaba retenido
+     */
+    public boolean confirmarAsiento(String etiqueta) {
+        long ubicacion = ubicar(etiqueta);
+        if (ubicacion < 0 || !cambiarBit(retenidos, (int) ubicacion, false)) {
+            return false;
+        }
+        totalRetenidos.decrement();
+        return true;
+    }
+
+    /**
+     * Libera un asiento retenido; false si el asiento no estaba retenido
+     */
+    public boolean liberarRetencion(String etiqueta) {
+        long ubicacion = ubicar(etiqueta);
+        if (ubicacion < 0 || !cambiarBit(retenidos, (int) ubicacion, false)) {
+            return false;
+        }
+        totalRetenidos.decrement();
+        cambiarBit(ocupados, (int) ubicacion, false);
+        ocupacionPorSeccion[(int) (ubicacion >>> 32)].decrement();
+        totalOcupados.decrement();
+        return true;
+    }
+
+    /**
+     * Verifica si queda al menos un asiento libre
+     */
+    public boolean hayAsientosLibres() {
+        return totalOcupados.sum() < cabina.getTotalAsientos();
+    }
+
     /**
      * Obtener el procentaje de ocupacion
      */
 
     public double getPorcentajeDeOcupacion() {
-        int totalOcupados = 0;
-        for (int ocupacion : ocupacionPorSeccion) {
-            totalOcupados += ocupacion;
-        }
-        return (totalOcupados * 100) / (SECCIONES.length * ASIENTOS_SECCION);
+        return getPorcentajeDeOcupacion(true);
+    }
+
+    /**
+     * Porcentaje de ocupación contando o no los asientos retenidos
+     */
+    public double getPorcentajeDeOcupacion(boolean contarRetenidos) {
+        int contados = totalOcupados.intValue() - (contarRetenidos ? 0 : totalRetenidos.intValue());
+        return (contados * 100) / cabina.getTotalAsientos();
     }
 
     /**
-     * Obtener ocypación por seccion
+     * Obtener ocupación por sección, en el orden de la cabina
      */
     public Map<String, Integer> getOcupacionPorSeccion() {
-        Map<String, Integer> resultado = new HashMap<>();
-        for (int i = 0; i < SECCIONES.length; i++) {
-            resultado.put(SECCIONES[i], ocupacionPorSeccion[i]);
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        for (int i = 0; i < ocupacionPorSeccion.length; i++) {
+            resultado.put(cabina.getNombre(i), ocupacionPorSeccion[i].intValue());
         }
         return resultado;
     }
 
     /**
-     * Obtener el total de asientos ocupados
+     * Asientos ocupados de una sección (por su posición en la cabina)
+     */
+    public int getOcupacionSeccion(int seccion) {
+        return ocupacionPorSeccion[seccion].intValue();
+    }
+
+    /**
+     * Obtener el total de asientos ocupados (vendidos y retenidos)
      */
     public int getTotalOcupados() {
-        int totalOcupados = 0;
-        for (int ocupacion : ocupacionPorSeccion) {
-            totalOcupados += ocupacion;
-        }
-        return totalOcupados;
+        return totalOcupados.intValue();
+    }
+
+    /**
+     * Obtener el total de asientos retenidos
+     */
+    public int getTotalRetenidos() {
+        return totalRetenidos.intValue();
     }
 
     /**
      * Obtiene el total de asientos
      */
     public int getTotalAsientos() {
-        return SECCIONES.length * ASIENTOS_SECCION;
+        return cabina.getTotalAsientos();
+    }
+
+    /**
+     * Mapa de ocupación: las secciones van una después de otra, y el bit
+     * (asientos de las secciones anteriores + número - 1) está en 1 si ese
+     * asiento está vendido (con la cabina estándar, sección * 10 + número - 1)
+     * Los retenidos quedan en 0: una retención no sobrevive a un reinicio
+     */
+    public long[] getMapaOcupacion() {
+        long[] mapa = new long[(getTotalAsientos() + 63) / 64];
+        int bit = 0;
+        for (int s = 0; s < ocupacionPorSeccion.length; s++) {
+            int base = primeraPalabra[s] << 6;
+            for (int i = 0; i < cabina.getCapacidad(s); i++, bit++) {
+                if (estaOcupado(base + i) && !estaRetenido(base + i)) {
+                    mapa[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+        return mapa;
+    }
+
+    /**
+     * Reemplaza la ocupación de todos los asientos por la del mapa (ver getMapaOcupacion)
+     * y descarta las retenciones. No debe correr a la vez que otras
+     * operaciones sobre el mismo avión
+     */
+    public void restaurarOcupacion(long[] mapa) {
+        long[] palabras = new long[ocupados.length()];
+        totalOcupados.reset();
+        totalRetenidos.reset();
+        int bit = 0;
+        for (int s = 0; s < ocupacionPorSeccion.length; s++) {
+            int base = primeraPalabra[s] << 6;
+            int ocupacion = 0;
+            for (int i = 0; i < cabina.getCapacidad(s); i++, bit++) {
+                if ((bit >>> 6) < mapa.length && (mapa[bit >>> 6] & (1L << bit)) != 0) {
+                    palabras[(base + i) >>> 6] |= 1L << (base + i);
+                    ocupacion++;
+                }
+            }
+            ocupacionPorSeccion[s].reset();
+            ocupacionPorSeccion[s].add(ocupacion);
+            totalOcupados.add(ocupacion);
+        }
+        for (int w = 0; w < palabras.length; w++) {
+            ocupados.set(w, palabras[w]);
+            retenidos.set(w, 0);
+        }
     }
 
     /**
      * Verifica si un asiento esta ocupado
      */
     public boolean isAsientoOcupado(String etiqueta) {
-        String seccion = etiqueta.substring(0, 1);
-        int numero = Integer.parseInt(etiqueta.substring(1));
+        long ubicacion = ubicar(etiqueta);
+        return ubicacion >= 0 && estaOcupado((int) ubicacion);
+    }
 
-        List<Asiento> listaAsientos = asientos.get(seccion);
-        if (listaAsientos != null && numero >= 1 && numero <= ASIENTOS_SECCION) {
-            return listaAsientos.get(numero - 1).isOcupado();
-        }
-        return false;
+    /**
+     * Verifica si un asiento esta retenido
+     */
+    public boolean isAsientoRetenido(String etiqueta) {
+        long ubicacion = ubicar(etiqueta);
+        return ubicacion >= 0 && estaRetenido((int) ubicacion);
     }
 }
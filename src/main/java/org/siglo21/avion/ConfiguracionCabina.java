@@ -0,0 +1,130 @@
+package org.siglo21.avion;
+
+import java.util.Arrays;
+
+/**
+ * Distribución de asientos de un avión: nombre y capacidad de cada sección
+ * Los asientos de una sección se numeran desde 1 y su etiqueta es el nombre
+ * de la sección seguido del número ("A1", "B10", "VIP3"), por eso los nombres
+ * no pueden tener dígitos.
+ */
+public final class ConfiguracionCabina {
+
+    /** Tres secciones (A, B y C) de diez asientos */
+    public static final ConfiguracionCabina ESTANDAR = uniforme(3, 10);
+
+    private final String[] nombres;
+    private final int[] capacidades;
+    private final int totalAsientos;
+
+    public ConfiguracionCabina(String[] nombres, int[] capacidades) {
+        if (nombres.length == 0 || nombres.length != capacidades.length) {
+            throw new IllegalArgumentException("Cada sección necesita nombre y capacidad");
+        }
+        long total = 0;
+        for (int s = 0; s < nombres.length; s++) {
+            String nombre = nombres[s];
+            if (nombre == null || nombre.isEmpty()) {
+                throw new IllegalArgumentException("La sección " + (s + 1) + " no tiene nombre");
+            }
+            for (int i = 0; i < nombre.length(); i++) {
+                if (Character.isDigit(nombre.charAt(i))) {
+                    throw new IllegalArgumentException("El nombre de sección no puede tener dígitos: " + nombre);
+                }
+            }
+            for (int otra = 0; otra < s; otra++) {
+                if (nombres[otra].equals(nombre)) {
+                    throw new IllegalArgumentException("Sección repetida: " + nombre);
+                }
+            }
+            if (capacidades[s] <= 0) {
+                throw new IllegalArgumentException("La sección " + nombre + " debe tener al menos un asiento");
+            }
+            total += capacidades[s];
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Demasiados asientos: " + total);
+        }
+        this.nombres = nombres.clone();
+        this.capacidades = capacidades.clone();
+        this.totalAsientos = (int) total;
+    }
+
+    /**
+     * Secciones de igual capacidad llamadas A, B, C, ..., Z, AA, AB, ...
+     */
+    public static ConfiguracionCabina uniforme(int secciones, int asientosPorSeccion) {
+        if (secciones <= 0) {
+            throw new IllegalArgumentException("Debe haber al menos una sección");
+        }
+        String[] nombres = new String[secciones];
+        int[] capacidades = new int[secciones];
+        for (int s = 0; s < secciones; s++) {
+            StringBuilder nombre = new StringBuilder();
+            for (int n = s; n >= 0; n = n / 26 - 1) {
+                nombre.insert(0, (char) ('A' + n % 26));
+            }
+            nombres[s] = nombre.toString();
+            capacidades[s] = asientosPorSeccion;
+        }
+        return new ConfiguracionCabina(nombres, capacidades);
+    }
+
+    public int getCantidadSecciones() {
+        return nombres.length;
+    }
+
+    public String getNombre(int seccion) {
+        return nombres[seccion];
+    }
+
+    public int getCapacidad(int seccion) {
+        return capacidades[seccion];
+    }
+
+    public int getTotalAsientos() {
+        return totalAsientos;
+    }
+
+    /**
+     * Sección cuyo nombre es exactamente etiqueta[0, largo), o -1
+     * No crea objetos: compara en el lugar
+     */
+    int buscarSeccion(String etiqueta, int largo) {
+        for (int s = 0; s < nombres.length; s++) {
+            if (nombres[s].length() == largo && etiqueta.regionMatches(0, nombres[s], 0, largo)) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) {
+            return true;
+        }
+        if (!(otro instanceof ConfiguracionCabina)) {
+            return false;
+        }
+        ConfiguracionCabina otra = (ConfiguracionCabina) otro;
+        return Arrays.equals(nombres, otra.nombres) && Arrays.equals(capacidades, otra.capacidades);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(nombres) + Arrays.hashCode(capacidades);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        for (int s = 0; s < nombres.length; s++) {
+            if (s > 0) {
+                texto.append(", ");
+            }
+            texto.append(nombres[s]).append(": ").append(capacidades[s]);
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,627 @@
+package org.siglo21.estructuras;
+
+import org.siglo21.vuelo.Reserva;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Árbol AVL de reservas indexado por número de reserva (clave long)
+ * <p>
+ * Inserción, búsqueda y eliminación iterativas, rango y selección por posición
+ * (tamaño de cada subárbol), rangos de claves, páginas y recorrido inorden
+ * perezoso. No usa objetos por nodo: cada nodo es una posición en arreglos
+ * paralelos (clave, reserva, hijos, altura y tamaño del subárbol), así que
+ * cada reserva agrega unos 25 bytes, y comparar claves es comparar dos long. La posición 0 es un
+ * centinela que hace de hijo nulo (altura y tamaño 0). Las posiciones que
+ * quedan libres al eliminar se reutilizan.
+ * <p>
+ * Un lote ordenado (por ejemplo, las reservas de un vuelo al restaurar un
+ * snapshot) se carga en tiempo lineal: se mezcla con el recorrido inorden del
+ * árbol y se arma de nuevo un árbol perfectamente balanceado, en el que el
+ * nodo de la posición i del recorrido ocupa la posición i + 1 de los arreglos.
+ */
+public class ArbolReservas implements Iterable<Reserva> {
+
+    // Un AVL de altura 46 ya necesita más de 2^31 nodos
+    private static final int ALTURA_MAXIMA = 46;
+    private static final int NULO = 0;
+    private static final int CAPACIDAD_INICIAL = 8;
+
+    private long[] claves;
+    private Reserva[] reservas;
+    private int[] izquierdo;
+    private int[] derecho;
+    private int[] tamano;  // nodos del subárbol, incluido este
+    private byte[] altura;
+    private int raiz = NULO;
+    private int usados = 1; // posiciones ocupadas alguna vez (la 0 es el centinela)
+    private int libre = NULO; // lista de posiciones libres, encadenadas por izquierdo
+    private int modificaciones;
+
+    public ArbolReservas() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    /**
+     * Árbol armado en tiempo lineal con reservas ordenadas por número, sin
+     * repetidos (la clave de cada una es su número)
+     *
+     * @throws IllegalArgumentException si no vienen ordenadas o no son exactamente cantidad
+     */
+    public ArbolReservas(Iterator<Reserva> ordenadas, int cantidad) {
+        this(0);
+        insertarOrdenadas(ordenadas, cantidad);
+    }
+
+    /**
+     * Árbol con lugar para la cantidad de reservas indicada sin volver a crecer
+     */
+    public ArbolReservas(int capacidad) {
+        int posiciones = Math.max(2, capacidad + 1);
+        claves = new long[posiciones];
+        reservas = new Reserva[posiciones];
+        izquierdo = new int[posiciones];
+        derecho = new int[posiciones];
+        tamano = new int[posiciones];
+        altura = new byte[posiciones];
+    }
+
+    private int nuevoNodo(long clave, Reserva reserva) {
+        int nodo;
+        if (libre != NULO) {
+            nodo = libre;
+            libre = izquierdo[nodo];
+        } else {
+            if (usados == claves.length) {
+                crecer();
+            }
+            nodo = usados++;
+        }
+        claves[nodo] = clave;
+        reservas[nodo] = reserva;
+        izquierdo[nodo] = NULO;
+        derecho[nodo] = NULO;
+        tamano[nodo] = 1;
+        altura[nodo] = 1;
+        return nodo;
+    }
+
+    private void liberarNodo(int nodo) {
+        reservas[nodo] = null;
+        izquierdo[nodo] = libre;
+        libre = nodo;
+    }
+
+    private void crecer() {
+        int capacidad = claves.length * 2;
+        claves = Arrays.copyOf(claves, capacidad);
+        reservas = Arrays.copyOf(reservas, capacidad);
+        izquierdo = Arrays.copyOf(izquierdo, capacidad);
+        derecho = Arrays.copyOf(derecho, capacidad);
+        tamano = Arrays.copyOf(tamano, capacidad);
+        altura = Arrays.copyOf(altura, capacidad);
+    }
+
+    private int factorDeBalance(int nodo) {
+        return altura[izquierdo[nodo]] - altura[derecho[nodo]];
+    }
+
+    /**
+     * Actualiza la altura y el tamaño de un nodo a partir de sus hijos
+     */
+    private void actualizar(int nodo) {
+        int izq = izquierdo[nodo];
+        int der = derecho[nodo];
+        altura[nodo] = (byte) (1 + Math.max(altura[izq], altura[der]));
+        tamano[nodo] = 1 + tamano[izq] + tamano[der];
+    }
+
+    /**
+     * Rotación simple a la derecha
+     */
+    private int rotarDerecha(int nodoY) {
+        int nodoX = izquierdo[nodoY];
+        izquierdo[nodoY] = derecho[nodoX];
+        derecho[nodoX] = nodoY;
+        actualizar(nodoY);
+        actualizar(nodoX);
+        return nodoX;
+    }
+
+    /**
+     * Rotación simple a la izquierda
+     */
+    private int rotarIzquierda(int nodoX) {
+        int nodoY = derecho[nodoX];
+        derecho[nodoX] = izquierdo[nodoY];
+        izquierdo[nodoY] = nodoX;
+        actualizar(nodoX);
+        actualizar(nodoY);
+        return nodoY;
+    }
+
+    /**
+     * Actualiza el nodo y lo rota si quedó desbalanceado; retorna la nueva
+     * raíz del subárbol
+     */
+    private int balancear(int nodo) {
+        actualizar(nodo);
+        int balance = factorDeBalance(nodo);
+
+        if (balance > 1) {
+            // Izquierda-derecha: primero se endereza el hijo
+            if (factorDeBalance(izquierdo[nodo]) < 0) {
+                izquierdo[nodo] = rotarIzquierda(izquierdo[nodo]);
+            }
+            return rotarDerecha(nodo);
+        }
+        if (balance < -1) {
+            // Derecha-izquierda: primero se endereza el hijo
+            if (factorDeBalance(derecho[nodo]) > 0) {
+                derecho[nodo] = rotarDerecha(derecho[nodo]);
+            }
+            return rotarIzquierda(nodo);
+        }
+        return nodo;
+    }
+
+    /**
+     * Rebalancea desde el final del camino hasta la raíz
+     */
+    private void rebalancearCamino(int[] camino, int largo) {
+        for (int i = largo - 1; i >= 0; i--) {
+            int nodo = camino[i];
+            int nuevo = balancear(nodo);
+            if (nuevo != nodo) {
+                reemplazarHijo(camino, i, nodo, nuevo);
+            }
+        }
+    }
+
+    /**
+     * Pone nuevo en el lugar de hijo, que es camino[i] (o la raíz si i es 0)
+     */
+    private void reemplazarHijo(int[] camino, int i, int hijo, int nuevo) {
+        if (i == 0) {
+            raiz = nuevo;
+        } else if (izquierdo[camino[i - 1]] == hijo) {
+            izquierdo[camino[i - 1]] = nuevo;
+        } else {
+            derecho[camino[i - 1]] = nuevo;
+        }
+    }
+
+    /**
+     * Insertar reserva; si el número ya existe se reemplaza la reserva
+     */
+    public void insertar(long clave, Reserva reserva) {
+        if (raiz == NULO) {
+            raiz = nuevoNodo(clave, reserva);
+            modificaciones++;
+            return;
+        }
+
+        int[] camino = new int[ALTURA_MAXIMA];
+        int largo = 0;
+        int nodo = raiz;
+        while (true) {
+            camino[largo++] = nodo;
+            if (clave == claves[nodo]) {
+                reservas[nodo] = reserva;
+                return;
+            }
+            int hijo = clave < claves[nodo] ? izquierdo[nodo] : derecho[nodo];
+            if (hijo == NULO) {
+                // nuevoNodo puede agrandar los arreglos: se crea antes de enlazarlo
+                int nuevo = nuevoNodo(clave, reserva);
+                if (clave < claves[nodo]) {
+                    izquierdo[nodo] = nuevo;
+                } else {
+                    derecho[nodo] = nuevo;
+                }
+                break;
+            }
+            nodo = hijo;
+        }
+
+        modificaciones++;
+        rebalancearCamino(camino, largo);
+    }
+
+    /**
+     * Agrega un lote de reservas ordenadas por número, sin repetidos (la clave
+     * de cada una es su número); las que ya estaban con el mismo número se
+     * reemplazan. Si el lote es grande respecto del árbol se mezcla con el
+     * recorrido inorden y se rearma todo en O(n + cantidad); si es chico
+     * conviene insertar de a una. Si el lote es inválido el árbol no cambia.
+     *
+     * @throws IllegalArgumentException si no vienen ordenadas o no son exactamente cantidad
+     */
+    public void insertarOrdenadas(Iterator<Reserva> ordenadas, int cantidad) {
+        if (cantidad < 0) {
+            throw new IllegalArgumentException("La cantidad no puede ser negativa");
+        }
+        int actuales = tamano();
+        long total = (long) actuales + cantidad;
+        if (total >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Demasiadas reservas para un árbol: " + total);
+        }
+        if (actuales > 0 && (long) cantidad * (64 - Long.numberOfLeadingZeros(total)) < actuales) {
+            insertarDeAUna(ordenadas, cantidad);
+            return;
+        }
+
+        int[] enOrden = posicionesEnOrden();
+        long[] nuevasClaves = new long[(int) total + 1];
+        Reserva[] nuevasReservas = new Reserva[(int) total + 1];
+
+        // Mezcla: las posiciones de los arreglos nuevos quedan en orden inorden desde 1
+        int i = 0;
+        int n = 1;
+        long anterior = Long.MIN_VALUE;
+        for (int k = 0; k < cantidad; k++) {
+            if (!ordenadas.hasNext()) {
+                throw new IllegalArgumentException("El lote tiene " + k + " reservas y se esperaban " + cantidad);
+            }
+            Reserva reserva = ordenadas.next();
+            long clave = reserva.getNumero();
+            if (k > 0 && clave <= anterior) {
+                throw new IllegalArgumentException("El lote no está ordenado por número: "
+                        + reserva.getCodigoReserva());
+            }
+            anterior = clave;
+            while (i < actuales && claves[enOrden[i]] < clave) {
+                nuevasClaves[n] = claves[enOrden[i]];
+                nuevasReservas[n++] = reservas[enOrden[i++]];
+            }
+            if (i < actuales && claves[enOrden[i]] == clave) {
+                i++; // la del lote reemplaza a la existente
+            }
+            nuevasClaves[n] = clave;
+            nuevasReservas[n++] = reserva;
+        }
+        if (ordenadas.hasNext()) {
+            throw new IllegalArgumentException("El lote tiene más de " + cantidad + " reservas");
+        }
+        while (i < actuales) {
+            nuevasClaves[n] = claves[enOrden[i]];
+            nuevasReservas[n++] = reservas[enOrden[i++]];
+        }
+
+        claves = nuevasClaves;
+        reservas = nuevasReservas;
+        izquierdo = new int[nuevasClaves.length];
+        derecho = new int[nuevasClaves.length];
+        tamano = new int[nuevasClaves.length];
+        altura = new byte[nuevasClaves.length];
+        usados = n;
+        libre = NULO;
+        raiz = construir(1, n);
+        modificaciones++;
+    }
+
+    /**
+     * Valida el lote completo antes de tocar el árbol y lo inserta de a una
+     */
+    private void insertarDeAUna(Iterator<Reserva> ordenadas, int cantidad) {
+        Reserva[] lote = new Reserva[cantidad];
+        for (int k = 0; k < cantidad; k++) {
+            if (!ordenadas.hasNext()) {
+                throw new IllegalArgumentException("El lote tiene " + k + " reservas y se esperaban " + cantidad);
+            }
+            lote[k] = ordenadas.next();
+            if (k > 0 && lote[k].getNumero() <= lote[k - 1].getNumero()) {
+                throw new IllegalArgumentException("El lote no está ordenado por número: "
+                        + lote[k].getCodigoReserva());
+            }
+        }
+        if (ordenadas.hasNext()) {
+            throw new IllegalArgumentException("El lote tiene más de " + cantidad + " reservas");
+        }
+        for (Reserva reserva : lote) {
+            insertar(reserva.getNumero(), reserva);
+        }
+    }
+
+    /**
+     * Posiciones de los nodos en orden de clave
+     */
+    private int[] posicionesEnOrden() {
+        int[] enOrden = new int[tamano()];
+        int[] pila = new int[ALTURA_MAXIMA];
+        int tope = 0;
+        int n = 0;
+        int nodo = raiz;
+        while (nodo != NULO || tope > 0) {
+            while (nodo != NULO) {
+                pila[tope++] = nodo;
+                nodo = izquierdo[nodo];
+            }
+            nodo = pila[--tope];
+            enOrden[n++] = nodo;
+            nodo = derecho[nodo];
+        }
+        return enOrden;
+    }
+
+    /**
+     * Enlaza como subárbol balanceado las posiciones [desde, hasta), ya en
+     * orden, y retorna su raíz. Las mitades difieren a lo sumo en un nodo, así
+     * que las alturas de los hermanos también; la recursión tiene profundidad
+     * log2(n).
+     */
+    private int construir(int desde, int hasta) {
+        if (desde >= hasta) {
+            return NULO;
+        }
+        int medio = (desde + hasta) >>> 1;
+        izquierdo[medio] = construir(desde, medio);
+        derecho[medio] = construir(medio + 1, hasta);
+        actualizar(medio);
+        return medio;
+    }
+
+    /**
+     * Busca reserva por número
+     */
+    public Reserva buscar(long clave) {
+        int nodo = raiz;
+        while (nodo != NULO) {
+            long actual = claves[nodo];
+            if (clave == actual) {
+                return reservas[nodo];
+            }
+            nodo = clave < actual ? izquierdo[nodo] : derecho[nodo];
+        }
+        return null;
+    }
+
+    /**
+     * Elimina una reserva por número
+     * Retorna la reserva eliminada, o null si el número no estaba
+     */
+    public Reserva eliminar(long clave) {
+        int[] camino = new int[ALTURA_MAXIMA];
+        int largo = 0;
+        int nodo = raiz;
+        while (nodo != NULO && clave != claves[nodo]) {
+            camino[largo++] = nodo;
+            nodo = clave < claves[nodo] ? izquierdo[nodo] : derecho[nodo];
+        }
+        if (nodo == NULO) {
+            return null;
+        }
+        Reserva eliminada = reservas[nodo];
+
+        if (izquierdo[nodo] != NULO && derecho[nodo] != NULO) {
+            // Dos hijos: el sucesor inorden (mínimo del subárbol derecho) ocupa
+            // su lugar y se quita el nodo del sucesor, que no tiene hijo izquierdo
+            camino[largo++] = nodo;
+            int sucesor = derecho[nodo];
+            while (izquierdo[sucesor] != NULO) {
+                camino[largo++] = sucesor;
+                sucesor = izquierdo[sucesor];
+            }
+            claves[nodo] = claves[sucesor];
+            reservas[nodo] = reservas[sucesor];
+            reemplazarHijo(camino, largo, sucesor, derecho[sucesor]);
+            liberarNodo(sucesor);
+        } else {
+            int hijo = izquierdo[nodo] != NULO ? izquierdo[nodo] : derecho[nodo];
+            reemplazarHijo(camino, largo, nodo, hijo);
+            liberarNodo(nodo);
+        }
+
+        modificaciones++;
+        rebalancearCamino(camino, largo);
+        return eliminada;
+    }
+
+    /**
+     * Cantidad de reservas en el árbol
+     */
+    public int tamano() {
+        return tamano[raiz];
+    }
+
+    /**
+     * Cantidad de números menores al indicado, es decir, la posición (desde 0)
+     * que tiene o tendría en el recorrido inorden
+     */
+    public int posicion(long clave) {
+        return contarMenores(clave, false);
+    }
+
+    private int contarMenores(long clave, boolean incluirIgual) {
+        int cantidad = 0;
+        int nodo = raiz;
+        while (nodo != NULO) {
+            long actual = claves[nodo];
+            if (clave < actual || (clave == actual && !incluirIgual)) {
+                nodo = izquierdo[nodo];
+            } else {
+                cantidad += tamano[izquierdo[nodo]] + 1;
+                if (clave == actual) {
+                    break;
+                }
+                nodo = derecho[nodo];
+            }
+        }
+        return cantidad;
+    }
+
+    /**
+     * Reserva que ocupa la posición indicada (desde 0) en el recorrido inorden
+     */
+    public Reserva seleccionar(int posicion) {
+        if (posicion < 0 || posicion >= tamano()) {
+            throw new IndexOutOfBoundsException("Posición " + posicion + " fuera de rango (" + tamano() + " reservas)");
+        }
+        int nodo = raiz;
+        while (true) {
+            int izquierdos = tamano[izquierdo[nodo]];
+            if (posicion < izquierdos) {
+                nodo = izquierdo[nodo];
+            } else if (posicion == izquierdos) {
+                return reservas[nodo];
+            } else {
+                posicion -= izquierdos + 1;
+                nodo = derecho[nodo];
+            }
+        }
+    }
+
+    /**
+     * Cantidad de reservas con número entre desde y hasta (ambos incluidos)
+     */
+    public int contarRango(long desde, long hasta) {
+        if (desde > hasta) {
+            return 0;
+        }
+        return contarMenores(hasta, true) - contarMenores(desde, false);
+    }
+
+    /**
+     * Reservas con número entre desde y hasta (ambos incluidos), en orden
+     */
+    public List<Reserva> buscarRango(long desde, long hasta) {
+        List<Reserva> resultado = new ArrayList<Reserva>(contarRango(desde, hasta));
+        Iterator<Reserva> it = iterador(desde, hasta);
+        while (it.hasNext()) {
+            resultado.add(it.next());
+        }
+        return resultado;
+    }
+
+    /**
+     * Hasta cantidad reservas a partir de la posición desde del recorrido
+     * inorden; no recorre las anteriores
+     */
+    public List<Reserva> pagina(int desde, int cantidad) {
+        if (desde < 0 || cantidad < 0) {
+            throw new IllegalArgumentException("Posición y cantidad no pueden ser negativas");
+        }
+        List<Reserva> resultado = new ArrayList<Reserva>(Math.max(0, Math.min(cantidad, tamano() - desde)));
+        Iterador it = new Iterador(Long.MAX_VALUE);
+        it.bajarHastaPosicion(desde);
+        while (resultado.size() < cantidad && it.hasNext()) {
+            resultado.add(it.next());
+        }
+        return resultado;
+    }
+
+    /**
+     * Recorrido en orden perezoso de todas las reservas
+     */
+    @Override
+    public Iterator<Reserva> iterator() {
+        Iterador it = new Iterador(Long.MAX_VALUE);
+        it.bajarHastaPosicion(0);
+        return it;
+    }
+
+    /**
+     * Recorrido en orden perezoso de las reservas con número entre desde y
+     * hasta (ambos incluidos)
+     */
+    public Iterator<Reserva> iterador(long desde, long hasta) {
+        Iterador it = new Iterador(hasta);
+        it.bajarHastaClave(desde);
+        return it;
+    }
+
+    /**
+     * Recorrido en orden (inorder)
+     */
+    public List<Reserva> inOrder() {
+        List<Reserva> resultado = new ArrayList<Reserva>(tamano());
+        for (Reserva reserva : this) {
+            resultado.add(reserva);
+        }
+        return resultado;
+    }
+
+    /**
+     * Verifica si el árbol esta vacío
+     */
+    public boolean estaVacio() {
+        return raiz == NULO;
+    }
+
+    /**
+     * Iterador inorden con pila explícita de posiciones
+     */
+    private final class Iterador implements Iterator<Reserva> {
+        private final int[] pila = new int[ALTURA_MAXIMA];
+        private final long hasta;
+        private final int modificacionesEsperadas = modificaciones;
+        private int tope;
+
+        Iterador(long hasta) {
+            this.hasta = hasta;
+        }
+
+        /**
+         * Apila el camino hasta la reserva en la posición indicada
+         */
+        void bajarHastaPosicion(int posicion) {
+            int nodo = raiz;
+            while (nodo != NULO) {
+                int izquierdos = tamano[izquierdo[nodo]];
+                if (posicion <= izquierdos) {
+                    pila[tope++] = nodo;
+                    if (posicion == izquierdos) {
+                        return;
+                    }
+                    nodo = izquierdo[nodo];
+                } else {
+                    posicion -= izquierdos + 1;
+                    nodo = derecho[nodo];
+                }
+            }
+        }
+
+        /**
+         * Apila el camino hasta el primer número mayor o igual al indicado
+         */
+        void bajarHastaClave(long clave) {
+            int nodo = raiz;
+            while (nodo != NULO) {
+                if (clave <= claves[nodo]) {
+                    pila[tope++] = nodo;
+                    if (clave == claves[nodo]) {
+                        return;
+                    }
+                    nodo = izquierdo[nodo];
+                } else {
+                    nodo = derecho[nodo];
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (modificaciones != modificacionesEsperadas) {
+                throw new ConcurrentModificationException("El árbol cambió durante el recorrido");
+            }
+            return tope > 0 && claves[pila[tope - 1]] <= hasta;
+        }
+
+        @Override
+        public Reserva next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int nodo = pila[--tope];
+            for (int hijo = derecho[nodo]; hijo != NULO; hijo = izquierdo[hijo]) {
+                pila[tope++] = hijo;
+            }
+            return reservas[nodo];
+        }
+    }
+}
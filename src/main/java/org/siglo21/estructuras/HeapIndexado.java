@@ -0,0 +1,168 @@
+package org.siglo21.estructuras;
+
+import java.util.Arrays;
+
+/**
+ * Heap d-ario indexado por id entero
+ * Ordena por una clave primaria y desempata por una secundaria, y permite
+ * reducir la clave de un id que ya está en el heap (decrease-key)
+ */
+public class HeapIndexado {
+
+    private final int aridad;
+    private int[] heap;
+    private int[] posicion; // id -> posición en el heap, -1 si no está
+    private double[] primaria;
+    private double[] secundaria;
+    private int tamano;
+
+    public HeapIndexado(int capacidad, int aridad) {
+        if (aridad < 2) {
+            throw new IllegalArgumentException("La aridad debe ser al menos 2");
+        }
+        this.aridad = aridad;
+        this.heap = new int[capacidad];
+        this.posicion = new int[capacidad];
+        this.primaria = new double[capacidad];
+        this.secundaria = new double[capacidad];
+        Arrays.fill(posicion, -1);
+    }
+
+    /**
+     * Amplía el heap para admitir ids menores a la capacidad indicada
+     */
+    public void asegurarCapacidad(int capacidad) {
+        if (capacidad <= posicion.length) {
+            return;
+        }
+        int anterior = posicion.length;
+        heap = Arrays.copyOf(heap, capacidad);
+        posicion = Arrays.copyOf(posicion, capacidad);
+        primaria = Arrays.copyOf(primaria, capacidad);
+        secundaria = Arrays.copyOf(secundaria, capacidad);
+        Arrays.fill(posicion, anterior, capacidad, -1);
+    }
+
+    public boolean estaVacio() {
+        return tamano == 0;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public boolean contiene(int id) {
+        return posicion[id] >= 0;
+    }
+
+    /**
+     * Clave primaria del mínimo, sin extraerlo
+     */
+    public double primariaMinima() {
+        return primaria[heap[0]];
+    }
+
+    /**
+     * Clave secundaria del mínimo, sin extraerlo
+     */
+    public double secundariaMinima() {
+        return secundaria[heap[0]];
+    }
+
+    /**
+     * Inserta un id o reduce su clave si ya estaba en el heap
+     * Si la clave nueva no es menor a la actual no hace nada
+     */
+    public void insertarOReducir(int id, double clavePrimaria, double claveSecundaria) {
+        int pos = posicion[id];
+        if (pos < 0) {
+            pos = tamano++;
+            heap[pos] = id;
+            posicion[id] = pos;
+        } else if (!menor(clavePrimaria, claveSecundaria, primaria[id], secundaria[id])) {
+            return;
+        }
+        primaria[id] = clavePrimaria;
+        secundaria[id] = claveSecundaria;
+        subir(pos);
+    }
+
+    /**
+     * Extrae el id con menor clave
+     */
+    public int extraerMinimo() {
+        int minimo = heap[0];
+        posicion[minimo] = -1;
+        tamano--;
+        if (tamano > 0) {
+            int ultimo = heap[tamano];
+            heap[0] = ultimo;
+            posicion[ultimo] = 0;
+            bajar(0);
+        }
+        return minimo;
+    }
+
+    /**
+     * Vacía el heap dejando los arreglos listos para reutilizarse
+     */
+    public void limpiar() {
+        for (int i = 0; i < tamano; i++) {
+            posicion[heap[i]] = -1;
+        }
+        tamano = 0;
+    }
+
+    private void subir(int pos) {
+        int id = heap[pos];
+        double p = primaria[id];
+        double s = secundaria[id];
+        while (pos > 0) {
+            int padre = (pos - 1) / aridad;
+            int idPadre = heap[padre];
+            if (!menor(p, s, primaria[idPadre], secundaria[idPadre])) {
+                break;
+            }
+            heap[pos] = idPadre;
+            posicion[idPadre] = pos;
+            pos = padre;
+        }
+        heap[pos] = id;
+        posicion[id] = pos;
+    }
+
+    private void bajar(int pos) {
+        int id = heap[pos];
+        double p = primaria[id];
+        double s = secundaria[id];
+        while (true) {
+            int primerHijo = pos * aridad + 1;
+            if (primerHijo >= tamano) {
+                break;
+            }
+            // Buscar el menor de los hijos
+            int ultimoHijo = Math.min(primerHijo + aridad, tamano);
+            int mejor = primerHijo;
+            int idMejor = heap[primerHijo];
+            for (int h = primerHijo + 1; h < ultimoHijo; h++) {
+                int idHijo = heap[h];
+                if (menor(primaria[idHijo], secundaria[idHijo], primaria[idMejor], secundaria[idMejor])) {
+                    mejor = h;
+                    idMejor = idHijo;
+                }
+            }
+            if (!menor(primaria[idMejor], secundaria[idMejor], p, s)) {
+                break;
+            }
+            heap[pos] = idMejor;
+            posicion[idMejor] = pos;
+            pos = mejor;
+        }
+        heap[pos] = id;
+        posicion[id] = pos;
+    }
+
+    private static boolean menor(double p1, double s1, double p2, double s2) {
+        return p1 < p2 || (p1 == p2 && s1 < s2);
+    }
+}
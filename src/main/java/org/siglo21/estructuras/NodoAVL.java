@@ -1,61 +0,0 @@
-package org.siglo21.estructuras;
-
-import org.siglo21.vuelo.Reserva;
-
-/*
- * Nodo del Árbol AVL
- */
-public class NodoAVL {
-
-    private String clave;
-    private Reserva reserva;
-    private NodoAVL izquierdo;
-    private NodoAVL derecho;
-    private int altura;
-
-    public NodoAVL(String clave, Reserva reserva) {
-        this.clave = clave;
-        this.reserva = reserva;
-        this.altura = 1;
-    }
-
-    public String getClave() {
-        return clave;
-    }
-
-    public void setClave(String clave) {
-        this.clave = clave;
-    }
-
-    public Reserva getReserva() {
-        return reserva;
-    }
-
-    public void setReserva(Reserva reserva) {
-        this.reserva = reserva;
-    }
-
-    public NodoAVL getIzquierdo() {
-        return izquierdo;
-    }
-
-    public void setIzquierdo(NodoAVL izquierdo) {
-        this.izquierdo = izquierdo;
-    }
-
-    public NodoAVL getDerecho() {
-        return derecho;
-    }
-
-    public void setDerecho(NodoAVL derecho) {
-        this.derecho = derecho;
-    }
-
-    public int getAltura() {
-        return altura;
-    }
-
-    public void setAltura(int altura) {
-        this.altura = altura;
-    }
-}
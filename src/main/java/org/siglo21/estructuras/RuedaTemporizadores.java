@@ -0,0 +1,191 @@
+package org.siglo21.estructuras;
+
+import java.util.function.Consumer;
+
+/**
+ * Rueda jerárquica de temporizadores (al estilo del kernel de Linux)
+ * El tiempo se mide en ticks enteros. Hay NIVELES ruedas de 64 ranuras: la
+ * del nivel 0 tiene una ranura por tick y cada nivel siguiente agrupa 64
+ * ranuras del anterior. Programar y cancelar son O(1) (listas doblemente
+ * enlazadas por ranura); al avanzar, cada temporizador baja de nivel a lo
+ * sumo NIVELES - 1 veces antes de vencer. Los vencimientos más allá del
+ * alcance de la rueda se guardan en la última ranura posible y se vuelven a
+ * ubicar al bajar.
+ * <p>
+ * No es segura para varios hilos: quien la use debe sincronizarla.
+ */
+public class RuedaTemporizadores<T> {
+
+    private static final int BITS = 6;
+    private static final int RANURAS = 1 << BITS;
+    private static final int MASCARA = RANURAS - 1;
+    private static final int NIVELES = 4;
+    private static final long ALCANCE = 1L << (BITS * NIVELES); // ticks cubiertos por la rueda
+
+    /**
+     * Temporizador programado; sirve para cancelarlo
+     */
+    public static final class Temporizador<T> {
+        private final T elemento;
+        private final long vencimiento;
+        private Temporizador<T> anterior;
+        private Temporizador<T> siguiente;
+        private int ranura = -1; // nivel * RANURAS + ranura, -1 si no está en la rueda
+
+        private Temporizador(T elemento, long vencimiento) {
+            this.elemento = elemento;
+            this.vencimiento = vencimiento;
+        }
+
+        public T getElemento() {
+            return elemento;
+        }
+
+        public long getVencimiento() {
+            return vencimiento;
+        }
+
+        public boolean estaProgramado() {
+            return ranura >= 0;
+        }
+    }
+
+    private final Temporizador<T>[] ranuras = nuevasRanuras(); // primera de cada lista
+    private long actual; // último tick procesado
+    private int tamano;
+
+    public RuedaTemporizadores(long inicio) {
+        this.actual = inicio;
+    }
+
+    /**
+     * Arreglo vacío de ranuras; solo guarda temporizadores de esta rueda
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Temporizador<T>[] nuevasRanuras() {
+        return (Temporizador<T>[]) new Temporizador<?>[NIVELES * RANURAS];
+    }
+
+    /**
+     * Último tick procesado
+     */
+    public long getActual() {
+        return actual;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Programa un elemento para el tick indicado; si ese tick ya pasó, vence
+     * en el próximo avance
+     */
+    public Temporizador<T> programar(T elemento, long vencimiento) {
+        Temporizador<T> temporizador = new Temporizador<>(elemento, vencimiento);
+        colocar(temporizador, actual + 1);
+        tamano++;
+        return temporizador;
+    }
+
+    /**
+     * Cancela un temporizador; false si ya venció o ya estaba cancelado
+     */
+    public boolean cancelar(Temporizador<T> temporizador) {
+        if (temporizador.ranura < 0) {
+            return false;
+        }
+        quitar(temporizador);
+        tamano--;
+        return true;
+    }
+
+    /**
+     * Avanza hasta el tick indicado y entrega cada elemento vencido, en orden
+     * de tick; retorna cuántos vencieron
+     */
+    public int avanzar(long hasta, Consumer<? super T> alVencer) {
+        int vencidos = 0;
+        while (actual < hasta) {
+            if (tamano == 0) {
+                actual = hasta; // nada programado: no hace falta recorrer los ticks
+                break;
+            }
+            actual++;
+            // Al empezar un bloque de 64^n ticks se bajan los temporizadores
+            // de ese bloque, del nivel más alto al más bajo
+            int nivel = 0;
+            while (nivel < NIVELES - 1 && ((actual >>> (BITS * (nivel + 1))) << (BITS * (nivel + 1))) == actual) {
+                nivel++;
+            }
+            for (; nivel > 0; nivel--) {
+                bajar(nivel * RANURAS + (int) ((actual >>> (BITS * nivel)) & MASCARA));
+            }
+
+            int indice = (int) (actual & MASCARA);
+            Temporizador<T> temporizador;
+            while ((temporizador = ranuras[indice]) != null) {
+                quitar(temporizador);
+                tamano--;
+                vencidos++;
+                alVencer.accept(temporizador.elemento);
+            }
+        }
+        return vencidos;
+    }
+
+    /**
+     * Vuelve a ubicar todos los temporizadores de una ranura de un nivel alto
+     */
+    private void bajar(int ranura) {
+        Temporizador<T> temporizador = ranuras[ranura];
+        ranuras[ranura] = null;
+        while (temporizador != null) {
+            Temporizador<T> siguiente = temporizador.siguiente;
+            temporizador.ranura = -1;
+            colocar(temporizador, actual);
+            temporizador = siguiente;
+        }
+    }
+
+    /**
+     * Ubica el temporizador según cuánto falta para su vencimiento; si vence
+     * antes de minimo, lo ubica en minimo
+     */
+    private void colocar(Temporizador<T> temporizador, long minimo) {
+        long tick = Math.max(temporizador.vencimiento, minimo);
+        long falta = tick - actual;
+        if (falta >= ALCANCE) {
+            falta = ALCANCE - 1;
+            tick = actual + falta;
+        }
+        int nivel = 0;
+        while (falta >= (1L << (BITS * (nivel + 1)))) {
+            nivel++;
+        }
+        int ranura = nivel * RANURAS + (int) ((tick >>> (BITS * nivel)) & MASCARA);
+
+        Temporizador<T> primero = ranuras[ranura];
+        temporizador.anterior = null;
+        temporizador.siguiente = primero;
+        if (primero != null) {
+            primero.anterior = temporizador;
+        }
+        ranuras[ranura] = temporizador;
+        temporizador.ranura = ranura;
+    }
+
+    private void quitar(Temporizador<T> temporizador) {
+        if (temporizador.anterior != null) {
+            temporizador.anterior.siguiente = temporizador.siguiente;
+        } else {
+            ranuras[temporizador.ranura] = temporizador.siguiente;
+        }
+        if (temporizador.siguiente != null) {
+            temporizador.siguiente.anterior = temporizador.anterior;
+        }
+        temporizador.anterior = null;
+        temporizador.siguiente = null;
+        temporizador.ranura = -1;
+    }
+}
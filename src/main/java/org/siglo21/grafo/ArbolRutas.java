@@ -0,0 +1,124 @@
+package org.siglo21.grafo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Árbol de rutas mínimas (tiempo, desempate por precio) desde un origen
+ * Sale de una sola búsqueda completa y da el itinerario a cualquier ciudad
+ * alcanzable sin volver a buscar. Es inmutable y corresponde a la versión
+ * del grafo con la que se construyó.
+ */
+public final class ArbolRutas {
+
+    private final GrafoCompilado grafo;
+    private final int origen;
+    private final double[] tiempo;    // infinito si la ciudad no es alcanzable
+    private final double[] precio;
+    private final int[] aristaPrevia; // -1 en el origen y en las no alcanzables
+    private final int[] orden;        // alcanzables en orden de asentamiento, empezando por el origen
+
+    ArbolRutas(GrafoCompilado grafo, int origen, EspacioBusqueda espacio) {
+        int n = grafo.ciudades.length;
+        this.grafo = grafo;
+        this.origen = origen;
+        this.tiempo = new double[n];
+        this.precio = new double[n];
+        this.aristaPrevia = new int[n];
+        this.orden = Arrays.copyOf(espacio.ordenAsentado, espacio.nodosAsentados);
+        Arrays.fill(tiempo, Double.POSITIVE_INFINITY);
+        Arrays.fill(precio, Double.POSITIVE_INFINITY);
+        Arrays.fill(aristaPrevia, -1);
+        for (int ciudad : orden) {
+            tiempo[ciudad] = espacio.tiempo[ciudad];
+            precio[ciudad] = espacio.precio[ciudad];
+            aristaPrevia[ciudad] = espacio.aristaPrevia[ciudad];
+        }
+    }
+
+    public Ciudad getOrigen() {
+        return grafo.ciudades[origen];
+    }
+
+    /**
+     * Verifica si hay camino desde el origen a la ciudad
+     */
+    public boolean alcanza(Ciudad ciudad) {
+        int id = grafo.getId(ciudad);
+        return id >= 0 && tiempo[id] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Cantidad de ciudades alcanzables sin contar el origen
+     */
+    public int getCantidadAlcanzables() {
+        return orden.length - 1;
+    }
+
+    /**
+     * Ciudades alcanzables (sin el origen) de la más cercana a la más lejana;
+     * cada una aparece después de su predecesora en el árbol
+     */
+    public List<Ciudad> getCiudadesAlcanzables() {
+        List<Ciudad> ciudades = new ArrayList<>(orden.length - 1);
+        for (int i = 1; i < orden.length; i++) {
+            ciudades.add(grafo.ciudades[orden[i]]);
+        }
+        return ciudades;
+    }
+
+    /**
+     * Tiempo mínimo hasta la ciudad, infinito si no es alcanzable
+     */
+    public double getTiempo(Ciudad ciudad) {
+        int id = grafo.getId(ciudad);
+        return id < 0 ? Double.POSITIVE_INFINITY : tiempo[id];
+    }
+
+    /**
+     * Precio base de la ruta mínima hasta la ciudad, infinito si no es alcanzable
+     */
+    public double getPrecioBase(Ciudad ciudad) {
+        int id = grafo.getId(ciudad);
+        return id < 0 ? Double.POSITIVE_INFINITY : precio[id];
+    }
+
+    /**
+     * Ciudad anterior en la ruta mínima, o null en el origen y en las no alcanzables
+     */
+    public Ciudad getPredecesor(Ciudad ciudad) {
+        int id = grafo.getId(ciudad);
+        if (id < 0 || aristaPrevia[id] < 0) {
+            return null;
+        }
+        return grafo.ciudades[grafo.origen[aristaPrevia[id]]];
+    }
+
+    /**
+     * Arista por la que la ruta mínima llega a la ciudad, o null en el origen
+     * y en las no alcanzables
+     */
+    public Arista getAristaLlegada(Ciudad ciudad) {
+        int id = grafo.getId(ciudad);
+        if (id < 0 || aristaPrevia[id] < 0) {
+            return null;
+        }
+        return grafo.aristas[aristaPrevia[id]];
+    }
+
+    /**
+     * Itinerario mínimo hasta la ciudad, o null si no es alcanzable
+     */
+    public Itinerario getItinerario(Ciudad destino) {
+        int id = grafo.getId(destino);
+        return id < 0 ? null : itinerario(id);
+    }
+
+    Itinerario itinerario(int destino) {
+        if (tiempo[destino] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        return MotorDijkstra.reconstruir(grafo, origen, destino, aristaPrevia, tiempo[destino], precio[destino]);
+    }
+}
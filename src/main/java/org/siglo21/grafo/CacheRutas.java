@@ -0,0 +1,179 @@
+package org.siglo21.grafo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché acotada de rutas mínimas por par (origen, destino)
+ * Desaloja el par usado hace más tiempo (LRU) y se vacía cuando cambia
+ * la versión del grafo. Los itinerarios son inmutables y se comparten.
+ * También guarda, con su propia capacidad, árboles de rutas por origen; un
+ * par cuyo origen tiene árbol se responde desde el árbol sin buscar.
+ */
+public class CacheRutas {
+
+    private static final int CAPACIDAD_ARBOLES = 16;
+
+    private final Grafo grafo;
+    private final int capacidad;
+    private final Map<Long, Itinerario> entradas;
+    private final Map<Integer, ArbolRutas> arboles;
+    private long versionGrafo;
+    private long aciertos;
+    private long fallos;
+    private long desalojos;
+
+    public CacheRutas(Grafo grafo, int capacidad) {
+        this(grafo, capacidad, CAPACIDAD_ARBOLES);
+    }
+
+    public CacheRutas(Grafo grafo, int capacidad, int capacidadArboles) {
+        if (capacidad <= 0 || capacidadArboles <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva");
+        }
+        this.grafo = grafo;
+        this.capacidad = capacidad;
+        this.versionGrafo = grafo.getVersion();
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Itinerario> mayor) {
+                if (size() > CacheRutas.this.capacidad) {
+                    desalojos++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.arboles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ArbolRutas> mayor) {
+                return size() > capacidadArboles;
+            }
+        };
+    }
+
+    /**
+     * Obtiene la ruta mínima entre dos ciudades, calculándola solo si no está en caché
+     * Retorna null si no hay camino (ese resultado también se guarda)
+     */
+    public Itinerario buscarRuta(Ciudad origen, Ciudad destino) {
+        long version = grafo.getVersion();
+        GrafoCompilado g = grafo.getCompilado();
+        int idOrigen = g.getId(origen);
+        int idDestino = g.getId(destino);
+        if (idOrigen < 0 || idDestino < 0) {
+            return null;
+        }
+        Long clave = ((long) idOrigen << 32) | idDestino;
+
+        synchronized (this) {
+            invalidarSiCambio(version);
+            Itinerario itinerario = entradas.get(clave);
+            if (itinerario != null || entradas.containsKey(clave)) {
+                aciertos++;
+                return itinerario;
+            }
+            ArbolRutas arbol = arboles.get(idOrigen);
+            if (arbol != null) {
+                aciertos++;
+                itinerario = arbol.itinerario(idDestino);
+                entradas.put(clave, itinerario);
+                return itinerario;
+            }
+            fallos++;
+        }
+
+        // La búsqueda corre fuera del lock para no serializar las consultas
+        Itinerario itinerario = MotorDijkstra.rutaMinima(g, idOrigen, idDestino);
+
+        synchronized (this) {
+            if (version == versionGrafo && grafo.getVersion() == version) {
+                entradas.put(clave, itinerario);
+            }
+        }
+        return itinerario;
+    }
+
+    /**
+     * Obtiene el árbol de rutas mínimas desde un origen, calculándolo solo si no está en caché
+     * Retorna null si la ciudad no está en el grafo
+     */
+    public ArbolRutas arbolDesde(Ciudad origen) {
+        long version = grafo.getVersion();
+        GrafoCompilado g = grafo.getCompilado();
+        int idOrigen = g.getId(origen);
+        if (idOrigen < 0) {
+            return null;
+        }
+
+        synchronized (this) {
+            invalidarSiCambio(version);
+            ArbolRutas arbol = arboles.get(idOrigen);
+            if (arbol != null) {
+                aciertos++;
+                return arbol;
+            }
+            fallos++;
+        }
+
+        ArbolRutas arbol = MotorDijkstra.arbolDesde(g, idOrigen);
+
+        synchronized (this) {
+            if (version == versionGrafo && grafo.getVersion() == version) {
+                arboles.put(idOrigen, arbol);
+            }
+        }
+        return arbol;
+    }
+
+    /**
+     * Vacía la caché si el grafo cambió desde la última consulta
+     * La versión solo avanza: un hilo que leyó una versión vieja antes de
+     * tomar el lock no vuelve a vaciar lo que ya se guardó con la nueva.
+     */
+    private void invalidarSiCambio(long version) {
+        if (version > versionGrafo) {
+            entradas.clear();
+            arboles.clear();
+            versionGrafo = version;
+        }
+    }
+
+    public synchronized void limpiar() {
+        entradas.clear();
+        arboles.clear();
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+
+    /**
+     * Cantidad de árboles de rutas guardados
+     */
+    public synchronized int getCantidadArboles() {
+        return arboles.size();
+    }
+
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    public synchronized long getDesalojos() {
+        return desalojos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CacheRutas[%d/%d, aciertos=%d, fallos=%d, desalojos=%d]",
+                entradas.size(), capacidad, aciertos, fallos, desalojos);
+    }
+}
@@ -7,16 +7,70 @@ import java.util.Objects;
  */
 public class Ciudad {
 
+    private static final double RADIO_TIERRA_KM = 6371.0;
+
     private String nombre;
+    private String codigo;   // código tipo IATA, null si no tiene
+    private double latitud;  // grados, NaN si no se conoce
+    private double longitud; // grados, NaN si no se conoce
 
     public Ciudad(String nombre) {
+        this(nombre, Double.NaN, Double.NaN);
+    }
+
+    public Ciudad(String nombre, double latitud, double longitud) {
+        this(nombre, null, latitud, longitud);
+    }
+
+    public Ciudad(String nombre, String codigo, double latitud, double longitud) {
         this.nombre = nombre;
+        this.codigo = codigo;
+        this.latitud = latitud;
+        this.longitud = longitud;
     }
 
     public String getNombre() {
         return nombre;
     }
 
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public double getLatitud() {
+        return latitud;
+    }
+
+    public double getLongitud() {
+        return longitud;
+    }
+
+    /**
+     * Verifica si la ciudad tiene coordenadas geográficas
+     */
+    public boolean tieneCoordenadas() {
+        return !Double.isNaN(latitud) && !Double.isNaN(longitud);
+    }
+
+    /**
+     * Distancia ortodrómica (haversine) en kilómetros hasta otra ciudad
+     */
+    public double distanciaKm(Ciudad otra) {
+        return distanciaKm(Math.toRadians(latitud), Math.toRadians(longitud),
+                Math.toRadians(otra.latitud), Math.toRadians(otra.longitud));
+    }
+
+    /**
+     * Distancia ortodrómica en kilómetros entre dos puntos expresados en radianes
+     */
+    static double distanciaKm(double latitud1, double longitud1, double latitud2, double longitud2) {
+        double senoLatitud = Math.sin((latitud2 - latitud1) / 2);
+        double senoLongitud = Math.sin((longitud2 - longitud1) / 2);
+        double h = senoLatitud * senoLatitud
+                + Math.cos(latitud1) * Math.cos(latitud2) * senoLongitud * senoLongitud;
+        return 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
     @Override
     public boolean equals(Object o) {
 
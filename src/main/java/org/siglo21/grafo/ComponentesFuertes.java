@@ -0,0 +1,77 @@
+package org.siglo21.grafo;
+
+import java.util.Arrays;
+
+/**
+ * Componentes fuertemente conexas de la vista compilada (algoritmo de Tarjan)
+ * <p>
+ * Iterativo: la recursión se reemplaza por una pila explícita con la próxima
+ * arista a explorar de cada ciudad, así que no depende del tamaño de la pila
+ * del hilo. Las componentes se numeran en el orden en que Tarjan las cierra,
+ * que es un orden topológico inverso de la condensación: si hay una arista de
+ * la componente a a la b (a != b), entonces b < a.
+ */
+final class ComponentesFuertes {
+
+    final int[] componente; // componente de cada ciudad
+    final int cantidad;
+
+    ComponentesFuertes(GrafoCompilado g) {
+        int n = g.ciudades.length;
+        this.componente = new int[n];
+        Arrays.fill(componente, -1);
+
+        int[] indice = new int[n];   // orden de descubrimiento + 1 (0: sin visitar)
+        int[] minimo = new int[n];   // menor índice alcanzable dentro de la pila
+        int[] siguiente = new int[n];
+        int[] llamadas = new int[n]; // pila de la recursión simulada
+        int[] pila = new int[n];     // pila de Tarjan
+        int tope = 0;
+        int contador = 0;
+        int componentes = 0;
+
+        for (int raiz = 0; raiz < n; raiz++) {
+            if (indice[raiz] != 0) {
+                continue;
+            }
+            int profundidad = 0;
+            llamadas[profundidad++] = raiz;
+            indice[raiz] = minimo[raiz] = ++contador;
+            siguiente[raiz] = g.inicio[raiz];
+            pila[tope++] = raiz;
+
+            while (profundidad > 0) {
+                int actual = llamadas[profundidad - 1];
+                if (siguiente[actual] < g.inicio[actual + 1]) {
+                    int vecino = g.destino[siguiente[actual]++];
+                    if (indice[vecino] == 0) {
+                        indice[vecino] = minimo[vecino] = ++contador;
+                        siguiente[vecino] = g.inicio[vecino];
+                        pila[tope++] = vecino;
+                        llamadas[profundidad++] = vecino;
+                    } else if (componente[vecino] < 0) {
+                        // Sigue en la pila de Tarjan
+                        minimo[actual] = Math.min(minimo[actual], indice[vecino]);
+                    }
+                    continue;
+                }
+
+                // Se terminaron las aristas de actual: volver al llamador
+                profundidad--;
+                if (minimo[actual] == indice[actual]) {
+                    int miembro;
+                    do {
+                        miembro = pila[--tope];
+                        componente[miembro] = componentes;
+                    } while (miembro != actual);
+                    componentes++;
+                }
+                if (profundidad > 0) {
+                    int llamador = llamadas[profundidad - 1];
+                    minimo[llamador] = Math.min(minimo[llamador], minimo[actual]);
+                }
+            }
+        }
+        this.cantidad = componentes;
+    }
+}
@@ -0,0 +1,43 @@
+package org.siglo21.grafo;
+
+import java.util.Objects;
+
+/**
+ * Par (origen, destino) de una consulta de ruta en lote
+ */
+public final class ConsultaRuta {
+
+    private final Ciudad origen;
+    private final Ciudad destino;
+
+    public ConsultaRuta(Ciudad origen, Ciudad destino) {
+        this.origen = origen;
+        this.destino = destino;
+    }
+
+    public Ciudad getOrigen() {
+        return origen;
+    }
+
+    public Ciudad getDestino() {
+        return destino;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConsultaRuta consulta = (ConsultaRuta) o;
+        return Objects.equals(origen, consulta.origen) && Objects.equals(destino, consulta.destino);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(origen, destino);
+    }
+
+    @Override
+    public String toString() {
+        return origen + " → " + destino;
+    }
+}
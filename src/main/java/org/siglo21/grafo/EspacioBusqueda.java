@@ -0,0 +1,85 @@
+package org.siglo21.grafo;
+
+import org.siglo21.estructuras.HeapIndexado;
+
+import java.util.Arrays;
+
+/**
+ * Arreglos de trabajo reutilizables de una búsqueda de caminos
+ * Se marcan por época para no tener que limpiarlos entre consultas
+ */
+final class EspacioBusqueda {
+
+    private static final int ARIDAD_HEAP = 4;
+
+    double[] tiempo = new double[0];
+    double[] precio = new double[0];
+    int[] aristaPrevia = new int[0];
+    double[] cota = new double[0]; // heurística de A*, válida si la ciudad fue alcanzada
+    int[] ordenAsentado = new int[0]; // las primeras nodosAsentados posiciones son válidas
+    private int[] alcanzado = new int[0];
+    private int[] asentado = new int[0];
+    private int epoca;
+    final HeapIndexado heap = new HeapIndexado(0, ARIDAD_HEAP);
+    int nodosAsentados;
+
+    /**
+     * Prepara el espacio para una búsqueda nueva sobre n ciudades
+     */
+    void preparar(int n) {
+        if (alcanzado.length < n) {
+            int capacidad = Math.max(n, alcanzado.length * 2);
+            tiempo = new double[capacidad];
+            precio = new double[capacidad];
+            aristaPrevia = new int[capacidad];
+            cota = new double[capacidad];
+            ordenAsentado = new int[capacidad];
+            alcanzado = new int[capacidad];
+            asentado = new int[capacidad];
+            heap.asegurarCapacidad(capacidad);
+            epoca = 0;
+        }
+        heap.limpiar();
+        nodosAsentados = 0;
+        if (epoca == Integer.MAX_VALUE) {
+            Arrays.fill(alcanzado, 0);
+            Arrays.fill(asentado, 0);
+            epoca = 0;
+        }
+        epoca++;
+    }
+
+    boolean fueAlcanzado(int ciudad) {
+        return alcanzado[ciudad] == epoca;
+    }
+
+    boolean estaAsentado(int ciudad) {
+        return asentado[ciudad] == epoca;
+    }
+
+    void asentar(int ciudad) {
+        asentado[ciudad] = epoca;
+        ordenAsentado[nodosAsentados++] = ciudad;
+    }
+
+    /**
+     * Registra una etiqueta tentativa para la ciudad
+     */
+    void etiquetar(int ciudad, double nuevoTiempo, double nuevoPrecio, int arista) {
+        alcanzado[ciudad] = epoca;
+        tiempo[ciudad] = nuevoTiempo;
+        precio[ciudad] = nuevoPrecio;
+        aristaPrevia[ciudad] = arista;
+    }
+
+    /**
+     * Verifica si (nuevoTiempo, nuevoPrecio) mejora la etiqueta de la ciudad
+     */
+    boolean mejora(int ciudad, double nuevoTiempo, double nuevoPrecio) {
+        if (alcanzado[ciudad] != epoca) {
+            return true;
+        }
+        return nuevoTiempo < tiempo[ciudad] ||
+                (nuevoTiempo == tiempo[ciudad] && nuevoPrecio < precio[ciudad]);
+    }
+}
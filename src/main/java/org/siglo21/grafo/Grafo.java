@@ -1,36 +1,107 @@
 package org.siglo21.grafo;
 
-import java.text.Normalizer;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Representa la red de vuelos
  */
 public class Grafo {
 
+    // LinkedHashMap: el orden de alta define los ids densos de la vista compilada
     private Map<Ciudad, List<Arista>> adyacencias;
+    private volatile GrafoCompilado compilado;
+    private volatile long version;
+    private IndiceAlcance indiceAlcance; // se arma en la primera consulta
+    private final IndiceNombres indiceNombres = new IndiceNombres();
 
     public Grafo() {
-        this.adyacencias = new HashMap<>();
+        this.adyacencias = new LinkedHashMap<>();
+    }
+
+    /**
+     * Grafo con lugar reservado para la cantidad de ciudades indicada (cargas masivas)
+     */
+    public Grafo(int capacidadCiudades) {
+        this.adyacencias = new LinkedHashMap<>(Math.max(16, (int) (capacidadCiudades / 0.75f) + 1));
     }
 
     /**
      * Agrega ciudad al grafo
      */
-    public void agregarCiudad(Ciudad ciudad) {
+    public synchronized void agregarCiudad(Ciudad ciudad) {
         if (!adyacencias.containsKey(ciudad)) {
             adyacencias.put(ciudad, new ArrayList<>());
+            indiceNombres.agregar(ciudad);
+            compilado = null;
+            version++;
+            if (indiceAlcance != null) {
+                if (indiceAlcance.esIncremental()) {
+                    indiceAlcance.agregarCiudad(ciudad);
+                } else {
+                    indiceAlcance = null;
+                }
+            }
         }
     }
 
     /**
      * Agrega una conexión entre dos ciudades
      */
-    public void agregarArista(Ciudad origen, Ciudad destino, double tiempo, double precioBase, boolean esDirecto) {
+    public synchronized void agregarArista(Ciudad origen, Ciudad destino, double tiempo, double precioBase,
+                                           boolean esDirecto) {
         agregarCiudad(origen);
         agregarCiudad(destino);
 
         adyacencias.get(origen).add(new Arista(destino, tiempo, precioBase, esDirecto));
+        compilado = null;
+        version++;
+        if (indiceAlcance != null) {
+            if (indiceAlcance.esIncremental()) {
+                indiceAlcance.agregarArista(origen, destino);
+            } else {
+                indiceAlcance = null;
+            }
+        }
+    }
+
+    /**
+     * Agrega todas las aristas del lote (y sus ciudades, si faltan) bajo un solo
+     * lock: cada lista de adyacencia se busca una vez y se redimensiona una vez
+     * al tamaño justo. El índice de alcanzabilidad se descarta en lugar de
+     * actualizarse arista por arista; se vuelve a armar en la próxima consulta.
+     */
+    public synchronized void agregarAristas(LoteAristas lote) {
+        int n = lote.ciudades.length;
+        List<List<Arista>> salientes = new ArrayList<>(n);
+        int[] nuevas = new int[n];
+        for (int k = 0; k < lote.cantidad; k++) {
+            nuevas[lote.origen[k]]++;
+        }
+        for (int i = 0; i < n; i++) {
+            agregarCiudad(lote.ciudades[i]);
+            List<Arista> lista = adyacencias.get(lote.ciudades[i]);
+            if (nuevas[i] > 0 && lista instanceof ArrayList) {
+                ((ArrayList<Arista>) lista).ensureCapacity(lista.size() + nuevas[i]);
+            }
+            salientes.add(lista);
+        }
+        for (int k = 0; k < lote.cantidad; k++) {
+            salientes.get(lote.origen[k]).add(new Arista(lote.ciudades[lote.destino[k]], lote.tiempo[k],
+                    lote.precioBase[k], lote.esDirecto[k]));
+        }
+        compilado = null;
+        indiceAlcance = null;
+        version++;
+    }
+
+    /**
+     * Contador de modificaciones: cambia con cada alta de ciudad o arista
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -42,6 +113,24 @@ public class Grafo {
         agregarArista(ciudad2, ciudad1, tiempo, precioBase, false);
     }
 
+    /**
+     * Obtiene la vista compilada del grafo
+     * Se reconstruye solo si hubo altas desde la última compilación
+     */
+    public GrafoCompilado getCompilado() {
+        GrafoCompilado actual = compilado;
+        if (actual == null) {
+            synchronized (this) {
+                actual = compilado;
+                if (actual == null) {
+                    actual = new GrafoCompilado(adyacencias);
+                    compilado = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
     /**
      * Obtiene las ciudades adyacentes de una ciudad
      */
@@ -57,27 +146,18 @@ public class Grafo {
     }
 
     /**
-     * Obtiene una ciudad por nombre
+     * Obtiene una ciudad por nombre o por código, sin distinguir tildes ni mayúsculas
      */
-    public Ciudad getCiudadPorNombre(String nombre) {
-        String nombreNormalizado = normalizarTexto(nombre);
-        for (Ciudad ciudad : adyacencias.keySet()) {
-            if (normalizarTexto(ciudad.getNombre()).equals(nombreNormalizado)) {
-                return ciudad;
-            }
-        }
-        return null;
+    public synchronized Ciudad getCiudadPorNombre(String nombre) {
+        return nombre == null ? null : indiceNombres.buscar(nombre);
     }
 
     /**
-     * Normaliza un texto para compararlo sin tildes ni mayusculas
+     * Autocompletado: hasta limite ciudades cuyo nombre, alguna palabra del
+     * nombre o código empieza con el prefijo (sin distinguir tildes ni mayúsculas)
      */
-    private String normalizarTexto(String texto) {
-        if (texto == null) {
-            return "";
-        }
-        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD);
-        return normalizado.replaceAll("\\p{InCombiningDiacriticalMarks}+", "").toLowerCase();
+    public synchronized List<Ciudad> sugerirCiudades(String prefijo, int limite) {
+        return prefijo == null ? new ArrayList<>() : indiceNombres.sugerir(prefijo, limite);
     }
 
     /**
@@ -85,25 +165,32 @@ public class Grafo {
      * Retorna una lista de ciudades alcanzables
      */
     public List<Ciudad> bfs(Ciudad origen) {
+        GrafoCompilado g = getCompilado();
         List<Ciudad> resultado = new ArrayList<>();
-        Set<Ciudad> visitados = new HashSet<>();
-        Queue<Ciudad> cola = new LinkedList<>();
+        int idOrigen = g.getId(origen);
+        if (idOrigen < 0) {
+            return resultado;
+        }
+
+        boolean[] visitados = new boolean[g.ciudades.length];
+        int[] cola = new int[g.ciudades.length];
+        int frente = 0;
+        int fin = 0;
 
-        visitados.add(origen);
-        cola.offer(origen);
+        visitados[idOrigen] = true;
+        cola[fin++] = idOrigen;
 
-        while (!cola.isEmpty()) {
-            Ciudad actual = cola.poll();
-            resultado.add(actual);
+        while (frente < fin) {
+            int actual = cola[frente++];
+            resultado.add(g.ciudades[actual]);
 
-            for (Arista arista : adyacencias.get(actual)) {
-                Ciudad destino = arista.getDestino();
-                if (!visitados.contains(destino)) {
-                    visitados.add(destino);
-                    cola.offer(destino);
+            for (int a = g.inicio[actual]; a < g.inicio[actual + 1]; a++) {
+                int destino = g.destino[a];
+                if (!visitados[destino]) {
+                    visitados[destino] = true;
+                    cola[fin++] = destino;
                 }
             }
-
         }
 
         return resultado;
@@ -112,71 +199,85 @@ public class Grafo {
     /**
      * DFS desde una ciudad
      * Retorna una lista de ciudades alcanzables
+     * Usa una pila explícita para no depender de la profundidad de la recursión
      */
     public List<Ciudad> dfs(Ciudad origen) {
+        GrafoCompilado g = getCompilado();
         List<Ciudad> resultado = new ArrayList<>();
-        Set<Ciudad> visitados = new HashSet<>();
-        dfsRecursivo(origen, visitados, resultado);
-        return resultado;
-    }
+        int idOrigen = g.getId(origen);
+        if (idOrigen < 0) {
+            return resultado;
+        }
 
-    private void dfsRecursivo(Ciudad ciudad, Set<Ciudad> visitados, List<Ciudad> resultado) {
-        visitados.add(ciudad);
-        resultado.add(ciudad);
+        boolean[] visitados = new boolean[g.ciudades.length];
+        int[] pila = new int[g.ciudades.length];
+        // Próxima arista a explorar de cada ciudad en la pila
+        int[] siguiente = new int[g.ciudades.length];
+        int tope = 0;
+
+        visitados[idOrigen] = true;
+        resultado.add(g.ciudades[idOrigen]);
+        pila[tope++] = idOrigen;
+        siguiente[idOrigen] = g.inicio[idOrigen];
+
+        while (tope > 0) {
+            int actual = pila[tope - 1];
+            if (siguiente[actual] == g.inicio[actual + 1]) {
+                tope--;
+                continue;
+            }
 
-        for (Arista arista : adyacencias.get(ciudad)) {
-            Ciudad destino = arista.getDestino();
-            if (!visitados.contains(destino)) {
-                dfsRecursivo(destino, visitados, resultado);
+            int destino = g.destino[siguiente[actual]++];
+            if (!visitados[destino]) {
+                visitados[destino] = true;
+                resultado.add(g.ciudades[destino]);
+                pila[tope++] = destino;
+                siguiente[destino] = g.inicio[destino];
             }
         }
+
+        return resultado;
     }
 
     /**
-     * Detecta componentes conexos del grafo
+     * Índice de alcanzabilidad; se arma con Tarjan la primera vez y después se
+     * actualiza en cada alta (o se descarta, si es demasiado grande para eso)
      */
-    public List<List<Ciudad>> detectarComponentes() {
-        List<List<Ciudad>> componentes = new ArrayList<>();
-        Set<Ciudad> visitados = new HashSet<>();
-
-        for (Ciudad ciudad : getCiudades()) {
-            if (!visitados.contains(ciudad)) {
-                List<Ciudad> componente = dfs(ciudad);
-                componentes.add(componente);
-                visitados.addAll(componente);
-            }
+    private IndiceAlcance getIndiceAlcance() {
+        if (indiceAlcance == null) {
+            indiceAlcance = new IndiceAlcance(getCompilado());
         }
+        return indiceAlcance;
+    }
 
-        return componentes;
+    /**
+     * Verifica si hay un camino (de uno o más tramos) de origen a destino
+     * Consulta el índice de alcanzabilidad, sin recorrer el grafo
+     */
+    public synchronized boolean esAlcanzable(Ciudad origen, Ciudad destino) {
+        return getIndiceAlcance().esAlcanzable(origen, destino);
     }
 
     /**
-     * Clase auxiliar para Dijkstra
+     * Verifica si dos ciudades se alcanzan mutuamente (misma componente fuertemente conexa)
      */
-    private static class NodoDijkstra implements Comparable<NodoDijkstra> {
-        Ciudad ciudad;
-        double tiempo;
-        double precio;
-        NodoDijkstra anterior;
-        Arista aristaAnterior;
-
-        NodoDijkstra(Ciudad ciudad, double tiempo, double precio, NodoDijkstra anterior, Arista aristaAnterior) {
-            this.ciudad = ciudad;
-            this.tiempo = tiempo;
-            this.precio = precio;
-            this.anterior = anterior;
-            this.aristaAnterior = aristaAnterior;
-        }
+    public synchronized boolean mismaComponente(Ciudad a, Ciudad b) {
+        return getIndiceAlcance().mismaComponente(a, b);
+    }
 
-        @Override
-        public int compareTo(NodoDijkstra otro) {
-            // Comparar primero por tiempo
-            int cmp = Double.compare(this.tiempo, otro.tiempo);
-            if (cmp != 0)
-                return cmp;
-            // Si hay empate, comparar por precio
-            return Double.compare(this.precio, otro.precio);
-        }
+    /**
+     * Cantidad de componentes fuertemente conexas
+     */
+    public synchronized int getCantidadComponentes() {
+        return getIndiceAlcance().getCantidadComponentes();
+    }
+
+    /**
+     * Detecta las componentes fuertemente conexas del grafo: dentro de cada una
+     * todas las ciudades se alcanzan entre sí respetando el sentido de las aristas
+     */
+    public synchronized List<List<Ciudad>> detectarComponentes() {
+        return getIndiceAlcance().componentes();
     }
 
     /**
@@ -185,74 +286,103 @@ public class Grafo {
      * Retorna el itinerario (lista de ciudades) y la información de las aristas
      */
     public Itinerario dijkstra(Ciudad origen, Ciudad destino) {
-        Map<Ciudad, NodoDijkstra> distancias = new HashMap<>();
-        PriorityQueue<NodoDijkstra> cola = new PriorityQueue<>();
-        Set<Ciudad> visitados = new HashSet<>();
-
-        // Inicializar
-        for (Ciudad ciudad : getCiudades()) {
-            distancias.put(ciudad, new NodoDijkstra(ciudad, Double.MAX_VALUE, Double.MAX_VALUE, null, null));
-        }
-
-        NodoDijkstra nodoOrigen = new NodoDijkstra(origen, 0, 0, null, null);
-        distancias.put(origen, nodoOrigen);
-        cola.offer(nodoOrigen);
-
-        while (!cola.isEmpty()) {
-            NodoDijkstra actual = cola.poll();
+        return MotorDijkstra.rutaMinima(getCompilado(), origen, destino);
+    }
 
-            if (visitados.contains(actual.ciudad))
-                continue;
-            visitados.add(actual.ciudad);
+    /**
+     * Guarda la jerarquía de contracción de la versión vigente (la construye si hace falta)
+     */
+    public void guardarJerarquia(Path archivo) throws IOException {
+        getCompilado().getJerarquia().guardar(archivo);
+    }
 
-            if (actual.ciudad.equals(destino)) {
-                // Reconstruir camino
-                return reconstruirItinerario(actual);
-            }
+    /**
+     * Carga una jerarquía guardada con guardarJerarquia y la usa en las
+     * consultas con ModoRuteo.JERARQUIA hasta el próximo cambio del grafo
+     *
+     * @throws IOException si el archivo no se puede leer o es de otra red
+     */
+    public void cargarJerarquia(Path archivo) throws IOException {
+        GrafoCompilado g = getCompilado();
+        g.instalarJerarquia(JerarquiaContraccion.cargar(archivo, g));
+    }
 
-            for (Arista arista : getAdyacentes(actual.ciudad)) {
-                Ciudad vecino = arista.getDestino();
+    /**
+     * Ruta mínima eligiendo la estrategia de búsqueda para esta consulta
+     */
+    public Itinerario dijkstra(Ciudad origen, Ciudad destino, ModoRuteo modo) {
+        return MotorDijkstra.rutaMinima(getCompilado(), origen, destino, modo);
+    }
 
-                if (visitados.contains(vecino))
-                    continue;
+    /**
+     * Rutas mínimas de muchas consultas a la vez, repartidas en el pool común de fork-join
+     * Retorna los itinerarios en el orden de las consultas (null donde no hay camino)
+     */
+    public List<Itinerario> dijkstraLote(List<ConsultaRuta> consultas) {
+        return dijkstraLote(consultas, ForkJoinPool.commonPool());
+    }
 
-                double nuevoTiempo = actual.tiempo + arista.getTiempo();
-                double nuevoPrecio = actual.precio + arista.getPrecioBase();
+    /**
+     * Rutas mínimas de muchas consultas a la vez en el pool indicado. Las consultas
+     * con el mismo origen comparten una búsqueda. Trabaja sobre la vista compilada
+     * vigente al empezar, así que las altas concurrentes no la afectan.
+     */
+    public List<Itinerario> dijkstraLote(List<ConsultaRuta> consultas, ForkJoinPool pool) {
+        return Arrays.asList(RuteoEnLote.resolver(getCompilado(), consultas, pool));
+    }
 
-                NodoDijkstra nodoVecino = distancias.get(vecino);
+    /**
+     * Árbol de rutas mínimas desde un origen hacia todas las ciudades alcanzables
+     * Una sola búsqueda; retorna null si la ciudad no está en el grafo
+     */
+    public ArbolRutas arbolRutas(Ciudad origen) {
+        GrafoCompilado g = getCompilado();
+        int idOrigen = g.getId(origen);
+        return idOrigen < 0 ? null : MotorDijkstra.arbolDesde(g, idOrigen);
+    }
 
-                // Comparar: primero tiempo, luego precio
-                if (nuevoTiempo < nodoVecino.tiempo ||
-                        (nuevoTiempo == nodoVecino.tiempo && nuevoPrecio < nodoVecino.precio)) {
+    /**
+     * Frente de Pareto en (tiempo, precio): todos los itinerarios que ningún otro
+     * mejora en ambos criterios a la vez, de menor a mayor tiempo
+     * Retorna una lista vacía si no hay camino
+     */
+    public List<Itinerario> rutasPareto(Ciudad origen, Ciudad destino) {
+        return rutasPareto(origen, destino, 0);
+    }
 
-                    NodoDijkstra nuevoNodo = new NodoDijkstra(vecino, nuevoTiempo, nuevoPrecio, actual, arista);
-                    distancias.put(vecino, nuevoNodo);
-                    cola.offer(nuevoNodo);
-                }
-            }
+    /**
+     * Frente de Pareto en (tiempo, precio) entre los itinerarios de a lo sumo
+     * maxTramos tramos (0 o menos: sin límite)
+     */
+    public List<Itinerario> rutasPareto(Ciudad origen, Ciudad destino, int maxTramos) {
+        GrafoCompilado g = getCompilado();
+        int idOrigen = g.getId(origen);
+        int idDestino = g.getId(destino);
+        if (idOrigen < 0 || idDestino < 0) {
+            return new ArrayList<>();
         }
+        return RutasPareto.buscar(g, idOrigen, idDestino, maxTramos);
+    }
 
-        return null; // No hay camino
+    /**
+     * Hasta k rutas sin ciclos de origen a destino, de menor a mayor (tiempo, precio)
+     * La primera es la ruta mínima; retorna una lista vacía si no hay camino
+     */
+    public List<Itinerario> rutasAlternativas(Ciudad origen, Ciudad destino, int k) {
+        return rutasAlternativas(origen, destino, k, Long.MAX_VALUE);
     }
 
     /**
-     * Reconstruye el itinerario desde el nodo destino
+     * Igual que rutasAlternativas(origen, destino, k), pero deja de buscar al agotar
+     * el presupuesto de tiempo (en nanosegundos) y retorna las rutas halladas hasta ahí
      */
-    private Itinerario reconstruirItinerario(NodoDijkstra destino) {
-        List<Ciudad> ciudades = new ArrayList<>();
-        List<Arista> aristas = new ArrayList<>();
-
-        NodoDijkstra actual = destino;
-        while (actual != null) {
-            ciudades.add(0, actual.ciudad);
-            if (actual.aristaAnterior != null) {
-                aristas.add(0, actual.aristaAnterior);
-            }
-            actual = actual.anterior;
+    public List<Itinerario> rutasAlternativas(Ciudad origen, Ciudad destino, int k, long presupuestoNanos) {
+        GrafoCompilado g = getCompilado();
+        int idOrigen = g.getId(origen);
+        int idDestino = g.getId(destino);
+        if (idOrigen < 0 || idDestino < 0) {
+            return new ArrayList<>();
         }
-
-        return new Itinerario(ciudades, aristas, destino.tiempo, destino.precio);
+        return RutasAlternativas.buscar(g, idOrigen, idDestino, k, presupuestoNanos);
     }
-
-
 }
@@ -0,0 +1,279 @@
+package org.siglo21.grafo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vista inmutable y compacta del grafo para los algoritmos de ruteo.
+ * Cada ciudad tiene un id entero denso (orden de alta en el grafo) y las
+ * aristas se guardan en formato CSR: las salientes de la ciudad i ocupan
+ * las posiciones [inicio[i], inicio[i + 1]) de los arreglos paralelos.
+ * También guarda el índice inverso (aristas entrantes) para las búsquedas
+ * hacia atrás: las entrantes a i son aristaInversa[inicioInverso[i] ..].
+ */
+public final class GrafoCompilado {
+
+    final Ciudad[] ciudades;
+    final Map<Ciudad, Integer> ids;
+    final int[] inicio;
+    final int[] origen;
+    final int[] destino;
+    final double[] tiempo;
+    final double[] precioBase;
+    final boolean[] esDirecto;
+    final Arista[] aristas;
+    final int[] inicioInverso;
+    final int[] aristaInversa;
+    final double[] latitud;  // radianes
+    final double[] longitud; // radianes
+    final double velocidadMaxima; // km/h, infinita si no se puede acotar
+    private volatile JerarquiaContraccion jerarquia; // se arma en la primera consulta que la pide
+
+    GrafoCompilado(Map<Ciudad, List<Arista>> adyacencias) {
+        int cantidadCiudades = adyacencias.size();
+        int cantidadAristas = 0;
+        for (List<Arista> lista : adyacencias.values()) {
+            cantidadAristas += lista.size();
+        }
+
+        this.ciudades = new Ciudad[cantidadCiudades];
+        this.ids = new HashMap<>(cantidadCiudades * 2);
+        this.inicio = new int[cantidadCiudades + 1];
+        this.origen = new int[cantidadAristas];
+        this.destino = new int[cantidadAristas];
+        this.tiempo = new double[cantidadAristas];
+        this.precioBase = new double[cantidadAristas];
+        this.esDirecto = new boolean[cantidadAristas];
+        this.aristas = new Arista[cantidadAristas];
+
+        // Asignar ids densos respetando el orden de alta
+        int id = 0;
+        for (Ciudad ciudad : adyacencias.keySet()) {
+            ciudades[id] = ciudad;
+            ids.put(ciudad, id);
+            id++;
+        }
+
+        // Volcar las listas de adyacencia en los arreglos paralelos
+        int posicion = 0;
+        for (int i = 0; i < cantidadCiudades; i++) {
+            inicio[i] = posicion;
+            for (Arista arista : adyacencias.get(ciudades[i])) {
+                origen[posicion] = i;
+                destino[posicion] = ids.get(arista.getDestino());
+                tiempo[posicion] = arista.getTiempo();
+                precioBase[posicion] = arista.getPrecioBase();
+                esDirecto[posicion] = arista.isEsDirecto();
+                aristas[posicion] = arista;
+                posicion++;
+            }
+        }
+        inicio[cantidadCiudades] = posicion;
+
+        // Índice inverso por conteo: primero los grados de entrada, luego las posiciones
+        this.inicioInverso = new int[cantidadCiudades + 1];
+        this.aristaInversa = new int[cantidadAristas];
+        for (int a = 0; a < cantidadAristas; a++) {
+            inicioInverso[destino[a] + 1]++;
+        }
+        for (int i = 0; i < cantidadCiudades; i++) {
+            inicioInverso[i + 1] += inicioInverso[i];
+        }
+        int[] siguiente = Arrays.copyOf(inicioInverso, cantidadCiudades);
+        for (int a = 0; a < cantidadAristas; a++) {
+            aristaInversa[siguiente[destino[a]]++] = a;
+        }
+
+        // Coordenadas en radianes y velocidad de crucero más alta de la red
+        this.latitud = new double[cantidadCiudades];
+        this.longitud = new double[cantidadCiudades];
+        boolean todasConCoordenadas = true;
+        for (int i = 0; i < cantidadCiudades; i++) {
+            latitud[i] = Math.toRadians(ciudades[i].getLatitud());
+            longitud[i] = Math.toRadians(ciudades[i].getLongitud());
+            todasConCoordenadas &= ciudades[i].tieneCoordenadas();
+        }
+        double maxima = 0;
+        if (todasConCoordenadas) {
+            for (int a = 0; a < cantidadAristas && maxima < Double.POSITIVE_INFINITY; a++) {
+                double distancia = distanciaKm(origen[a], destino[a]);
+                if (distancia > 0) {
+                    maxima = Math.max(maxima, distancia / tiempo[a]);
+                }
+            }
+        }
+        this.velocidadMaxima = todasConCoordenadas && maxima > 0 ? maxima : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Distancia ortodrómica en kilómetros entre dos ciudades del grafo
+     */
+    double distanciaKm(int ciudad1, int ciudad2) {
+        return Ciudad.distanciaKm(latitud[ciudad1], longitud[ciudad1], latitud[ciudad2], longitud[ciudad2]);
+    }
+
+    /**
+     * Cota inferior del tiempo de vuelo entre dos ciudades: distancia a la
+     * velocidad de crucero más alta de la red. Es 0 si falta alguna coordenada.
+     */
+    double cotaTiempo(int desde, int hasta) {
+        if (velocidadMaxima == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+        // Se achica apenas la cota para absorber el redondeo de la trigonometría
+        return distanciaKm(desde, hasta) / velocidadMaxima * (1 - 1e-9);
+    }
+
+    /**
+     * Velocidad de crucero más alta vista en las aristas (km/h)
+     * Es infinita si alguna ciudad no tiene coordenadas
+     */
+    public double getVelocidadMaxima() {
+        return velocidadMaxima;
+    }
+
+    /**
+     * Jerarquía de contracción de esta vista; se construye la primera vez
+     * Como el grafo arma una vista nueva con cada alta, la jerarquía siempre
+     * corresponde a la versión vigente
+     */
+    public JerarquiaContraccion getJerarquia() {
+        JerarquiaContraccion actual = jerarquia;
+        if (actual == null) {
+            synchronized (this) {
+                actual = jerarquia;
+                if (actual == null) {
+                    actual = JerarquiaContraccion.construir(this);
+                    jerarquia = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Instala una jerarquía ya construida (por ejemplo, cargada de un archivo)
+     * en lugar de armarla en la primera consulta
+     *
+     * @throws IllegalArgumentException si se construyó o cargó para otra vista
+     */
+    void instalarJerarquia(JerarquiaContraccion jerarquia) {
+        if (jerarquia.getGrafo() != this) {
+            throw new IllegalArgumentException("La jerarquía no corresponde a esta vista del grafo");
+        }
+        synchronized (this) {
+            this.jerarquia = jerarquia;
+        }
+    }
+
+    /**
+     * Huella de la red: ciudades en orden de id y aristas con sus pesos
+     * Dos vistas con la misma huella numeran igual ciudades y aristas
+     */
+    long huella() {
+        long h = 1125899906842597L;
+        for (Ciudad ciudad : ciudades) {
+            h = 31 * h + ciudad.getNombre().hashCode();
+        }
+        for (int a = 0; a < destino.length; a++) {
+            h = 31 * h + origen[a];
+            h = 31 * h + destino[a];
+            h = 31 * h + Double.doubleToLongBits(tiempo[a]);
+            h = 31 * h + Double.doubleToLongBits(precioBase[a]);
+        }
+        return h;
+    }
+
+    /**
+     * Obtiene la cantidad de ciudades
+     */
+    public int getCantidadCiudades() {
+        return ciudades.length;
+    }
+
+    /**
+     * Obtiene la cantidad de aristas
+     */
+    public int getCantidadAristas() {
+        return destino.length;
+    }
+
+    /**
+     * Obtiene el id de una ciudad, o -1 si no pertenece al grafo
+     */
+    public int getId(Ciudad ciudad) {
+        Integer id = ids.get(ciudad);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Obtiene la ciudad con el id indicado
+     */
+    public Ciudad getCiudad(int id) {
+        return ciudades[id];
+    }
+
+    /**
+     * Primera arista saliente de una ciudad
+     */
+    public int inicioAristas(int id) {
+        return inicio[id];
+    }
+
+    /**
+     * Posición siguiente a la última arista saliente de una ciudad
+     */
+    public int finAristas(int id) {
+        return inicio[id + 1];
+    }
+
+    /**
+     * Primera posición de las aristas entrantes a una ciudad en el índice inverso
+     */
+    public int inicioEntrantes(int id) {
+        return inicioInverso[id];
+    }
+
+    /**
+     * Posición siguiente a la última arista entrante a una ciudad
+     */
+    public int finEntrantes(int id) {
+        return inicioInverso[id + 1];
+    }
+
+    /**
+     * Arista (índice CSR) guardada en una posición del índice inverso
+     */
+    public int getAristaEntrante(int posicion) {
+        return aristaInversa[posicion];
+    }
+
+    public int getOrigen(int arista) {
+        return origen[arista];
+    }
+
+    public int getDestino(int arista) {
+        return destino[arista];
+    }
+
+    public double getTiempo(int arista) {
+        return tiempo[arista];
+    }
+
+    public double getPrecioBase(int arista) {
+        return precioBase[arista];
+    }
+
+    public boolean isEsDirecto(int arista) {
+        return esDirecto[arista];
+    }
+
+    /**
+     * Obtiene la arista original del grafo
+     */
+    public Arista getArista(int arista) {
+        return aristas[arista];
+    }
+}
@@ -0,0 +1,281 @@
+package org.siglo21.grafo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice de alcanzabilidad y componentes fuertemente conexas que se mantiene
+ * al agregar ciudades y aristas
+ * <p>
+ * Se arma una vez con Tarjan sobre la vista compilada. Cada componente tiene
+ * una fila de bits con las componentes que alcanza (clausura transitiva de la
+ * condensación), así que preguntar si una ciudad alcanza a otra es probar un
+ * bit. Al agregar una arista u → v solo se tocan las filas de las componentes
+ * que alcanzan a u y todavía no alcanzaban a v; si además v ya alcanzaba a u,
+ * las componentes del ciclo nuevo se unen (union-find). El costo en memoria es
+ * cuadrático en la cantidad de componentes (un bit por par), así que por
+ * encima de LIMITE_COMPONENTES no se arman las filas: el índice queda fijo
+ * (solo componentes) y la alcanzabilidad entre componentes distintas se
+ * resuelve con un recorrido que corta al llegar al destino.
+ * <p>
+ * No es seguro para hilos: Grafo lo usa siempre bajo su propio lock.
+ */
+final class IndiceAlcance {
+
+    // 16384 componentes: hasta 32 MB de filas
+    static final int LIMITE_COMPONENTES = 1 << 14;
+
+    private final GrafoCompilado grafo; // solo sin filas, para los recorridos
+    private final Map<Ciudad, Integer> ids;
+    private final List<Ciudad> ciudades;
+    private int[] componenteInicial; // componente con la que entró cada ciudad
+    private int[] padre;             // union-find sobre las componentes
+    private long[][] alcance;        // fila por componente representante
+    private int cantidadComponentes; // componentes creadas (incluye las ya unidas)
+    private int representantes;      // componentes vigentes
+
+    IndiceAlcance(GrafoCompilado g) {
+        int n = g.ciudades.length;
+        ComponentesFuertes scc = new ComponentesFuertes(g);
+        int capacidad = Math.max(64, Integer.highestOneBit(Math.max(1, n)) << 1);
+        int palabras = capacidad >>> 6;
+
+        this.ids = new HashMap<>(capacidad * 2);
+        this.ciudades = new ArrayList<>(capacidad);
+        this.componenteInicial = new int[capacidad];
+        this.padre = new int[capacidad];
+        this.alcance = new long[capacidad][];
+        for (int i = 0; i < n; i++) {
+            ids.put(g.ciudades[i], i);
+            ciudades.add(g.ciudades[i]);
+            componenteInicial[i] = scc.componente[i];
+        }
+        this.cantidadComponentes = scc.cantidad;
+        this.representantes = scc.cantidad;
+        for (int c = 0; c < scc.cantidad; c++) {
+            padre[c] = c;
+        }
+        if (scc.cantidad > LIMITE_COMPONENTES) {
+            this.grafo = g;
+            return;
+        }
+        this.grafo = null;
+
+        // Miembros de cada componente, agrupados por orden de conteo
+        int[] inicioMiembros = new int[scc.cantidad + 1];
+        for (int i = 0; i < n; i++) {
+            inicioMiembros[scc.componente[i] + 1]++;
+        }
+        for (int c = 0; c < scc.cantidad; c++) {
+            inicioMiembros[c + 1] += inicioMiembros[c];
+        }
+        int[] miembros = new int[n];
+        int[] siguiente = Arrays.copyOf(inicioMiembros, scc.cantidad);
+        for (int i = 0; i < n; i++) {
+            miembros[siguiente[scc.componente[i]]++] = i;
+        }
+
+        // Tarjan numera las componentes en orden topológico inverso: cuando se
+        // arma la fila de c, las filas de todas sus sucesoras ya están completas
+        for (int c = 0; c < scc.cantidad; c++) {
+            long[] fila = new long[palabras];
+            fila[c >>> 6] |= 1L << c;
+            for (int m = inicioMiembros[c]; m < inicioMiembros[c + 1]; m++) {
+                int ciudad = miembros[m];
+                for (int a = g.inicio[ciudad]; a < g.inicio[ciudad + 1]; a++) {
+                    int d = scc.componente[g.destino[a]];
+                    if (d != c && !tiene(fila, d)) {
+                        unir(fila, alcance[d]);
+                    }
+                }
+            }
+            alcance[c] = fila;
+        }
+    }
+
+    private static boolean tiene(long[] fila, int componente) {
+        return (fila[componente >>> 6] & (1L << componente)) != 0;
+    }
+
+    private static void unir(long[] fila, long[] otra) {
+        for (int w = 0; w < otra.length; w++) {
+            fila[w] |= otra[w];
+        }
+    }
+
+    private int representante(int componente) {
+        int raiz = componente;
+        while (padre[raiz] != raiz) {
+            raiz = padre[raiz];
+        }
+        // Compresión de caminos
+        while (padre[componente] != raiz) {
+            int proximo = padre[componente];
+            padre[componente] = raiz;
+            componente = proximo;
+        }
+        return raiz;
+    }
+
+    /**
+     * Indica si el índice se puede actualizar con las altas; si no, hay que
+     * volver a armarlo después de cada cambio
+     */
+    boolean esIncremental() {
+        return grafo == null;
+    }
+
+    /**
+     * Registra una ciudad nueva como componente propia (sin aristas); solo
+     * vale si esIncremental()
+     */
+    void agregarCiudad(Ciudad ciudad) {
+        if (ids.containsKey(ciudad)) {
+            return;
+        }
+        if (ciudades.size() == componenteInicial.length) {
+            crecer();
+        }
+        int id = ciudades.size();
+        int c = cantidadComponentes++;
+        ids.put(ciudad, id);
+        ciudades.add(ciudad);
+        componenteInicial[id] = c;
+        padre[c] = c;
+        alcance[c] = new long[padre.length >>> 6];
+        alcance[c][c >>> 6] |= 1L << c;
+        representantes++;
+    }
+
+    /**
+     * Duplica la capacidad de ciudades y de componentes (nunca hay más
+     * componentes creadas que ciudades)
+     */
+    private void crecer() {
+        int capacidad = padre.length * 2;
+        int palabras = capacidad >>> 6;
+        componenteInicial = Arrays.copyOf(componenteInicial, capacidad);
+        padre = Arrays.copyOf(padre, capacidad);
+        alcance = Arrays.copyOf(alcance, capacidad);
+        for (int c = 0; c < cantidadComponentes; c++) {
+            if (padre[c] == c) {
+                alcance[c] = Arrays.copyOf(alcance[c], palabras);
+            } else {
+                alcance[c] = null; // las unidas usan la fila de su representante
+            }
+        }
+    }
+
+    /**
+     * Actualiza el índice con la arista origen → destino (ambas ciudades ya
+     * registradas); solo vale si esIncremental()
+     */
+    void agregarArista(Ciudad origen, Ciudad destino) {
+        int cu = componenteInicial[ids.get(origen)];
+        int cv = componenteInicial[ids.get(destino)];
+        int ru = representante(cu);
+        int rv = representante(cv);
+        if (tiene(alcance[ru], cv)) {
+            return; // no cambia ninguna alcanzabilidad
+        }
+
+        // Todo lo que alcanzaba a origen ahora alcanza también lo que alcanza destino
+        long[] desdeDestino = alcance[rv];
+        for (int x = 0; x < cantidadComponentes; x++) {
+            if (padre[x] == x && tiene(alcance[x], cu)) {
+                unir(alcance[x], desdeDestino);
+            }
+        }
+
+        // Si destino ya alcanzaba a origen se cerró un ciclo: se unen las
+        // componentes alcanzables desde origen que a su vez alcanzan a origen
+        if (tiene(desdeDestino, cu)) {
+            long[] fila = alcance[ru];
+            for (int x = 0; x < cantidadComponentes; x++) {
+                if (x != ru && padre[x] == x && tiene(fila, x) && tiene(alcance[x], cu)) {
+                    padre[x] = ru;
+                    alcance[x] = null;
+                    representantes--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifica si hay un camino de origen a destino (una ciudad siempre se alcanza a sí misma)
+     */
+    boolean esAlcanzable(Ciudad origen, Ciudad destino) {
+        Integer idOrigen = ids.get(origen);
+        Integer idDestino = ids.get(destino);
+        if (idOrigen == null || idDestino == null) {
+            return false;
+        }
+        int ru = representante(componenteInicial[idOrigen]);
+        if (grafo == null) {
+            return tiene(alcance[ru], componenteInicial[idDestino]);
+        }
+        return ru == representante(componenteInicial[idDestino]) || hayCamino(idOrigen, idDestino);
+    }
+
+    /**
+     * BFS sobre la vista compilada que corta al alcanzar el destino
+     */
+    private boolean hayCamino(int origen, int destino) {
+        int n = grafo.ciudades.length;
+        boolean[] visitados = new boolean[n];
+        int[] cola = new int[n];
+        int frente = 0;
+        int fin = 0;
+        visitados[origen] = true;
+        cola[fin++] = origen;
+        while (frente < fin) {
+            int actual = cola[frente++];
+            for (int a = grafo.inicio[actual]; a < grafo.inicio[actual + 1]; a++) {
+                int vecino = grafo.destino[a];
+                if (vecino == destino) {
+                    return true;
+                }
+                if (!visitados[vecino]) {
+                    visitados[vecino] = true;
+                    cola[fin++] = vecino;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verifica si las dos ciudades están en la misma componente fuertemente conexa
+     */
+    boolean mismaComponente(Ciudad a, Ciudad b) {
+        Integer idA = ids.get(a);
+        Integer idB = ids.get(b);
+        return idA != null && idB != null
+                && representante(componenteInicial[idA]) == representante(componenteInicial[idB]);
+    }
+
+    int getCantidadComponentes() {
+        return representantes;
+    }
+
+    /**
+     * Componentes fuertemente conexas; cada una y sus ciudades en orden de alta
+     */
+    List<List<Ciudad>> componentes() {
+        List<List<Ciudad>> resultado = new ArrayList<>(representantes);
+        int[] posicion = new int[cantidadComponentes];
+        Arrays.fill(posicion, -1);
+        for (int id = 0; id < ciudades.size(); id++) {
+            int r = representante(componenteInicial[id]);
+            if (posicion[r] < 0) {
+                posicion[r] = resultado.size();
+                resultado.add(new ArrayList<>());
+            }
+            resultado.get(posicion[r]).add(ciudades.get(id));
+        }
+        return resultado;
+    }
+}
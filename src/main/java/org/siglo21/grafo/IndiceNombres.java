@@ -0,0 +1,141 @@
+package org.siglo21.grafo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice de ciudades por nombre y código, sin tildes ni mayúsculas
+ * <p>
+ * Cada nombre se normaliza una sola vez al dar de alta la ciudad. La búsqueda
+ * exacta es un HashMap; el autocompletado usa un arreglo de claves ordenado
+ * (nombre completo, cada palabra que no es la primera y código), donde las
+ * claves con un prefijo dado quedan contiguas y se encuentran con búsqueda
+ * binaria. El arreglo se reordena solo cuando hubo altas desde la última
+ * consulta.
+ * <p>
+ * No es seguro para hilos: Grafo lo usa siempre bajo su propio lock.
+ */
+final class IndiceNombres {
+
+    private final Map<String, Ciudad> exactas = new HashMap<>();
+    private Entrada[] entradas = new Entrada[16];
+    private int cantidad;
+    private boolean ordenado = true;
+
+    /**
+     * Registra el nombre y el código de la ciudad. Si otra ciudad ya usa la
+     * misma clave normalizada, la búsqueda exacta sigue devolviendo la primera.
+     */
+    void agregar(Ciudad ciudad) {
+        String nombre = normalizar(ciudad.getNombre());
+        exactas.putIfAbsent(nombre, ciudad);
+        agregarEntrada(nombre, ciudad);
+        for (int i = nombre.indexOf(' '); i >= 0; i = nombre.indexOf(' ', i + 1)) {
+            if (i + 1 < nombre.length() && nombre.charAt(i + 1) != ' ') {
+                agregarEntrada(nombre.substring(i + 1), ciudad);
+            }
+        }
+        if (ciudad.getCodigo() != null) {
+            String codigo = normalizar(ciudad.getCodigo());
+            exactas.putIfAbsent(codigo, ciudad);
+            agregarEntrada(codigo, ciudad);
+        }
+    }
+
+    private void agregarEntrada(String clave, Ciudad ciudad) {
+        if (cantidad == entradas.length) {
+            entradas = Arrays.copyOf(entradas, cantidad * 2);
+        }
+        entradas[cantidad++] = new Entrada(clave, ciudad);
+        ordenado = false;
+    }
+
+    /**
+     * Ciudad cuyo nombre o código coincide exactamente (sin tildes ni mayúsculas), o null
+     */
+    Ciudad buscar(String texto) {
+        return exactas.get(normalizar(texto.trim()));
+    }
+
+    /**
+     * Hasta limite ciudades cuyo nombre, alguna palabra del nombre o código
+     * empieza con el prefijo, en orden alfabético de la clave que coincide
+     */
+    List<Ciudad> sugerir(String prefijo, int limite) {
+        String clave = normalizar(prefijo.trim());
+        if (clave.isEmpty() || limite <= 0) {
+            return new ArrayList<>();
+        }
+        if (!ordenado) {
+            // Casi ordenado si hubo pocas altas: el sort por mezcla lo aprovecha
+            Arrays.sort(entradas, 0, cantidad);
+            ordenado = true;
+        }
+
+        // Primera clave >= prefijo
+        int bajo = 0;
+        int alto = cantidad;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (entradas[medio].clave.compareTo(clave) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+
+        Set<Ciudad> encontradas = new LinkedHashSet<>();
+        for (int i = bajo; i < cantidad && encontradas.size() < limite
+                && entradas[i].clave.startsWith(clave); i++) {
+            encontradas.add(entradas[i].ciudad);
+        }
+        return new ArrayList<>(encontradas);
+    }
+
+    /**
+     * Normaliza un texto para compararlo sin tildes ni mayúsculas
+     * Los textos ASCII (el caso común) no pasan por el Normalizer
+     */
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        boolean ascii = true;
+        for (int i = 0; i < texto.length() && ascii; i++) {
+            ascii = texto.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return texto.toLowerCase();
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder resultado = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString().toLowerCase();
+    }
+
+    private static final class Entrada implements Comparable<Entrada> {
+        final String clave;
+        final Ciudad ciudad;
+
+        Entrada(String clave, Ciudad ciudad) {
+            this.clave = clave;
+            this.ciudad = ciudad;
+        }
+
+        @Override
+        public int compareTo(Entrada otra) {
+            return clave.compareTo(otra.clave);
+        }
+    }
+}
@@ -1,19 +1,21 @@
 package org.siglo21.grafo;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Representa un itinerario(ruta) entre ciudades
+ * Es inmutable, por lo que puede compartirse entre consultas
  */
-public class Itinerario {
-    private List<Ciudad> ciudades;
-    private List<Arista> aristas;
-    private double tiempoTotal;
-    private double precioBaseTotal;
+public final class Itinerario {
+    private final List<Ciudad> ciudades;
+    private final List<Arista> aristas;
+    private final double tiempoTotal;
+    private final double precioBaseTotal;
 
     public Itinerario(List<Ciudad> ciudades, List<Arista> aristas, double tiempoTotal, double precioBaseTotal) {
-        this.ciudades = ciudades;
-        this.aristas = aristas;
+        this.ciudades = Collections.unmodifiableList(ciudades);
+        this.aristas = Collections.unmodifiableList(aristas);
         this.tiempoTotal = tiempoTotal;
         this.precioBaseTotal = precioBaseTotal;
     }
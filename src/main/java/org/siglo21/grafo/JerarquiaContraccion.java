@@ -0,0 +1,783 @@
+package org.siglo21.grafo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Jerarquía de contracción (contraction hierarchy) sobre la vista compilada
+ * del grafo. El preprocesamiento contrae las ciudades de a una en orden de
+ * importancia y agrega atajos que preservan las rutas mínimas en
+ * (tiempo, precio). Las consultas son un Dijkstra bidireccional que solo
+ * sube en la jerarquía, por lo que exploran muy pocas ciudades.
+ * <p>
+ * Cada atajo recuerda las dos aristas que reemplaza, así el itinerario se
+ * expande siempre a las aristas originales del grafo.
+ */
+public final class JerarquiaContraccion {
+
+    private static final int MAGICO = 0x50433243; // "PC2C"
+    private static final int VERSION_FORMATO = 2;
+    // Límites de ciudades asentadas por búsqueda de testigos; cortar antes solo agrega atajos de más
+    private static final int LIMITE_TESTIGO = 500;
+    private static final int LIMITE_TESTIGO_SIMULACION = 50;
+    // Los pesos se cuantizan a enteros (exactos en double) para que las sumas de los
+    // atajos no dependan del orden y los empates en tiempo se resuelvan por precio.
+    // Estas son las escalas más finas; si la suma de todos los pesos de la red
+    // escalada pasara de EXACTO, la escala se achica de a potencias de 10
+    private static final double ESCALA_TIEMPO = 1e9;
+    private static final double ESCALA_PRECIO = 1e4;
+    private static final double EXACTO = 0x1p52; // margen bajo 2^53 para el redondeo de cada arista
+
+    private static final ThreadLocal<EspacioBusqueda[]> ESPACIOS = ThreadLocal.withInitial(
+            () -> new EspacioBusqueda[]{new EspacioBusqueda(), new EspacioBusqueda()});
+
+    private final GrafoCompilado grafo;
+    private final int[] rango;
+    // Aristas de la jerarquía: originales (aristaOriginal >= 0) y atajos (hijos >= 0),
+    // con tiempo y precio cuantizados
+    private final int[] origen;
+    private final int[] destino;
+    private final double[] tiempo;
+    private final double[] precio;
+    private final int[] hijoIzquierdo;
+    private final int[] hijoDerecho;
+    private final int[] aristaOriginal;
+    // Aristas que suben desde cada ciudad, y aristas que bajan hacia cada ciudad
+    private final int[] inicioSubida;
+    private final int[] subida;
+    private final int[] inicioBajada;
+    private final int[] bajada;
+
+    private JerarquiaContraccion(GrafoCompilado grafo, int[] rango, int[] origen, int[] destino,
+                                 double[] tiempo, double[] precio, int[] hijoIzquierdo, int[] hijoDerecho,
+                                 int[] aristaOriginal) {
+        this.grafo = grafo;
+        this.rango = rango;
+        this.origen = origen;
+        this.destino = destino;
+        this.tiempo = tiempo;
+        this.precio = precio;
+        this.hijoIzquierdo = hijoIzquierdo;
+        this.hijoDerecho = hijoDerecho;
+        this.aristaOriginal = aristaOriginal;
+
+        int n = rango.length;
+        int m = origen.length;
+        this.inicioSubida = new int[n + 1];
+        this.inicioBajada = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            if (rango[origen[e]] < rango[destino[e]]) {
+                inicioSubida[origen[e] + 1]++;
+            } else {
+                inicioBajada[destino[e] + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            inicioSubida[i + 1] += inicioSubida[i];
+            inicioBajada[i + 1] += inicioBajada[i];
+        }
+        this.subida = new int[inicioSubida[n]];
+        this.bajada = new int[inicioBajada[n]];
+        int[] siguienteSubida = Arrays.copyOf(inicioSubida, n);
+        int[] siguienteBajada = Arrays.copyOf(inicioBajada, n);
+        for (int e = 0; e < m; e++) {
+            if (rango[origen[e]] < rango[destino[e]]) {
+                subida[siguienteSubida[origen[e]]++] = e;
+            } else {
+                bajada[siguienteBajada[destino[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * Construye la jerarquía en paralelo sobre una vista compilada
+     */
+    public static JerarquiaContraccion construir(GrafoCompilado grafo) {
+        return construir(grafo, true);
+    }
+
+    /**
+     * Construye la jerarquía; con paralelo=true las búsquedas de testigos y el
+     * cálculo de prioridades se reparten en el pool común de fork-join.
+     * El resultado es el mismo en ambos modos.
+     *
+     * @throws IllegalArgumentException si alguna arista tiene tiempo o precio
+     *                                  negativo o no finito
+     */
+    public static JerarquiaContraccion construir(GrafoCompilado grafo, boolean paralelo) {
+        return new Contractor(grafo, paralelo).contraer();
+    }
+
+    /**
+     * Vista compilada sobre la que se construyó o cargó
+     */
+    GrafoCompilado getGrafo() {
+        return grafo;
+    }
+
+    public int getCantidadCiudades() {
+        return rango.length;
+    }
+
+    /**
+     * Cantidad de aristas de la jerarquía (originales útiles más atajos)
+     */
+    public int getCantidadAristas() {
+        return origen.length;
+    }
+
+    /**
+     * Cantidad de atajos agregados por la contracción
+     */
+    public int getCantidadAtajos() {
+        int atajos = 0;
+        for (int original : aristaOriginal) {
+            if (original < 0) {
+                atajos++;
+            }
+        }
+        return atajos;
+    }
+
+    /**
+     * Ruta mínima en tiempo (desempata por precio) entre dos ciudades
+     * Retorna null si alguna ciudad no está en el grafo o no hay camino.
+     * Tiempos que difieren menos que la cuantización (1e-9 h salvo en redes
+     * enormes) cuentan como empate y se resuelven por precio.
+     */
+    public Itinerario rutaMinima(Ciudad origenRuta, Ciudad destinoRuta) {
+        int s = grafo.getId(origenRuta);
+        int t = grafo.getId(destinoRuta);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        if (s == t) {
+            return MotorDijkstra.rutaMinima(grafo, s, t);
+        }
+
+        EspacioBusqueda[] espacios = ESPACIOS.get();
+        EspacioBusqueda adelante = espacios[0];
+        EspacioBusqueda atras = espacios[1];
+        adelante.preparar(rango.length);
+        atras.preparar(rango.length);
+
+        adelante.etiquetar(s, 0, 0, -1);
+        adelante.heap.insertarOReducir(s, 0, 0);
+        atras.etiquetar(t, 0, 0, -1);
+        atras.heap.insertarOReducir(t, 0, 0);
+
+        double mejorTiempo = Double.POSITIVE_INFINITY;
+        double mejorPrecio = Double.POSITIVE_INFINITY;
+        int encuentro = -1;
+        boolean adelanteActivo = true;
+        boolean atrasActivo = true;
+
+        while (adelanteActivo || atrasActivo) {
+            if (adelanteActivo) {
+                adelanteActivo = !adelante.heap.estaVacio() && menor(adelante.heap.primariaMinima(),
+                        adelante.heap.secundariaMinima(), mejorTiempo, mejorPrecio);
+            }
+            if (atrasActivo) {
+                atrasActivo = !atras.heap.estaVacio() && menor(atras.heap.primariaMinima(),
+                        atras.heap.secundariaMinima(), mejorTiempo, mejorPrecio);
+            }
+
+            if (adelanteActivo) {
+                int x = adelante.heap.extraerMinimo();
+                adelante.asentar(x);
+                if (atras.fueAlcanzado(x)) {
+                    double tiempoTotal = adelante.tiempo[x] + atras.tiempo[x];
+                    double precioTotal = adelante.precio[x] + atras.precio[x];
+                    if (menor(tiempoTotal, precioTotal, mejorTiempo, mejorPrecio)) {
+                        mejorTiempo = tiempoTotal;
+                        mejorPrecio = precioTotal;
+                        encuentro = x;
+                    }
+                }
+                relajar(adelante, x, inicioSubida, subida, destino);
+            }
+            if (atrasActivo) {
+                int x = atras.heap.extraerMinimo();
+                atras.asentar(x);
+                if (adelante.fueAlcanzado(x)) {
+                    double tiempoTotal = adelante.tiempo[x] + atras.tiempo[x];
+                    double precioTotal = adelante.precio[x] + atras.precio[x];
+                    if (menor(tiempoTotal, precioTotal, mejorTiempo, mejorPrecio)) {
+                        mejorTiempo = tiempoTotal;
+                        mejorPrecio = precioTotal;
+                        encuentro = x;
+                    }
+                }
+                relajar(atras, x, inicioBajada, bajada, origen);
+            }
+        }
+
+        if (encuentro < 0) {
+            return null; // No hay camino
+        }
+        return expandir(s, t, encuentro, adelante.aristaPrevia, atras.aristaPrevia);
+    }
+
+    /**
+     * Cantidad de ciudades asentadas por la última consulta del hilo actual
+     */
+    public static int getNodosAsentados() {
+        EspacioBusqueda[] espacios = ESPACIOS.get();
+        return espacios[0].nodosAsentados + espacios[1].nodosAsentados;
+    }
+
+    /**
+     * Relaja las aristas de la jerarquía que salen de x en el sentido de la búsqueda
+     */
+    private void relajar(EspacioBusqueda espacio, int x, int[] inicio, int[] aristas, int[] extremo) {
+        double tiempoActual = espacio.tiempo[x];
+        double precioActual = espacio.precio[x];
+        for (int k = inicio[x]; k < inicio[x + 1]; k++) {
+            int e = aristas[k];
+            int vecino = extremo[e];
+            if (espacio.estaAsentado(vecino))
+                continue;
+            double nuevoTiempo = tiempoActual + tiempo[e];
+            double nuevoPrecio = precioActual + precio[e];
+            if (espacio.mejora(vecino, nuevoTiempo, nuevoPrecio)) {
+                espacio.etiquetar(vecino, nuevoTiempo, nuevoPrecio, e);
+                espacio.heap.insertarOReducir(vecino, nuevoTiempo, nuevoPrecio);
+            }
+        }
+    }
+
+    /**
+     * Arma el itinerario: sube desde el origen hasta el encuentro, baja hasta el
+     * destino y expande cada atajo en las aristas originales que representa
+     */
+    private Itinerario expandir(int s, int t, int encuentro, int[] previaAdelante, int[] previaAtras) {
+        List<Integer> aristasJerarquia = new ArrayList<>();
+        for (int x = encuentro; x != s; x = origen[previaAdelante[x]]) {
+            aristasJerarquia.add(previaAdelante[x]);
+        }
+        Collections.reverse(aristasJerarquia);
+        for (int x = encuentro; x != t; x = destino[previaAtras[x]]) {
+            aristasJerarquia.add(previaAtras[x]);
+        }
+
+        List<Ciudad> ciudades = new ArrayList<>();
+        List<Arista> aristas = new ArrayList<>();
+        double tiempoTotal = 0;
+        double precioTotal = 0;
+        ciudades.add(grafo.ciudades[s]);
+
+        int[] pila = new int[16];
+        for (int arista : aristasJerarquia) {
+            int tope = 0;
+            pila[tope++] = arista;
+            while (tope > 0) {
+                int e = pila[--tope];
+                if (aristaOriginal[e] >= 0) {
+                    int a = aristaOriginal[e];
+                    aristas.add(grafo.aristas[a]);
+                    ciudades.add(grafo.ciudades[grafo.destino[a]]);
+                    tiempoTotal += grafo.tiempo[a];
+                    precioTotal += grafo.precioBase[a];
+                } else {
+                    if (tope + 2 > pila.length) {
+                        pila = Arrays.copyOf(pila, pila.length * 2);
+                    }
+                    // El hijo derecho va abajo para procesar primero el izquierdo
+                    pila[tope++] = hijoDerecho[e];
+                    pila[tope++] = hijoIzquierdo[e];
+                }
+            }
+        }
+
+        return new Itinerario(ciudades, aristas, tiempoTotal, precioTotal);
+    }
+
+    /**
+     * Guarda la jerarquía en un archivo binario
+     */
+    public void guardar(Path archivo) throws IOException {
+        try (OutputStream salida = Files.newOutputStream(archivo);
+             DataOutputStream datos = new DataOutputStream(new BufferedOutputStream(salida, 1 << 16))) {
+            datos.writeInt(MAGICO);
+            datos.writeInt(VERSION_FORMATO);
+            datos.writeInt(grafo.getCantidadCiudades());
+            datos.writeInt(grafo.getCantidadAristas());
+            datos.writeLong(grafo.huella());
+            datos.writeInt(origen.length);
+            for (int r : rango) {
+                datos.writeInt(r);
+            }
+            for (int e = 0; e < origen.length; e++) {
+                datos.writeInt(origen[e]);
+                datos.writeInt(destino[e]);
+                datos.writeDouble(tiempo[e]);
+                datos.writeDouble(precio[e]);
+                datos.writeInt(hijoIzquierdo[e]);
+                datos.writeInt(hijoDerecho[e]);
+                datos.writeInt(aristaOriginal[e]);
+            }
+        }
+    }
+
+    /**
+     * Carga una jerarquía guardada con {@link #guardar(Path)}
+     * La vista compilada debe tener las mismas ciudades y aristas, en el mismo
+     * orden, que la vista sobre la que se construyó
+     *
+     * @throws IOException si el archivo no se puede leer, está dañado o es de otra red
+     */
+    public static JerarquiaContraccion cargar(Path archivo, GrafoCompilado grafo) throws IOException {
+        try (InputStream entrada = Files.newInputStream(archivo);
+             DataInputStream datos = new DataInputStream(new BufferedInputStream(entrada, 1 << 16))) {
+            if (datos.readInt() != MAGICO) {
+                throw new IOException("El archivo no es una jerarquía de contracción");
+            }
+            int version = datos.readInt();
+            if (version != VERSION_FORMATO) {
+                throw new IOException("Versión de formato no soportada: " + version);
+            }
+            int n = datos.readInt();
+            int aristasGrafo = datos.readInt();
+            long huella = datos.readLong();
+            if (n != grafo.getCantidadCiudades() || aristasGrafo != grafo.getCantidadAristas()
+                    || huella != grafo.huella()) {
+                throw new IOException("La jerarquía no corresponde a este grafo");
+            }
+            int m = datos.readInt();
+            int[] rango = new int[n];
+            for (int i = 0; i < n; i++) {
+                rango[i] = datos.readInt();
+            }
+            int[] origen = new int[m];
+            int[] destino = new int[m];
+            double[] tiempo = new double[m];
+            double[] precio = new double[m];
+            int[] hijoIzquierdo = new int[m];
+            int[] hijoDerecho = new int[m];
+            int[] aristaOriginal = new int[m];
+            for (int e = 0; e < m; e++) {
+                origen[e] = datos.readInt();
+                destino[e] = datos.readInt();
+                tiempo[e] = datos.readDouble();
+                precio[e] = datos.readDouble();
+                hijoIzquierdo[e] = datos.readInt();
+                hijoDerecho[e] = datos.readInt();
+                aristaOriginal[e] = datos.readInt();
+            }
+            return new JerarquiaContraccion(grafo, rango, origen, destino, tiempo, precio,
+                    hijoIzquierdo, hijoDerecho, aristaOriginal);
+        }
+    }
+
+    private static boolean menor(double tiempo1, double precio1, double tiempo2, double precio2) {
+        return tiempo1 < tiempo2 || (tiempo1 == tiempo2 && precio1 < precio2);
+    }
+
+    /**
+     * Estado mutable del preprocesamiento
+     * Contrae por rondas: en cada una elige las ciudades que son mínimo local de
+     * prioridad (ningún par es vecino), calcula sus atajos en paralelo y los
+     * aplica en orden de id para que el resultado sea determinista.
+     */
+    private static final class Contractor {
+        private final GrafoCompilado grafo;
+        private final boolean paralelo;
+        private final int n;
+
+        // Aristas de la jerarquía en construcción (arreglos que crecen)
+        private int cantidad;
+        private int[] origen;
+        private int[] destino;
+        private double[] tiempo;
+        private double[] precio;
+        private int[] hijoIzquierdo;
+        private int[] hijoDerecho;
+        private int[] aristaOriginal;
+
+        // Grafo remanente: aristas vivas entre ciudades aún no contraídas
+        private final int[][] salientes;
+        private final int[] cantidadSalientes;
+        private final int[][] entrantes;
+        private final int[] cantidadEntrantes;
+
+        private final boolean[] contraida;
+        private final boolean[] enLote;
+        private final int[] prioridad;
+        private final int[] vecinosContraidos;
+        private final int[] nivel;
+        private final int[] rango;
+        private final ThreadLocal<Objetivos> objetivos;
+
+        Contractor(GrafoCompilado grafo, boolean paralelo) {
+            this.grafo = grafo;
+            this.paralelo = paralelo;
+            this.n = grafo.getCantidadCiudades();
+            int capacidad = Math.max(16, grafo.getCantidadAristas() * 2);
+            this.origen = new int[capacidad];
+            this.destino = new int[capacidad];
+            this.tiempo = new double[capacidad];
+            this.precio = new double[capacidad];
+            this.hijoIzquierdo = new int[capacidad];
+            this.hijoDerecho = new int[capacidad];
+            this.aristaOriginal = new int[capacidad];
+            this.salientes = new int[n][];
+            this.cantidadSalientes = new int[n];
+            this.entrantes = new int[n][];
+            this.cantidadEntrantes = new int[n];
+            this.contraida = new boolean[n];
+            this.enLote = new boolean[n];
+            this.prioridad = new int[n];
+            this.vecinosContraidos = new int[n];
+            this.nivel = new int[n];
+            this.rango = new int[n];
+            this.objetivos = ThreadLocal.withInitial(() -> new Objetivos(n));
+
+            for (int i = 0; i < n; i++) {
+                salientes[i] = new int[Math.max(2, grafo.finAristas(i) - grafo.inicioAristas(i))];
+                entrantes[i] = new int[Math.max(2, grafo.finEntrantes(i) - grafo.inicioEntrantes(i))];
+            }
+            // Copiar las aristas originales quedándose con la mejor entre paralelas
+            double sumaTiempo = 0;
+            double sumaPrecio = 0;
+            for (int a = 0; a < grafo.getCantidadAristas(); a++) {
+                double t = grafo.tiempo[a];
+                double p = grafo.precioBase[a];
+                if (!(t >= 0 && p >= 0 && t < Double.POSITIVE_INFINITY && p < Double.POSITIVE_INFINITY)) {
+                    throw new IllegalArgumentException("Arista con tiempo o precio inválido: "
+                            + grafo.ciudades[grafo.origen[a]] + " " + grafo.aristas[a]);
+                }
+                sumaTiempo += t;
+                sumaPrecio += p;
+            }
+            // Ningún camino suma más que todas las aristas: con estas escalas las
+            // sumas de los atajos son enteros exactos
+            double escalaTiempo = escala(ESCALA_TIEMPO, sumaTiempo);
+            double escalaPrecio = escala(ESCALA_PRECIO, sumaPrecio);
+            for (int a = 0; a < grafo.getCantidadAristas(); a++) {
+                int u = grafo.origen[a];
+                int w = grafo.destino[a];
+                if (u != w) {
+                    agregarOMejorar(u, w, Math.rint(grafo.tiempo[a] * escalaTiempo),
+                            Math.rint(grafo.precioBase[a] * escalaPrecio), -1, -1, a);
+                }
+            }
+        }
+
+        /**
+         * La escala más fina, a partir de la máxima, con la que la suma cabe en EXACTO
+         */
+        private static double escala(double maxima, double suma) {
+            double escala = maxima;
+            while (suma * escala > EXACTO) {
+                escala /= 10;
+            }
+            return escala;
+        }
+
+        JerarquiaContraccion contraer() {
+            int[] pendientes = IntStream.range(0, n).toArray();
+            calcularPrioridades(pendientes);
+
+            int siguienteRango = 0;
+            while (pendientes.length > 0) {
+                int[] lote = flujo(Arrays.stream(pendientes)).filter(this::esMinimoLocal).toArray();
+                for (int v : lote) {
+                    enLote[v] = true;
+                }
+
+                List<List<double[]>> atajos = flujo(Arrays.stream(lote))
+                        .mapToObj(v -> buscarAtajos(v, LIMITE_TESTIGO))
+                        .collect(Collectors.toList());
+
+                int[] afectados = new int[0];
+                int cantidadAfectados = 0;
+                for (int i = 0; i < lote.length; i++) {
+                    int v = lote[i];
+                    for (double[] atajo : atajos.get(i)) {
+                        agregarOMejorar((int) atajo[0], (int) atajo[1], atajo[2], atajo[3],
+                                (int) atajo[4], (int) atajo[5], -1);
+                    }
+                    // Desconectar v del grafo remanente y anotar sus vecinos
+                    int grado = cantidadSalientes[v] + cantidadEntrantes[v];
+                    if (cantidadAfectados + grado > afectados.length) {
+                        afectados = Arrays.copyOf(afectados, Math.max(cantidadAfectados + grado, afectados.length * 2));
+                    }
+                    for (int k = 0; k < cantidadSalientes[v]; k++) {
+                        int w = destino[salientes[v][k]];
+                        quitar(entrantes[w], cantidadEntrantes, w, v, true);
+                        vecinosContraidos[w]++;
+                        nivel[w] = Math.max(nivel[w], nivel[v] + 1);
+                        afectados[cantidadAfectados++] = w;
+                    }
+                    for (int k = 0; k < cantidadEntrantes[v]; k++) {
+                        int u = origen[entrantes[v][k]];
+                        quitar(salientes[u], cantidadSalientes, u, v, false);
+                        vecinosContraidos[u]++;
+                        nivel[u] = Math.max(nivel[u], nivel[v] + 1);
+                        afectados[cantidadAfectados++] = u;
+                    }
+                    cantidadSalientes[v] = 0;
+                    cantidadEntrantes[v] = 0;
+                    contraida[v] = true;
+                    enLote[v] = false;
+                    rango[v] = siguienteRango++;
+                }
+
+                calcularPrioridades(Arrays.stream(afectados, 0, cantidadAfectados)
+                        .filter(x -> !contraida[x]).distinct().toArray());
+                pendientes = Arrays.stream(pendientes).filter(x -> !contraida[x]).toArray();
+            }
+
+            return new JerarquiaContraccion(grafo, rango, Arrays.copyOf(origen, cantidad),
+                    Arrays.copyOf(destino, cantidad), Arrays.copyOf(tiempo, cantidad),
+                    Arrays.copyOf(precio, cantidad), Arrays.copyOf(hijoIzquierdo, cantidad),
+                    Arrays.copyOf(hijoDerecho, cantidad), Arrays.copyOf(aristaOriginal, cantidad));
+        }
+
+        private IntStream flujo(IntStream valores) {
+            return paralelo ? valores.parallel() : valores;
+        }
+
+        /**
+         * Prioridad: el doble de (atajos que generaría menos aristas que elimina),
+         * más los vecinos ya contraídos y el nivel en la jerarquía; los dos
+         * últimos reparten la contracción de forma uniforme por la red
+         */
+        private void calcularPrioridades(int[] ciudades) {
+            flujo(Arrays.stream(ciudades)).forEach(v -> {
+                int diferencia = buscarAtajos(v, LIMITE_TESTIGO_SIMULACION).size()
+                        - cantidadSalientes[v] - cantidadEntrantes[v];
+                prioridad[v] = 2 * diferencia + vecinosContraidos[v] + nivel[v];
+            });
+        }
+
+        /**
+         * Una ciudad entra en el lote si su prioridad es menor que la de todos sus vecinos
+         * (el id desempata), así ningún par del lote es adyacente
+         */
+        private boolean esMinimoLocal(int v) {
+            for (int k = 0; k < cantidadSalientes[v]; k++) {
+                if (!antes(v, destino[salientes[v][k]])) {
+                    return false;
+                }
+            }
+            for (int k = 0; k < cantidadEntrantes[v]; k++) {
+                if (!antes(v, origen[entrantes[v][k]])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean antes(int v, int u) {
+            return prioridad[v] < prioridad[u] || (prioridad[v] == prioridad[u] && v < u);
+        }
+
+        /**
+         * Atajos necesarios para contraer v: para cada par entrante (u, v) y
+         * saliente (v, w) se busca un camino testigo de u a w que evite v y el
+         * lote actual; si no existe uno tan bueno, hace falta el atajo u -> w.
+         * Cada atajo es {u, w, tiempo, precio, aristaUV, aristaVW}.
+         */
+        private List<double[]> buscarAtajos(int v, int limite) {
+            List<double[]> atajos = new ArrayList<>();
+            EspacioBusqueda espacio = ESPACIOS.get()[0];
+            Objetivos objetivos = this.objetivos.get();
+
+            for (int i = 0; i < cantidadEntrantes[v]; i++) {
+                int eEntrada = entrantes[v][i];
+                int u = origen[eEntrada];
+                if (enLote[u]) {
+                    continue;
+                }
+
+                // Cota de la búsqueda: el camino más caro que pasa por v
+                double tiempoMaximo = 0;
+                double precioMaximo = 0;
+                for (int j = 0; j < cantidadSalientes[v]; j++) {
+                    int eSalida = salientes[v][j];
+                    double t = tiempo[eEntrada] + tiempo[eSalida];
+                    double p = precio[eEntrada] + precio[eSalida];
+                    if (menor(tiempoMaximo, precioMaximo, t, p)) {
+                        tiempoMaximo = t;
+                        precioMaximo = p;
+                    }
+                }
+                int pendientes = objetivos.marcar(this, u, v);
+                buscarTestigos(espacio, objetivos, pendientes, u, v, tiempoMaximo, precioMaximo, limite);
+
+                for (int j = 0; j < cantidadSalientes[v]; j++) {
+                    int eSalida = salientes[v][j];
+                    int w = destino[eSalida];
+                    if (w == u || enLote[w]) {
+                        continue;
+                    }
+                    double t = tiempo[eEntrada] + tiempo[eSalida];
+                    double p = precio[eEntrada] + precio[eSalida];
+                    boolean hayTestigo = espacio.fueAlcanzado(w) && !menor(t, p, espacio.tiempo[w], espacio.precio[w]);
+                    if (!hayTestigo) {
+                        atajos.add(new double[]{u, w, t, p, eEntrada, eSalida});
+                    }
+                }
+            }
+            return atajos;
+        }
+
+        /**
+         * Dijkstra acotado desde u en el grafo remanente sin pasar por v ni por el lote
+         */
+        private void buscarTestigos(EspacioBusqueda espacio, Objetivos objetivos, int pendientes, int u, int v,
+                                    double tiempoMaximo, double precioMaximo, int limite) {
+            espacio.preparar(n);
+            espacio.etiquetar(u, 0, 0, -1);
+            espacio.heap.insertarOReducir(u, 0, 0);
+            while (pendientes > 0 && !espacio.heap.estaVacio() && espacio.nodosAsentados < limite) {
+                if (menor(tiempoMaximo, precioMaximo, espacio.heap.primariaMinima(), espacio.heap.secundariaMinima())) {
+                    break;
+                }
+                int x = espacio.heap.extraerMinimo();
+                espacio.asentar(x);
+                if (objetivos.esObjetivo(x)) {
+                    pendientes--;
+                }
+                for (int k = 0; k < cantidadSalientes[x]; k++) {
+                    int e = salientes[x][k];
+                    int y = destino[e];
+                    if (y == v || enLote[y] || espacio.estaAsentado(y)) {
+                        continue;
+                    }
+                    double nuevoTiempo = espacio.tiempo[x] + tiempo[e];
+                    double nuevoPrecio = espacio.precio[x] + precio[e];
+                    // Un camino más caro que la cota no puede ser testigo
+                    if (menor(tiempoMaximo, precioMaximo, nuevoTiempo, nuevoPrecio)) {
+                        continue;
+                    }
+                    if (espacio.mejora(y, nuevoTiempo, nuevoPrecio)) {
+                        espacio.etiquetar(y, nuevoTiempo, nuevoPrecio, e);
+                        espacio.heap.insertarOReducir(y, nuevoTiempo, nuevoPrecio);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Agrega la arista u -> w al grafo remanente, o mejora la existente si
+         * la nueva es más corta en (tiempo, precio)
+         */
+        private void agregarOMejorar(int u, int w, double t, double p, int izquierdo, int derecho, int original) {
+            for (int k = 0; k < cantidadSalientes[u]; k++) {
+                int e = salientes[u][k];
+                if (destino[e] == w) {
+                    if (menor(t, p, tiempo[e], precio[e])) {
+                        tiempo[e] = t;
+                        precio[e] = p;
+                        hijoIzquierdo[e] = izquierdo;
+                        hijoDerecho[e] = derecho;
+                        aristaOriginal[e] = original;
+                    }
+                    return;
+                }
+            }
+
+            if (cantidad == origen.length) {
+                int capacidad = cantidad * 2;
+                origen = Arrays.copyOf(origen, capacidad);
+                destino = Arrays.copyOf(destino, capacidad);
+                tiempo = Arrays.copyOf(tiempo, capacidad);
+                precio = Arrays.copyOf(precio, capacidad);
+                hijoIzquierdo = Arrays.copyOf(hijoIzquierdo, capacidad);
+                hijoDerecho = Arrays.copyOf(hijoDerecho, capacidad);
+                aristaOriginal = Arrays.copyOf(aristaOriginal, capacidad);
+            }
+            int e = cantidad++;
+            origen[e] = u;
+            destino[e] = w;
+            tiempo[e] = t;
+            precio[e] = p;
+            hijoIzquierdo[e] = izquierdo;
+            hijoDerecho[e] = derecho;
+            aristaOriginal[e] = original;
+
+            if (cantidadSalientes[u] == salientes[u].length) {
+                salientes[u] = Arrays.copyOf(salientes[u], salientes[u].length * 2);
+            }
+            salientes[u][cantidadSalientes[u]++] = e;
+            if (cantidadEntrantes[w] == entrantes[w].length) {
+                entrantes[w] = Arrays.copyOf(entrantes[w], entrantes[w].length * 2);
+            }
+            entrantes[w][cantidadEntrantes[w]++] = e;
+        }
+
+        /**
+         * Destinos de las salientes de una ciudad que la búsqueda de testigos
+         * tiene que asentar; cuando los asentó a todos puede cortar
+         */
+        private static final class Objetivos {
+            private final int[] marca;
+            private int sello;
+
+            Objetivos(int n) {
+                this.marca = new int[n];
+            }
+
+            /**
+             * Marca los destinos de v (sin u ni el lote) y retorna cuántos son
+             */
+            int marcar(Contractor c, int u, int v) {
+                if (++sello == Integer.MAX_VALUE) {
+                    Arrays.fill(marca, 0);
+                    sello = 1;
+                }
+                int cantidad = 0;
+                for (int j = 0; j < c.cantidadSalientes[v]; j++) {
+                    int w = c.destino[c.salientes[v][j]];
+                    if (w != u && !c.enLote[w] && marca[w] != sello) {
+                        marca[w] = sello;
+                        cantidad++;
+                    }
+                }
+                return cantidad;
+            }
+
+            /**
+             * Verifica si x es un objetivo pendiente y lo da por asentado
+             */
+            boolean esObjetivo(int x) {
+                if (marca[x] == sello) {
+                    marca[x] = 0;
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Quita de la lista de x las aristas que la unen con la ciudad contraída v
+         */
+        private void quitar(int[] lista, int[] cantidades, int x, int v, boolean porOrigen) {
+            int k = 0;
+            while (k < cantidades[x]) {
+                int e = lista[k];
+                int extremo = porOrigen ? origen[e] : destino[e];
+                if (extremo == v) {
+                    lista[k] = lista[--cantidades[x]];
+                } else {
+                    k++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.siglo21.grafo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lote de aristas para agregar al grafo de una sola vez (cargas masivas)
+ * <p>
+ * Las aristas se guardan en arreglos paralelos de primitivos y las ciudades
+ * se refieren por su posición en la lista que recibe el constructor, así que
+ * armar el lote no crea objetos por arista ni busca en mapas. Ver
+ * Grafo.agregarAristas.
+ */
+public final class LoteAristas {
+
+    final Ciudad[] ciudades;
+    int[] origen;
+    int[] destino;
+    double[] tiempo;
+    double[] precioBase;
+    boolean[] esDirecto;
+    int cantidad;
+
+    /**
+     * @param ciudades  ciudades a las que se refieren los índices de las aristas
+     * @param capacidad cantidad de aristas esperada (el lote crece si hace falta)
+     */
+    public LoteAristas(List<Ciudad> ciudades, int capacidad) {
+        this.ciudades = ciudades.toArray(new Ciudad[0]);
+        int inicial = Math.max(16, capacidad);
+        this.origen = new int[inicial];
+        this.destino = new int[inicial];
+        this.tiempo = new double[inicial];
+        this.precioBase = new double[inicial];
+        this.esDirecto = new boolean[inicial];
+    }
+
+    /**
+     * Agrega la arista ciudades[origen] → ciudades[destino]
+     */
+    public void agregar(int origen, int destino, double tiempo, double precioBase, boolean esDirecto) {
+        if (origen < 0 || origen >= ciudades.length || destino < 0 || destino >= ciudades.length) {
+            throw new IndexOutOfBoundsException("Ciudad fuera del lote: " + origen + " → " + destino);
+        }
+        if (cantidad == this.origen.length) {
+            int capacidad = cantidad * 2;
+            this.origen = Arrays.copyOf(this.origen, capacidad);
+            this.destino = Arrays.copyOf(this.destino, capacidad);
+            this.tiempo = Arrays.copyOf(this.tiempo, capacidad);
+            this.precioBase = Arrays.copyOf(this.precioBase, capacidad);
+            this.esDirecto = Arrays.copyOf(this.esDirecto, capacidad);
+        }
+        this.origen[cantidad] = origen;
+        this.destino[cantidad] = destino;
+        this.tiempo[cantidad] = tiempo;
+        this.precioBase[cantidad] = precioBase;
+        this.esDirecto[cantidad] = esDirecto;
+        cantidad++;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+}
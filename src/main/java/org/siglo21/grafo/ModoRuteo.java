@@ -0,0 +1,15 @@
+package org.siglo21.grafo;
+
+/**
+ * Estrategia de búsqueda para las consultas punto a punto
+ */
+public enum ModoRuteo {
+    /** Dijkstra unidireccional desde el origen */
+    DIJKSTRA,
+    /** Dijkstra bidireccional: avanza desde el origen y desde el destino hasta encontrarse */
+    BIDIRECCIONAL,
+    /** A*: Dijkstra guiado por la distancia geográfica al destino */
+    A_ESTRELLA,
+    /** Jerarquía de contracción: se arma una vez por versión del grafo y después cada consulta explora muy poco */
+    JERARQUIA
+}
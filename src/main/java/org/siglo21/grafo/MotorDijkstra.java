@@ -0,0 +1,428 @@
+package org.siglo21.grafo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Motor de ruteo sobre la vista compilada del grafo
+ * Usa un heap d-ario indexado con decrease-key y arreglos de trabajo por hilo,
+ * de modo que una consulta solo reserva memoria para el itinerario resultante
+ */
+public final class MotorDijkstra {
+
+    private static final ThreadLocal<Espacios> ESPACIOS = ThreadLocal.withInitial(Espacios::new);
+
+    /**
+     * Espacios de trabajo de un hilo: uno por sentido de búsqueda
+     */
+    private static final class Espacios {
+        final EspacioBusqueda adelante = new EspacioBusqueda();
+        final EspacioBusqueda atras = new EspacioBusqueda();
+        int nodosAsentados;
+        // Destinos pendientes de una búsqueda a varios destinos, marcados con el sello vigente
+        int[] marcaDestino = new int[0];
+        int sello;
+
+        /**
+         * Marca los destinos y retorna cuántos distintos hay
+         */
+        int marcarDestinos(int[] destinos, int n) {
+            if (marcaDestino.length < n) {
+                marcaDestino = new int[n];
+                sello = 0;
+            }
+            if (++sello == Integer.MAX_VALUE) {
+                Arrays.fill(marcaDestino, 0);
+                sello = 1;
+            }
+            int distintos = 0;
+            for (int destino : destinos) {
+                if (marcaDestino[destino] != sello) {
+                    marcaDestino[destino] = sello;
+                    distintos++;
+                }
+            }
+            return distintos;
+        }
+
+        /**
+         * Verifica si la ciudad es un destino pendiente y lo da por alcanzado
+         */
+        boolean alcanzarDestino(int ciudad) {
+            if (marcaDestino[ciudad] == sello) {
+                marcaDestino[ciudad] = 0;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private MotorDijkstra() {
+    }
+
+    /**
+     * Ruta mínima en tiempo (desempata por precio) entre dos ciudades
+     * Retorna null si alguna ciudad no está en el grafo o no hay camino
+     */
+    public static Itinerario rutaMinima(GrafoCompilado g, Ciudad origen, Ciudad destino) {
+        return rutaMinima(g, origen, destino, ModoRuteo.DIJKSTRA);
+    }
+
+    /**
+     * Ruta mínima entre dos ciudades usando la estrategia indicada
+     */
+    public static Itinerario rutaMinima(GrafoCompilado g, Ciudad origen, Ciudad destino, ModoRuteo modo) {
+        int idOrigen = g.getId(origen);
+        int idDestino = g.getId(destino);
+        if (idOrigen < 0 || idDestino < 0) {
+            return null;
+        }
+        switch (modo) {
+            case BIDIRECCIONAL:
+                return rutaMinimaBidireccional(g, idOrigen, idDestino);
+            case A_ESTRELLA:
+                return rutaMinimaAEstrella(g, idOrigen, idDestino);
+            case JERARQUIA:
+                return g.getJerarquia().rutaMinima(origen, destino);
+            default:
+                return rutaMinima(g, idOrigen, idDestino);
+        }
+    }
+
+    static Itinerario rutaMinima(GrafoCompilado g, int origen, int destino) {
+        Espacios espacios = ESPACIOS.get();
+        EspacioBusqueda espacio = espacios.adelante;
+        espacio.preparar(g.ciudades.length);
+        Itinerario itinerario = buscar(g, espacio, origen, destino);
+        espacios.nodosAsentados = espacio.nodosAsentados;
+        return itinerario;
+    }
+
+    /**
+     * Árbol de rutas mínimas desde un origen hacia todas las ciudades alcanzables
+     */
+    static ArbolRutas arbolDesde(GrafoCompilado g, int origen) {
+        Espacios espacios = ESPACIOS.get();
+        EspacioBusqueda espacio = espacios.adelante;
+        espacio.preparar(g.ciudades.length);
+        buscar(g, espacio, origen, -1); // sin destino: recorre todo lo alcanzable
+        espacios.nodosAsentados = espacio.nodosAsentados;
+        return new ArbolRutas(g, origen, espacio);
+    }
+
+    private static Itinerario buscar(GrafoCompilado g, EspacioBusqueda espacio, int origen, int destino) {
+        espacio.etiquetar(origen, 0, 0, -1);
+        espacio.heap.insertarOReducir(origen, 0, 0);
+
+        while (!espacio.heap.estaVacio()) {
+            int actual = espacio.heap.extraerMinimo();
+            espacio.asentar(actual);
+
+            if (actual == destino) {
+                return reconstruir(g, origen, destino, espacio.aristaPrevia,
+                        espacio.tiempo[destino], espacio.precio[destino]);
+            }
+            relajar(g, espacio, actual);
+        }
+
+        return null; // No hay camino
+    }
+
+    /**
+     * Rutas mínimas desde un origen a varios destinos con una sola búsqueda, que
+     * corta al asentar todos los destinos. Cada itinerario es el mismo que daría
+     * la consulta individual; queda null si el destino no es alcanzable.
+     */
+    static Itinerario[] rutasDesde(GrafoCompilado g, int origen, int[] destinos) {
+        Espacios espacios = ESPACIOS.get();
+        EspacioBusqueda espacio = espacios.adelante;
+        espacio.preparar(g.ciudades.length);
+        int pendientes = espacios.marcarDestinos(destinos, g.ciudades.length);
+
+        espacio.etiquetar(origen, 0, 0, -1);
+        espacio.heap.insertarOReducir(origen, 0, 0);
+        while (pendientes > 0 && !espacio.heap.estaVacio()) {
+            int actual = espacio.heap.extraerMinimo();
+            espacio.asentar(actual);
+            if (espacios.alcanzarDestino(actual)) {
+                pendientes--;
+            }
+            relajar(g, espacio, actual);
+        }
+        espacios.nodosAsentados = espacio.nodosAsentados;
+
+        Itinerario[] itinerarios = new Itinerario[destinos.length];
+        for (int i = 0; i < destinos.length; i++) {
+            int destino = destinos[i];
+            if (espacio.estaAsentado(destino)) {
+                itinerarios[i] = reconstruir(g, origen, destino, espacio.aristaPrevia,
+                        espacio.tiempo[destino], espacio.precio[destino]);
+            }
+        }
+        return itinerarios;
+    }
+
+    /**
+     * Relaja las aristas salientes de una ciudad recién asentada
+     */
+    private static void relajar(GrafoCompilado g, EspacioBusqueda espacio, int actual) {
+        double tiempoActual = espacio.tiempo[actual];
+        double precioActual = espacio.precio[actual];
+        for (int a = g.inicio[actual]; a < g.inicio[actual + 1]; a++) {
+            int vecino = g.destino[a];
+            if (espacio.estaAsentado(vecino))
+                continue;
+
+            double nuevoTiempo = tiempoActual + g.tiempo[a];
+            double nuevoPrecio = precioActual + g.precioBase[a];
+
+            // Comparar: primero tiempo, luego precio
+            if (espacio.mejora(vecino, nuevoTiempo, nuevoPrecio)) {
+                espacio.etiquetar(vecino, nuevoTiempo, nuevoPrecio, a);
+                espacio.heap.insertarOReducir(vecino, nuevoTiempo, nuevoPrecio);
+            }
+        }
+    }
+
+    /**
+     * A*: el heap se ordena por (tiempo + cota al destino, precio), donde la cota
+     * es la distancia ortodrómica a la velocidad de crucero más alta de la red.
+     * La cota nunca supera el tiempo real y es consistente, así que el destino
+     * se asienta con la misma etiqueta (tiempo, precio) que en Dijkstra.
+     */
+    static Itinerario rutaMinimaAEstrella(GrafoCompilado g, int origen, int destino) {
+        Espacios espacios = ESPACIOS.get();
+        EspacioBusqueda espacio = espacios.adelante;
+        espacio.preparar(g.ciudades.length);
+        Itinerario itinerario = null;
+
+        espacio.etiquetar(origen, 0, 0, -1);
+        espacio.cota[origen] = g.cotaTiempo(origen, destino);
+        espacio.heap.insertarOReducir(origen, espacio.cota[origen], 0);
+
+        while (!espacio.heap.estaVacio()) {
+            int actual = espacio.heap.extraerMinimo();
+            espacio.asentar(actual);
+
+            if (actual == destino) {
+                itinerario = reconstruir(g, origen, destino, espacio.aristaPrevia,
+                        espacio.tiempo[destino], espacio.precio[destino]);
+                break;
+            }
+
+            double tiempoActual = espacio.tiempo[actual];
+            double precioActual = espacio.precio[actual];
+            for (int a = g.inicio[actual]; a < g.inicio[actual + 1]; a++) {
+                int vecino = g.destino[a];
+                if (espacio.estaAsentado(vecino))
+                    continue;
+
+                double nuevoTiempo = tiempoActual + g.tiempo[a];
+                double nuevoPrecio = precioActual + g.precioBase[a];
+
+                if (espacio.mejora(vecino, nuevoTiempo, nuevoPrecio)) {
+                    // La cota se calcula una sola vez, al alcanzar la ciudad
+                    double cota = espacio.fueAlcanzado(vecino) ? espacio.cota[vecino] : g.cotaTiempo(vecino, destino);
+                    espacio.etiquetar(vecino, nuevoTiempo, nuevoPrecio, a);
+                    espacio.cota[vecino] = cota;
+                    espacio.heap.insertarOReducir(vecino, nuevoTiempo + cota, nuevoPrecio);
+                }
+            }
+        }
+
+        espacios.nodosAsentados = espacio.nodosAsentados;
+        return itinerario;
+    }
+
+    /**
+     * Dijkstra bidireccional: una búsqueda avanza por las aristas salientes desde
+     * el origen y otra por las entrantes desde el destino. Cada arista examinada
+     * que une ambas búsquedas es un candidato; se corta cuando la suma de los
+     * mínimos de ambos heaps ya no puede mejorar al mejor candidato (tiempo, precio).
+     */
+    static Itinerario rutaMinimaBidireccional(GrafoCompilado g, int origen, int destino) {
+        if (origen == destino) {
+            return rutaMinima(g, origen, destino);
+        }
+
+        Espacios espacios = ESPACIOS.get();
+        EspacioBusqueda adelante = espacios.adelante;
+        EspacioBusqueda atras = espacios.atras;
+        adelante.preparar(g.ciudades.length);
+        atras.preparar(g.ciudades.length);
+
+        adelante.etiquetar(origen, 0, 0, -1);
+        adelante.heap.insertarOReducir(origen, 0, 0);
+        atras.etiquetar(destino, 0, 0, -1);
+        atras.heap.insertarOReducir(destino, 0, 0);
+
+        double mejorTiempo = Double.POSITIVE_INFINITY;
+        double mejorPrecio = Double.POSITIVE_INFINITY;
+        int puente = -1;
+
+        while (!adelante.heap.estaVacio() && !atras.heap.estaVacio()) {
+            double minTiempoAdelante = adelante.heap.primariaMinima();
+            double minPrecioAdelante = adelante.heap.secundariaMinima();
+            double minTiempoAtras = atras.heap.primariaMinima();
+            double minPrecioAtras = atras.heap.secundariaMinima();
+            if (!menor(minTiempoAdelante + minTiempoAtras, minPrecioAdelante + minPrecioAtras,
+                    mejorTiempo, mejorPrecio)) {
+                break;
+            }
+
+            // Avanzar el sentido con el mínimo más chico
+            if (!menor(minTiempoAtras, minPrecioAtras, minTiempoAdelante, minPrecioAdelante)) {
+                int actual = adelante.heap.extraerMinimo();
+                adelante.asentar(actual);
+                double tiempoActual = adelante.tiempo[actual];
+                double precioActual = adelante.precio[actual];
+
+                for (int a = g.inicio[actual]; a < g.inicio[actual + 1]; a++) {
+                    int vecino = g.destino[a];
+                    double nuevoTiempo = tiempoActual + g.tiempo[a];
+                    double nuevoPrecio = precioActual + g.precioBase[a];
+
+                    if (atras.fueAlcanzado(vecino)) {
+                        double tiempoTotal = nuevoTiempo + atras.tiempo[vecino];
+                        double precioTotal = nuevoPrecio + atras.precio[vecino];
+                        if (menor(tiempoTotal, precioTotal, mejorTiempo, mejorPrecio)) {
+                            mejorTiempo = tiempoTotal;
+                            mejorPrecio = precioTotal;
+                            puente = a;
+                        }
+                    }
+
+                    if (!adelante.estaAsentado(vecino) && adelante.mejora(vecino, nuevoTiempo, nuevoPrecio)) {
+                        adelante.etiquetar(vecino, nuevoTiempo, nuevoPrecio, a);
+                        adelante.heap.insertarOReducir(vecino, nuevoTiempo, nuevoPrecio);
+                    }
+                }
+            } else {
+                int actual = atras.heap.extraerMinimo();
+                atras.asentar(actual);
+                double tiempoActual = atras.tiempo[actual];
+                double precioActual = atras.precio[actual];
+
+                for (int k = g.inicioInverso[actual]; k < g.inicioInverso[actual + 1]; k++) {
+                    int a = g.aristaInversa[k];
+                    int vecino = g.origen[a];
+                    double nuevoTiempo = tiempoActual + g.tiempo[a];
+                    double nuevoPrecio = precioActual + g.precioBase[a];
+
+                    if (adelante.fueAlcanzado(vecino)) {
+                        double tiempoTotal = nuevoTiempo + adelante.tiempo[vecino];
+                        double precioTotal = nuevoPrecio + adelante.precio[vecino];
+                        if (menor(tiempoTotal, precioTotal, mejorTiempo, mejorPrecio)) {
+                            mejorTiempo = tiempoTotal;
+                            mejorPrecio = precioTotal;
+                            puente = a;
+                        }
+                    }
+
+                    if (!atras.estaAsentado(vecino) && atras.mejora(vecino, nuevoTiempo, nuevoPrecio)) {
+                        atras.etiquetar(vecino, nuevoTiempo, nuevoPrecio, a);
+                        atras.heap.insertarOReducir(vecino, nuevoTiempo, nuevoPrecio);
+                    }
+                }
+            }
+        }
+
+        espacios.nodosAsentados = adelante.nodosAsentados + atras.nodosAsentados;
+        if (puente < 0) {
+            return null; // No hay camino
+        }
+        return reconstruirBidireccional(g, origen, destino, puente, adelante.aristaPrevia, atras.aristaPrevia);
+    }
+
+    /**
+     * Cantidad de ciudades asentadas por la última búsqueda del hilo actual
+     * (en la bidireccional, la suma de ambos sentidos)
+     */
+    public static int getNodosAsentados() {
+        return ESPACIOS.get().nodosAsentados;
+    }
+
+    private static boolean menor(double tiempo1, double precio1, double tiempo2, double precio2) {
+        return tiempo1 < tiempo2 || (tiempo1 == tiempo2 && precio1 < precio2);
+    }
+
+    /**
+     * Reconstruye el itinerario siguiendo las aristas previas desde el destino
+     * Cuenta primero los tramos para llenar los arreglos de atrás hacia adelante
+     */
+    static Itinerario reconstruir(GrafoCompilado g, int origen, int destino, int[] aristaPrevia,
+                                  double tiempoTotal, double precioTotal) {
+        int tramos = 0;
+        for (int actual = destino; actual != origen; actual = g.origen[aristaPrevia[actual]]) {
+            tramos++;
+        }
+
+        Ciudad[] ciudades = new Ciudad[tramos + 1];
+        Arista[] aristas = new Arista[tramos];
+        int actual = destino;
+        ciudades[tramos] = g.ciudades[destino];
+        for (int i = tramos - 1; i >= 0; i--) {
+            int arista = aristaPrevia[actual];
+            aristas[i] = g.aristas[arista];
+            actual = g.origen[arista];
+            ciudades[i] = g.ciudades[actual];
+        }
+
+        List<Ciudad> listaCiudades = Arrays.asList(ciudades);
+        List<Arista> listaAristas = Arrays.asList(aristas);
+        return new Itinerario(listaCiudades, listaAristas, tiempoTotal, precioTotal);
+    }
+
+    /**
+     * Une la mitad de la búsqueda hacia adelante, la arista puente y la mitad
+     * de la búsqueda hacia atrás. Los totales se suman en el orden del recorrido
+     * para que coincidan con los de la búsqueda unidireccional.
+     */
+    private static Itinerario reconstruirBidireccional(GrafoCompilado g, int origen, int destino, int puente,
+                                                       int[] previaAdelante, int[] previaAtras) {
+        int tramosAdelante = 0;
+        for (int actual = g.origen[puente]; actual != origen; actual = g.origen[previaAdelante[actual]]) {
+            tramosAdelante++;
+        }
+        int tramos = tramosAdelante + 1;
+        for (int actual = g.destino[puente]; actual != destino; actual = g.destino[previaAtras[actual]]) {
+            tramos++;
+        }
+
+        int[] recorrido = new int[tramos];
+        int actual = g.origen[puente];
+        for (int i = tramosAdelante - 1; i >= 0; i--) {
+            recorrido[i] = previaAdelante[actual];
+            actual = g.origen[recorrido[i]];
+        }
+        recorrido[tramosAdelante] = puente;
+        actual = g.destino[puente];
+        for (int i = tramosAdelante + 1; i < tramos; i++) {
+            recorrido[i] = previaAtras[actual];
+            actual = g.destino[recorrido[i]];
+        }
+        return armarItinerario(g, origen, recorrido);
+    }
+
+    /**
+     * Arma el itinerario de una secuencia de aristas que parte del origen
+     * Los totales se suman en el orden del recorrido
+     */
+    static Itinerario armarItinerario(GrafoCompilado g, int origen, int[] recorrido) {
+        int tramos = recorrido.length;
+        Ciudad[] ciudades = new Ciudad[tramos + 1];
+        Arista[] aristas = new Arista[tramos];
+        double tiempoTotal = 0;
+        double precioTotal = 0;
+        ciudades[0] = g.ciudades[origen];
+        for (int i = 0; i < tramos; i++) {
+            int a = recorrido[i];
+            aristas[i] = g.aristas[a];
+            ciudades[i + 1] = g.ciudades[g.destino[a]];
+            tiempoTotal += g.tiempo[a];
+            precioTotal += g.precioBase[a];
+        }
+
+        return new Itinerario(Arrays.asList(ciudades), Arrays.asList(aristas), tiempoTotal, precioTotal);
+    }
+}
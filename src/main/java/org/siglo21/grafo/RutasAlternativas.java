@@ -0,0 +1,295 @@
+package org.siglo21.grafo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * K rutas mínimas sin ciclos entre dos ciudades (algoritmo de Yen)
+ * <p>
+ * Se calcula una sola vez el árbol de rutas mínimas hacia el destino (un
+ * Dijkstra por las aristas entrantes) y se reutiliza en todas las búsquedas
+ * de desvío: sus distancias son una cota exacta para un A* (quitar ciudades o
+ * aristas solo puede alargar los caminos), y en cuanto la búsqueda asienta una
+ * ciudad cuyo camino del árbol no toca nada bloqueado, ese camino completa el
+ * desvío sin seguir explorando. Además, cada ruta solo se desvía a partir del
+ * tramo donde ella misma se separó de su antecesora (mejora de Lawler).
+ */
+final class RutasAlternativas {
+
+    // [0]: árbol hacia el destino, [1]: búsquedas de desvío
+    private static final ThreadLocal<EspacioBusqueda[]> ESPACIOS = ThreadLocal.withInitial(
+            () -> new EspacioBusqueda[]{new EspacioBusqueda(), new EspacioBusqueda()});
+
+    private final GrafoCompilado g;
+    private final int destino;
+    private final EspacioBusqueda arbol;
+    private final EspacioBusqueda desvio;
+    // Ciudades y aristas bloqueadas en el desvío actual (marcadas con el sello vigente)
+    private final int[] ciudadBloqueada;
+    private final int[] aristaBloqueada;
+    private int sello;
+
+    private RutasAlternativas(GrafoCompilado g, int destino) {
+        EspacioBusqueda[] espacios = ESPACIOS.get();
+        this.g = g;
+        this.destino = destino;
+        this.arbol = espacios[0];
+        this.desvio = espacios[1];
+        this.ciudadBloqueada = new int[g.ciudades.length];
+        this.aristaBloqueada = new int[g.destino.length];
+    }
+
+    /**
+     * Hasta k rutas sin ciclos ordenadas por (tiempo, precio)
+     * Si se agota el presupuesto (en nanosegundos) retorna las encontradas hasta ese momento;
+     * la ruta mínima se incluye siempre que exista
+     */
+    static List<Itinerario> buscar(GrafoCompilado g, int origen, int destino, int k, long presupuestoNanos) {
+        long inicio = System.nanoTime();
+        List<Itinerario> resultado = new ArrayList<>();
+        if (k <= 0) {
+            return resultado;
+        }
+        if (origen == destino) {
+            resultado.add(MotorDijkstra.armarItinerario(g, origen, new int[0]));
+            return resultado;
+        }
+
+        RutasAlternativas busqueda = new RutasAlternativas(g, destino);
+        busqueda.calcularArbol();
+        if (!busqueda.arbol.fueAlcanzado(origen)) {
+            return resultado; // No hay camino
+        }
+
+        List<Camino> aceptados = new ArrayList<>();
+        PriorityQueue<Camino> candidatos = new PriorityQueue<>();
+        Set<Camino> vistos = new HashSet<>();
+        int[] rutaMinima = busqueda.completarPorArbol(origen, new int[busqueda.tramosArbol(origen)], 0);
+        Camino primero = new Camino(g, rutaMinima, 0);
+        aceptados.add(primero);
+        vistos.add(primero);
+
+        while (aceptados.size() < k) {
+            Camino anterior = aceptados.get(aceptados.size() - 1);
+            for (int i = anterior.desvio; i < anterior.aristas.length; i++) {
+                if (System.nanoTime() - inicio >= presupuestoNanos) {
+                    return armar(g, origen, aceptados);
+                }
+                int[] aristas = busqueda.desviar(anterior, i, aceptados);
+                if (aristas != null) {
+                    Camino candidato = new Camino(g, aristas, i);
+                    if (vistos.add(candidato)) {
+                        candidatos.add(candidato);
+                    }
+                }
+            }
+            if (candidatos.isEmpty()) {
+                break;
+            }
+            aceptados.add(candidatos.poll());
+        }
+        return armar(g, origen, aceptados);
+    }
+
+    private static List<Itinerario> armar(GrafoCompilado g, int origen, List<Camino> caminos) {
+        List<Itinerario> itinerarios = new ArrayList<>(caminos.size());
+        for (Camino camino : caminos) {
+            itinerarios.add(MotorDijkstra.armarItinerario(g, origen, camino.aristas));
+        }
+        return itinerarios;
+    }
+
+    /**
+     * Dijkstra completo por las aristas entrantes desde el destino
+     * Al terminar, aristaPrevia[x] es la arista por la que x sigue hacia el destino
+     */
+    private void calcularArbol() {
+        arbol.preparar(g.ciudades.length);
+        arbol.etiquetar(destino, 0, 0, -1);
+        arbol.heap.insertarOReducir(destino, 0, 0);
+
+        while (!arbol.heap.estaVacio()) {
+            int actual = arbol.heap.extraerMinimo();
+            arbol.asentar(actual);
+            for (int k = g.inicioInverso[actual]; k < g.inicioInverso[actual + 1]; k++) {
+                int a = g.aristaInversa[k];
+                int vecino = g.origen[a];
+                if (arbol.estaAsentado(vecino)) {
+                    continue;
+                }
+                double nuevoTiempo = arbol.tiempo[actual] + g.tiempo[a];
+                double nuevoPrecio = arbol.precio[actual] + g.precioBase[a];
+                if (arbol.mejora(vecino, nuevoTiempo, nuevoPrecio)) {
+                    arbol.etiquetar(vecino, nuevoTiempo, nuevoPrecio, a);
+                    arbol.heap.insertarOReducir(vecino, nuevoTiempo, nuevoPrecio);
+                }
+            }
+        }
+    }
+
+    /**
+     * Desvío de la ruta anterior en su i-ésima ciudad: la raíz (los primeros i tramos)
+     * se conserva y el resto es la ruta mínima que evita las ciudades de la raíz y
+     * las aristas con las que las rutas ya aceptadas salen de esa misma raíz.
+     * Retorna la ruta completa, o null si no hay desvío posible.
+     */
+    private int[] desviar(Camino anterior, int i, List<Camino> aceptados) {
+        sello++;
+        int[] raiz = anterior.aristas;
+        for (int j = 0; j < i; j++) {
+            ciudadBloqueada[g.origen[raiz[j]]] = sello;
+        }
+        for (Camino aceptado : aceptados) {
+            if (aceptado.aristas.length > i && mismaRaiz(aceptado.aristas, raiz, i)) {
+                aristaBloqueada[aceptado.aristas[i]] = sello;
+            }
+        }
+
+        int desde = g.origen[raiz[i]];
+        desvio.preparar(g.ciudades.length);
+        desvio.etiquetar(desde, 0, 0, -1);
+        desvio.heap.insertarOReducir(desde, arbol.tiempo[desde], arbol.precio[desde]);
+
+        while (!desvio.heap.estaVacio()) {
+            int actual = desvio.heap.extraerMinimo();
+            desvio.asentar(actual);
+            if (arbolLibre(actual, desde)) {
+                // El camino del árbol desde aquí es mínimo y no toca nada bloqueado
+                int tramosDesvio = tramosHasta(desde, actual);
+                return completarPorArbol(actual, unirConRaiz(raiz, i, actual, tramosDesvio), i + tramosDesvio);
+            }
+
+            for (int a = g.inicio[actual]; a < g.inicio[actual + 1]; a++) {
+                int vecino = g.destino[a];
+                if (aristaBloqueada[a] == sello || ciudadBloqueada[vecino] == sello || vecino == desde
+                        || !arbol.fueAlcanzado(vecino) || desvio.estaAsentado(vecino)) {
+                    continue;
+                }
+                double nuevoTiempo = desvio.tiempo[actual] + g.tiempo[a];
+                double nuevoPrecio = desvio.precio[actual] + g.precioBase[a];
+                if (desvio.mejora(vecino, nuevoTiempo, nuevoPrecio)) {
+                    desvio.etiquetar(vecino, nuevoTiempo, nuevoPrecio, a);
+                    desvio.heap.insertarOReducir(vecino, nuevoTiempo + arbol.tiempo[vecino],
+                            nuevoPrecio + arbol.precio[vecino]);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean mismaRaiz(int[] aristas, int[] raiz, int largo) {
+        for (int j = 0; j < largo; j++) {
+            if (aristas[j] != raiz[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifica que el camino del árbol desde x no use aristas ni ciudades bloqueadas
+     * y no vuelva a pasar por la ciudad donde empieza el desvío
+     */
+    private boolean arbolLibre(int x, int desde) {
+        for (int actual = x; actual != destino; ) {
+            int a = arbol.aristaPrevia[actual];
+            if (aristaBloqueada[a] == sello) {
+                return false;
+            }
+            actual = g.destino[a];
+            if (actual == desde || ciudadBloqueada[actual] == sello) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int tramosHasta(int desde, int x) {
+        int tramos = 0;
+        for (int actual = x; actual != desde; actual = g.origen[desvio.aristaPrevia[actual]]) {
+            tramos++;
+        }
+        return tramos;
+    }
+
+    /**
+     * Copia la raíz y los tramos de la búsqueda de desvío que llegan a x
+     * Deja lugar al final para el camino del árbol
+     */
+    private int[] unirConRaiz(int[] raiz, int i, int x, int tramosDesvio) {
+        int[] recorrido = Arrays.copyOf(raiz, i + tramosDesvio + tramosArbol(x));
+        int actual = x;
+        for (int j = i + tramosDesvio - 1; j >= i; j--) {
+            recorrido[j] = desvio.aristaPrevia[actual];
+            actual = g.origen[recorrido[j]];
+        }
+        return recorrido;
+    }
+
+    private int tramosArbol(int x) {
+        int tramos = 0;
+        for (int actual = x; actual != destino; actual = g.destino[arbol.aristaPrevia[actual]]) {
+            tramos++;
+        }
+        return tramos;
+    }
+
+    /**
+     * Completa el recorrido con el camino del árbol desde x, a partir de la posición indicada
+     */
+    private int[] completarPorArbol(int x, int[] recorrido, int posicion) {
+        for (int actual = x; actual != destino; actual = g.destino[recorrido[posicion++]]) {
+            recorrido[posicion] = arbol.aristaPrevia[actual];
+        }
+        return recorrido;
+    }
+
+    /**
+     * Ruta candidata: secuencia de aristas con sus totales y el tramo donde se desvió
+     */
+    private static final class Camino implements Comparable<Camino> {
+        final int[] aristas;
+        final int desvio;
+        final double tiempo;
+        final double precio;
+
+        Camino(GrafoCompilado g, int[] aristas, int desvio) {
+            this.aristas = aristas;
+            this.desvio = desvio;
+            double t = 0;
+            double p = 0;
+            for (int a : aristas) {
+                t += g.tiempo[a];
+                p += g.precioBase[a];
+            }
+            this.tiempo = t;
+            this.precio = p;
+        }
+
+        @Override
+        public int compareTo(Camino otro) {
+            int comparacion = Double.compare(tiempo, otro.tiempo);
+            if (comparacion == 0) {
+                comparacion = Double.compare(precio, otro.precio);
+            }
+            if (comparacion == 0) {
+                comparacion = Integer.compare(aristas.length, otro.aristas.length);
+            }
+            return comparacion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Camino && Arrays.equals(aristas, ((Camino) o).aristas);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(aristas);
+        }
+    }
+}
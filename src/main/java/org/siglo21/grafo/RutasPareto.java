@@ -0,0 +1,216 @@
+package org.siglo21.grafo;
+
+import org.siglo21.estructuras.HeapIndexado;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Frente de Pareto de itinerarios en (tiempo, precio) entre dos ciudades
+ * <p>
+ * Búsqueda multi-etiqueta: cada ciudad puede tener varias etiquetas (caminos
+ * parciales) y solo se descartan las dominadas, es decir, las que otra etiqueta
+ * iguala o mejora en tiempo y en precio. Las etiquetas se extraen en orden
+ * lexicográfico (tiempo, precio) guiadas por cotas exactas hacia el destino
+ * (un Dijkstra hacia atrás por criterio), así que las ya asentadas en una ciudad
+ * nunca tardan más que una nueva: para saber si la nueva está dominada basta
+ * comparar su precio con el menor precio asentado ahí.
+ * Con un máximo de tramos, la cantidad de tramos es un tercer criterio y ese
+ * menor precio se guarda por cantidad de tramos.
+ * <p>
+ * Las etiquetas viven en arreglos paralelos indexados por número de etiqueta.
+ */
+final class RutasPareto {
+
+    private static final int ARIDAD_HEAP = 4;
+    private static final int ETIQUETAS_INICIALES = 1024;
+
+    private final GrafoCompilado g;
+    private final int destino;
+    private final int maxTramos; // 0: sin límite
+    private final int capas;
+    // Cotas inferiores hacia el destino; infinitas si la ciudad no llega
+    private final double[] cotaTiempo;
+    private final double[] cotaPrecio;
+    // Menor precio asentado por ciudad (y por cantidad de tramos si hay límite)
+    private final double[] precioMinimo;
+
+    private int cantidadEtiquetas;
+    private int[] ciudadEtiqueta = new int[ETIQUETAS_INICIALES];
+    private int[] padreEtiqueta = new int[ETIQUETAS_INICIALES];
+    private int[] aristaEtiqueta = new int[ETIQUETAS_INICIALES];
+    private int[] tramosEtiqueta = new int[ETIQUETAS_INICIALES];
+    private double[] tiempoEtiqueta = new double[ETIQUETAS_INICIALES];
+    private double[] precioEtiqueta = new double[ETIQUETAS_INICIALES];
+    private final HeapIndexado heap = new HeapIndexado(ETIQUETAS_INICIALES, ARIDAD_HEAP);
+
+    private RutasPareto(GrafoCompilado g, int destino, int maxTramos) {
+        int n = g.ciudades.length;
+        this.g = g;
+        this.destino = destino;
+        this.maxTramos = maxTramos;
+        this.capas = maxTramos > 0 ? maxTramos + 1 : 1;
+        this.cotaTiempo = cotasHaciaDestino(g, destino, true);
+        this.cotaPrecio = cotasHaciaDestino(g, destino, false);
+        this.precioMinimo = new double[n * capas];
+        Arrays.fill(precioMinimo, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Itinerarios no dominados de origen a destino, de menor a mayor tiempo
+     * (y por lo tanto de mayor a menor precio). Con maxTramos > 0 solo se
+     * consideran itinerarios de a lo sumo esa cantidad de tramos; con 0 o
+     * menos no hay límite.
+     */
+    static List<Itinerario> buscar(GrafoCompilado g, int origen, int destino, int maxTramos) {
+        List<Itinerario> frente = new ArrayList<>();
+        if (origen == destino) {
+            frente.add(MotorDijkstra.armarItinerario(g, origen, new int[0]));
+            return frente;
+        }
+        RutasPareto busqueda = new RutasPareto(g, destino, Math.max(0, maxTramos));
+        if (busqueda.cotaTiempo[origen] == Double.POSITIVE_INFINITY) {
+            return frente; // No hay camino
+        }
+        for (int etiqueta : busqueda.explorar(origen)) {
+            frente.add(MotorDijkstra.armarItinerario(g, origen, busqueda.recorrido(etiqueta)));
+        }
+        return frente;
+    }
+
+    /**
+     * Asienta etiquetas hasta agotar el heap y retorna las que llegaron al destino
+     */
+    private List<Integer> explorar(int origen) {
+        List<Integer> enDestino = new ArrayList<>();
+        int inicial = nuevaEtiqueta(origen, -1, -1, 0, 0, 0);
+        heap.insertarOReducir(inicial, cotaTiempo[origen], cotaPrecio[origen]);
+
+        while (!heap.estaVacio()) {
+            int etiqueta = heap.extraerMinimo();
+            int ciudad = ciudadEtiqueta[etiqueta];
+            int tramos = tramosEtiqueta[etiqueta];
+            double tiempo = tiempoEtiqueta[etiqueta];
+            double precio = precioEtiqueta[etiqueta];
+            // Pudo quedar dominada después de entrar al heap
+            if (dominada(ciudad, tramos, precio)) {
+                continue;
+            }
+            asentar(ciudad, tramos, precio);
+            if (ciudad == destino) {
+                enDestino.add(etiqueta);
+                continue;
+            }
+            if (maxTramos > 0 && tramos == maxTramos) {
+                continue;
+            }
+
+            for (int a = g.inicio[ciudad]; a < g.inicio[ciudad + 1]; a++) {
+                int vecino = g.destino[a];
+                if (cotaTiempo[vecino] == Double.POSITIVE_INFINITY) {
+                    continue; // Desde ahí no se llega al destino
+                }
+                double nuevoTiempo = tiempo + g.tiempo[a];
+                double nuevoPrecio = precio + g.precioBase[a];
+                if (dominada(vecino, tramos + 1, nuevoPrecio)) {
+                    continue;
+                }
+                int nueva = nuevaEtiqueta(vecino, etiqueta, a, tramos + 1, nuevoTiempo, nuevoPrecio);
+                heap.insertarOReducir(nueva, nuevoTiempo + cotaTiempo[vecino], nuevoPrecio + cotaPrecio[vecino]);
+            }
+        }
+        return enDestino;
+    }
+
+    /**
+     * Una etiqueta está dominada si una ya asentada en su ciudad (con no más tramos)
+     * cuesta lo mismo o menos, o si ni con la cota de precio mejora al destino
+     */
+    private boolean dominada(int ciudad, int tramos, double precio) {
+        int capa = maxTramos > 0 ? tramos : 0;
+        if (precio >= precioMinimo[ciudad * capas + capa]) {
+            return true;
+        }
+        return precio + cotaPrecio[ciudad] >= precioMinimo[destino * capas + capas - 1];
+    }
+
+    /**
+     * Registra el precio de una etiqueta asentada en su capa y en las de más tramos
+     */
+    private void asentar(int ciudad, int tramos, double precio) {
+        int capa = maxTramos > 0 ? tramos : 0;
+        for (int c = ciudad * capas + capa; c < (ciudad + 1) * capas; c++) {
+            if (precio < precioMinimo[c]) {
+                precioMinimo[c] = precio;
+            }
+        }
+    }
+
+    private int nuevaEtiqueta(int ciudad, int padre, int arista, int tramos, double tiempo, double precio) {
+        if (cantidadEtiquetas == ciudadEtiqueta.length) {
+            int capacidad = cantidadEtiquetas * 2;
+            ciudadEtiqueta = Arrays.copyOf(ciudadEtiqueta, capacidad);
+            padreEtiqueta = Arrays.copyOf(padreEtiqueta, capacidad);
+            aristaEtiqueta = Arrays.copyOf(aristaEtiqueta, capacidad);
+            tramosEtiqueta = Arrays.copyOf(tramosEtiqueta, capacidad);
+            tiempoEtiqueta = Arrays.copyOf(tiempoEtiqueta, capacidad);
+            precioEtiqueta = Arrays.copyOf(precioEtiqueta, capacidad);
+            heap.asegurarCapacidad(capacidad);
+        }
+        int etiqueta = cantidadEtiquetas++;
+        ciudadEtiqueta[etiqueta] = ciudad;
+        padreEtiqueta[etiqueta] = padre;
+        aristaEtiqueta[etiqueta] = arista;
+        tramosEtiqueta[etiqueta] = tramos;
+        tiempoEtiqueta[etiqueta] = tiempo;
+        precioEtiqueta[etiqueta] = precio;
+        return etiqueta;
+    }
+
+    /**
+     * Aristas del camino de una etiqueta, desde el origen
+     */
+    private int[] recorrido(int etiqueta) {
+        int[] aristas = new int[tramosEtiqueta[etiqueta]];
+        for (int e = etiqueta; padreEtiqueta[e] >= 0; e = padreEtiqueta[e]) {
+            aristas[tramosEtiqueta[e] - 1] = aristaEtiqueta[e];
+        }
+        return aristas;
+    }
+
+    /**
+     * Dijkstra hacia atrás desde el destino por un solo criterio (el otro desempata)
+     * Retorna la distancia de cada ciudad al destino, infinita si no llega
+     */
+    private static double[] cotasHaciaDestino(GrafoCompilado g, int destino, boolean porTiempo) {
+        int n = g.ciudades.length;
+        double[] cota = new double[n];
+        double[] desempate = new double[n];
+        Arrays.fill(cota, Double.POSITIVE_INFINITY);
+        boolean[] asentada = new boolean[n];
+        HeapIndexado pendientes = new HeapIndexado(n, ARIDAD_HEAP);
+
+        cota[destino] = 0;
+        pendientes.insertarOReducir(destino, 0, 0);
+        while (!pendientes.estaVacio()) {
+            int actual = pendientes.extraerMinimo();
+            asentada[actual] = true;
+            for (int k = g.inicioInverso[actual]; k < g.inicioInverso[actual + 1]; k++) {
+                int a = g.aristaInversa[k];
+                int vecino = g.origen[a];
+                if (asentada[vecino]) {
+                    continue;
+                }
+                double principal = cota[actual] + (porTiempo ? g.tiempo[a] : g.precioBase[a]);
+                double secundario = desempate[actual] + (porTiempo ? g.precioBase[a] : g.tiempo[a]);
+                if (principal < cota[vecino] || (principal == cota[vecino] && secundario < desempate[vecino])) {
+                    cota[vecino] = principal;
+                    desempate[vecino] = secundario;
+                    pendientes.insertarOReducir(vecino, principal, secundario);
+                }
+            }
+        }
+        return cota;
+    }
+}
@@ -0,0 +1,135 @@
+package org.siglo21.grafo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resuelve muchas consultas (origen, destino) en paralelo sobre una vista compilada
+ * <p>
+ * Las consultas se agrupan por origen (orden por conteo de los ids) y cada
+ * grupo se resuelve con una sola búsqueda que corta al asentar todos sus
+ * destinos. Los grupos se reparten en un pool de fork-join; cada hilo usa sus
+ * propios arreglos de trabajo y la vista compilada es inmutable, así que no
+ * hay estado compartido entre tareas más que el arreglo de resultados, donde
+ * cada posición se escribe una sola vez.
+ */
+final class RuteoEnLote {
+
+    // Cantidad de grupos por debajo de la cual una tarea ya no se divide
+    private static final int GRUPOS_POR_TAREA = 4;
+
+    private final GrafoCompilado g;
+    private final int[] destinos;    // id del destino de cada consulta
+    private final int[] porOrigen;   // posiciones de las consultas ordenadas por origen
+    private final int[] inicioGrupo; // el grupo k ocupa porOrigen[inicioGrupo[k] .. inicioGrupo[k + 1])
+    private final int[] origenGrupo;
+    private final Itinerario[] resultado;
+
+    private RuteoEnLote(GrafoCompilado g, List<ConsultaRuta> consultas) {
+        int cantidad = consultas.size();
+        int n = g.ciudades.length;
+        this.g = g;
+        this.destinos = new int[cantidad];
+        this.resultado = new Itinerario[cantidad];
+
+        // Las consultas con ciudades fuera del grafo quedan sin resolver (null)
+        int[] origenes = new int[cantidad];
+        int[] porCiudad = new int[n + 1];
+        int validas = 0;
+        for (int i = 0; i < cantidad; i++) {
+            ConsultaRuta consulta = consultas.get(i);
+            origenes[i] = g.getId(consulta.getOrigen());
+            destinos[i] = g.getId(consulta.getDestino());
+            if (origenes[i] >= 0 && destinos[i] >= 0) {
+                porCiudad[origenes[i] + 1]++;
+                validas++;
+            } else {
+                origenes[i] = -1;
+            }
+        }
+
+        // Orden por conteo: posiciones agrupadas por origen, respetando el orden de entrada
+        int grupos = 0;
+        for (int c = 0; c < n; c++) {
+            if (porCiudad[c + 1] > 0) {
+                grupos++;
+            }
+            porCiudad[c + 1] += porCiudad[c];
+        }
+        this.porOrigen = new int[validas];
+        int[] siguiente = Arrays.copyOf(porCiudad, n);
+        for (int i = 0; i < cantidad; i++) {
+            if (origenes[i] >= 0) {
+                porOrigen[siguiente[origenes[i]]++] = i;
+            }
+        }
+        this.inicioGrupo = new int[grupos + 1];
+        this.origenGrupo = new int[grupos];
+        int k = 0;
+        for (int c = 0; c < n; c++) {
+            if (porCiudad[c + 1] > porCiudad[c]) {
+                origenGrupo[k] = c;
+                inicioGrupo[k++] = porCiudad[c];
+            }
+        }
+        inicioGrupo[grupos] = validas;
+    }
+
+    /**
+     * Resuelve las consultas en el pool indicado y retorna los itinerarios en el
+     * orden de entrada (null donde no hay camino o la ciudad no está en el grafo)
+     */
+    static Itinerario[] resolver(GrafoCompilado g, List<ConsultaRuta> consultas, ForkJoinPool pool) {
+        RuteoEnLote lote = new RuteoEnLote(g, consultas);
+        int grupos = lote.inicioGrupo.length - 1;
+        if (grupos > 0) {
+            pool.invoke(lote.new Tarea(0, grupos));
+        }
+        return lote.resultado;
+    }
+
+    /**
+     * Una búsqueda desde el origen del grupo hacia todos sus destinos
+     */
+    private void resolverGrupo(int k) {
+        int desde = inicioGrupo[k];
+        int hasta = inicioGrupo[k + 1];
+        int[] destinosGrupo = new int[hasta - desde];
+        for (int j = desde; j < hasta; j++) {
+            destinosGrupo[j - desde] = destinos[porOrigen[j]];
+        }
+        Itinerario[] itinerarios = MotorDijkstra.rutasDesde(g, origenGrupo[k], destinosGrupo);
+        for (int j = desde; j < hasta; j++) {
+            resultado[porOrigen[j]] = itinerarios[j - desde];
+        }
+    }
+
+    /**
+     * Divide el rango de grupos a la mitad hasta que queda chico y lo resuelve
+     */
+    private final class Tarea extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int desde;
+        private final int hasta;
+
+        Tarea(int desde, int hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde <= GRUPOS_POR_TAREA) {
+                for (int k = desde; k < hasta; k++) {
+                    resolverGrupo(k);
+                }
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new Tarea(desde, medio), new Tarea(medio, hasta));
+        }
+    }
+}
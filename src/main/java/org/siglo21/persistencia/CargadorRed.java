@@ -0,0 +1,253 @@
+package org.siglo21.persistencia;
+
+import org.siglo21.grafo.Ciudad;
+import org.siglo21.grafo.Grafo;
+import org.siglo21.grafo.LoteAristas;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Carga masiva de la red de vuelos desde dos archivos CSV
+ * <p>
+ * Ciudades: {@code nombre,codigo,latitud,longitud} (código y coordenadas pueden
+ * quedar vacíos).
+ * <p>
+ * Rutas: {@code origen,destino,tiempo,precioBase[,esDirecto[,bidireccional]]},
+ * donde origen y destino son el nombre o el código de una ciudad tal como
+ * figuran en el archivo de ciudades; esDirecto vale true y bidireccional
+ * false si faltan. Se saltea una primera línea de encabezado cuyo primer campo
+ * sea "nombre" u "origen".
+ * <p>
+ * Las rutas se acumulan en un LoteAristas dimensionado según la cantidad de
+ * líneas del archivo y se agregan al grafo de una sola vez, que reserva el
+ * tamaño justo de cada lista de adyacencia. Las ciudades de cada ruta se
+ * resuelven con una tabla hash propia sobre los bytes del archivo, sin crear
+ * un String por campo.
+ */
+public final class CargadorRed {
+
+    private static final int MAX_ERRORES = 20;
+    private static final byte[] ENCABEZADO_CIUDADES = {'n', 'o', 'm', 'b', 'r', 'e'};
+    private static final byte[] ENCABEZADO_RUTAS = {'o', 'r', 'i', 'g', 'e', 'n'};
+
+    private final List<String> errores = new ArrayList<>();
+    private long lineasDescartadas;
+
+    // Tabla hash abierta: bytes de nombre o código -> id de ciudad
+    private final List<Ciudad> ciudades = new ArrayList<>();
+    private byte[][] claves = new byte[16][];
+    private int[] ciudadDeClave = new int[16];
+    private int cantidadClaves;
+    private int[] ranuras = nuevasRanuras(32);
+
+    private CargadorRed() {
+    }
+
+    /**
+     * Carga ciudades y rutas en un grafo nuevo
+     *
+     * @throws IOException si no se puede leer alguno de los archivos
+     */
+    public static ResultadoCarga cargar(Path archivoCiudades, Path archivoRutas) throws IOException {
+        return new CargadorRed().cargarRed(archivoCiudades, archivoRutas);
+    }
+
+    private ResultadoCarga cargarRed(Path archivoCiudades, Path archivoRutas) throws IOException {
+        long inicio = System.nanoTime();
+        long bytes;
+        Grafo grafo;
+        long aristas;
+        try (LectorCsv lectorCiudades = new LectorCsv(archivoCiudades);
+             LectorCsv lectorRutas = new LectorCsv(archivoRutas)) {
+            bytes = lectorCiudades.getTamaño() + lectorRutas.getTamaño();
+            grafo = new Grafo((int) Math.min(Integer.MAX_VALUE - 8, lectorCiudades.contarLineas()));
+            leerCiudades(lectorCiudades, grafo, archivoCiudades.getFileName().toString());
+            LoteAristas lote = new LoteAristas(ciudades,
+                    (int) Math.min(Integer.MAX_VALUE - 8, lectorRutas.contarLineas()));
+            leerRutas(lectorRutas, lote, archivoRutas.getFileName().toString());
+            grafo.agregarAristas(lote);
+            aristas = lote.getCantidad();
+        }
+        return new ResultadoCarga(grafo, ciudades.size(), aristas, lineasDescartadas, errores, bytes,
+                System.nanoTime() - inicio);
+    }
+
+    private void leerCiudades(LectorCsv lector, Grafo grafo, String archivo) throws IOException {
+        boolean primera = true;
+        while (lector.siguienteLinea()) {
+            lector.siguienteCampo();
+            if (primera) {
+                primera = false;
+                if (lector.campoIgual(ENCABEZADO_CIUDADES)) {
+                    continue;
+                }
+            }
+            if (lector.campoVacio()) {
+                descartar(archivo, lector, "nombre vacío");
+                continue;
+            }
+            if (buscarCiudad(lector) >= 0) {
+                descartar(archivo, lector, "ciudad repetida: " + lector.campoTexto());
+                continue;
+            }
+            byte[] nombre = lector.campoBytes();
+            byte[] codigo = null;
+            double latitud = Double.NaN;
+            double longitud = Double.NaN;
+            try {
+                if (lector.siguienteCampo() && !lector.campoVacio()) {
+                    if (buscarCiudad(lector) >= 0) {
+                        descartar(archivo, lector, "código repetido: " + lector.campoTexto());
+                        continue;
+                    }
+                    codigo = lector.campoBytes();
+                }
+                if (lector.siguienteCampo() && !lector.campoVacio()) {
+                    latitud = lector.campoDouble();
+                    if (!lector.siguienteCampo()) {
+                        throw new IllegalArgumentException("falta la longitud");
+                    }
+                    longitud = lector.campoDouble();
+                }
+            } catch (IllegalArgumentException e) {
+                descartar(archivo, lector, e.getMessage());
+                continue;
+            }
+
+            Ciudad ciudad = new Ciudad(new String(nombre, StandardCharsets.UTF_8),
+                    codigo == null ? null : new String(codigo, StandardCharsets.UTF_8),
+                    latitud, longitud);
+            int id = ciudades.size();
+            ciudades.add(ciudad);
+            grafo.agregarCiudad(ciudad);
+            registrarClave(nombre, id);
+            if (codigo != null) {
+                registrarClave(codigo, id);
+            }
+        }
+    }
+
+    private void leerRutas(LectorCsv lector, LoteAristas lote, String archivo) throws IOException {
+        boolean primera = true;
+        while (lector.siguienteLinea()) {
+            lector.siguienteCampo();
+            if (primera) {
+                primera = false;
+                if (lector.campoIgual(ENCABEZADO_RUTAS)) {
+                    continue;
+                }
+            }
+            int origen = buscarCiudad(lector);
+            if (origen < 0) {
+                descartar(archivo, lector, "ciudad desconocida: " + lector.campoTexto());
+                continue;
+            }
+            if (!lector.siguienteCampo()) {
+                descartar(archivo, lector, "faltan campos");
+                continue;
+            }
+            int destino = buscarCiudad(lector);
+            if (destino < 0) {
+                descartar(archivo, lector, "ciudad desconocida: " + lector.campoTexto());
+                continue;
+            }
+
+            double tiempo;
+            double precioBase;
+            boolean esDirecto = true;
+            boolean bidireccional = false;
+            try {
+                if (!lector.siguienteCampo()) {
+                    throw new IllegalArgumentException("faltan campos");
+                }
+                tiempo = lector.campoDouble();
+                if (!lector.siguienteCampo()) {
+                    throw new IllegalArgumentException("faltan campos");
+                }
+                precioBase = lector.campoDouble();
+                if (lector.siguienteCampo() && !lector.campoVacio()) {
+                    esDirecto = lector.campoBooleano();
+                }
+                if (lector.siguienteCampo() && !lector.campoVacio()) {
+                    bidireccional = lector.campoBooleano();
+                }
+            } catch (IllegalArgumentException e) {
+                descartar(archivo, lector, e.getMessage());
+                continue;
+            }
+            if (!(tiempo >= 0) || !(precioBase >= 0)) {
+                descartar(archivo, lector, "tiempo y precio deben ser no negativos");
+                continue;
+            }
+
+            lote.agregar(origen, destino, tiempo, precioBase, esDirecto);
+            if (bidireccional) {
+                lote.agregar(destino, origen, tiempo, precioBase, esDirecto);
+            }
+        }
+    }
+
+    private void descartar(String archivo, LectorCsv lector, String motivo) {
+        lineasDescartadas++;
+        if (errores.size() < MAX_ERRORES) {
+            errores.add(archivo + ":" + lector.getNumeroLinea() + ": " + motivo);
+        }
+    }
+
+    private static int[] nuevasRanuras(int tamaño) {
+        int[] ranuras = new int[tamaño];
+        Arrays.fill(ranuras, -1);
+        return ranuras;
+    }
+
+    /**
+     * Id de la ciudad cuyo nombre o código es el campo actual, o -1
+     */
+    private int buscarCiudad(LectorCsv lector) {
+        int mascara = ranuras.length - 1;
+        for (int r = mezclar(lector.hashCampo()) & mascara; ranuras[r] >= 0; r = (r + 1) & mascara) {
+            if (lector.campoIgual(claves[ranuras[r]])) {
+                return ciudadDeClave[ranuras[r]];
+            }
+        }
+        return -1;
+    }
+
+    private void registrarClave(byte[] clave, int ciudad) {
+        if (cantidadClaves == claves.length) {
+            claves = Arrays.copyOf(claves, cantidadClaves * 2);
+            ciudadDeClave = Arrays.copyOf(ciudadDeClave, cantidadClaves * 2);
+        }
+        claves[cantidadClaves] = clave;
+        ciudadDeClave[cantidadClaves] = ciudad;
+        cantidadClaves++;
+        if (cantidadClaves * 2 > ranuras.length) {
+            // Factor de carga <= 0.5: reubicar todas las claves
+            ranuras = nuevasRanuras(ranuras.length * 2);
+            for (int k = 0; k < cantidadClaves; k++) {
+                ubicar(k);
+            }
+        } else {
+            ubicar(cantidadClaves - 1);
+        }
+    }
+
+    private void ubicar(int k) {
+        int mascara = ranuras.length - 1;
+        int r = mezclar(LectorCsv.hash(claves[k])) & mascara;
+        while (ranuras[r] >= 0) {
+            r = (r + 1) & mascara;
+        }
+        ranuras[r] = k;
+    }
+
+    private static int mezclar(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,57 @@
+package org.siglo21.persistencia;
+
+import org.siglo21.grafo.Grafo;
+import org.siglo21.vuelo.Vuelo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Estado leído de un snapshot: la red, los vuelos con sus asientos y reservas,
+ * y los contadores necesarios para seguir operando sin repetir códigos
+ */
+public final class EstadoSnapshot {
+
+    private final Grafo grafo;
+    private final List<Vuelo> vuelos;
+    private final int proximaReserva;
+    private final long secuencia;
+    private final long cantidadReservas;
+
+    EstadoSnapshot(Grafo grafo, List<Vuelo> vuelos, int proximaReserva, long secuencia, long cantidadReservas) {
+        this.grafo = grafo;
+        this.vuelos = Collections.unmodifiableList(vuelos);
+        this.proximaReserva = proximaReserva;
+        this.secuencia = secuencia;
+        this.cantidadReservas = cantidadReservas;
+    }
+
+    public Grafo getGrafo() {
+        return grafo;
+    }
+
+    /**
+     * Vuelos en orden de código
+     */
+    public List<Vuelo> getVuelos() {
+        return vuelos;
+    }
+
+    /**
+     * Número que debe usar la próxima reserva
+     */
+    public int getProximaReserva() {
+        return proximaReserva;
+    }
+
+    /**
+     * Número de secuencia del último cambio incluido en el snapshot
+     */
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public long getCantidadReservas() {
+        return cantidadReservas;
+    }
+}
@@ -0,0 +1,125 @@
+package org.siglo21.persistencia;
+
+import org.siglo21.avion.ConfiguracionCabina;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cambio leído del registro de cambios
+ * Según el tipo solo tienen valor algunos campos (el resto queda en null o 0)
+ */
+public final class EventoRegistro {
+
+    public enum Tipo {
+        /** Alta de vuelo: código, origen, destino, precio, tiempo, esDirecto, salida y cabina */
+        VUELO_CREADO,
+        /** Reserva con su asiento asignado: código de reserva, código de vuelo, asiento, precio final e itinerario */
+        RESERVA_CREADA,
+        /** Cancelación: código de reserva */
+        CANCELACION
+    }
+
+    private final long secuencia;
+    private final Tipo tipo;
+    private final String codigoVuelo;
+    private final String codigoReserva;
+    private final String codigoItinerario;
+    private final String origen;
+    private final String destino;
+    private final String asiento;
+    private final double precio;
+    private final double tiempo;
+    private final boolean esDirecto;
+    private final LocalDateTime salida;
+    private final ConfiguracionCabina cabina;
+
+    EventoRegistro(long secuencia, Tipo tipo, String codigoVuelo, String codigoReserva, String codigoItinerario,
+                   String origen, String destino, String asiento, double precio, double tiempo,
+                   boolean esDirecto, LocalDateTime salida, ConfiguracionCabina cabina) {
+        this.secuencia = secuencia;
+        this.tipo = tipo;
+        this.codigoVuelo = codigoVuelo;
+        this.codigoReserva = codigoReserva;
+        this.codigoItinerario = codigoItinerario;
+        this.origen = origen;
+        this.destino = destino;
+        this.asiento = asiento;
+        this.precio = precio;
+        this.tiempo = tiempo;
+        this.esDirecto = esDirecto;
+        this.salida = salida;
+        this.cabina = cabina;
+    }
+
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public String getCodigoVuelo() {
+        return codigoVuelo;
+    }
+
+    public String getCodigoReserva() {
+        return codigoReserva;
+    }
+
+    /**
+     * Código de la primera reserva del itinerario al que pertenece la reserva
+     */
+    public String getCodigoItinerario() {
+        return codigoItinerario;
+    }
+
+    /**
+     * Nombre de la ciudad de origen del vuelo
+     */
+    public String getOrigen() {
+        return origen;
+    }
+
+    /**
+     * Nombre de la ciudad de destino del vuelo
+     */
+    public String getDestino() {
+        return destino;
+    }
+
+    public String getAsiento() {
+        return asiento;
+    }
+
+    /**
+     * Precio base del vuelo o precio final de la reserva
+     */
+    public double getPrecio() {
+        return precio;
+    }
+
+    public double getTiempo() {
+        return tiempo;
+    }
+
+    public boolean esDirecto() {
+        return esDirecto;
+    }
+
+    public LocalDateTime getSalida() {
+        return salida;
+    }
+
+    /**
+     * Distribución de asientos del avión del vuelo
+     */
+    public ConfiguracionCabina getCabina() {
+        return cabina;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + secuencia + " " + tipo + " " + (codigoReserva != null ? codigoReserva : codigoVuelo);
+    }
+}
@@ -0,0 +1,298 @@
+package org.siglo21.persistencia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lector de CSV sobre un archivo mapeado en memoria
+ * <p>
+ * Recorre el archivo línea por línea y campo por campo sin crear un String
+ * por campo: los números y booleanos se interpretan directamente desde los
+ * bytes y los campos de texto solo se copian cuando se piden. El archivo se
+ * mapea por ventanas, así que puede superar los 2 GB; una línea nunca queda
+ * partida entre dos ventanas. Las líneas vacías y las que empiezan con '#'
+ * se saltean. Los campos se separan por comas, sin comillas escapadas (solo
+ * se quitan las comillas y los espacios de los extremos).
+ */
+final class LectorCsv implements Closeable {
+
+    private static final int VENTANA = 1 << 28; // 256 MB por mapeo
+
+    // Potencias de 10 exactas en double
+    private static final double[] POTENCIAS = new double[23];
+
+    static {
+        POTENCIAS[0] = 1;
+        for (int i = 1; i < POTENCIAS.length; i++) {
+            POTENCIAS[i] = POTENCIAS[i - 1] * 10;
+        }
+    }
+
+    private final FileChannel canal;
+    private final long tamaño;
+    private MappedByteBuffer buffer;
+    private long base;       // posición de la ventana en el archivo
+    private int posicion;    // próximo byte sin leer de la ventana
+    private int finLinea;
+    private int cursor;      // inicio del próximo campo de la línea
+    private int campoInicio;
+    private int campoFin;
+    private long numeroLinea;
+
+    LectorCsv(Path archivo) throws IOException {
+        this.canal = FileChannel.open(archivo, StandardOpenOption.READ);
+        this.tamaño = canal.size();
+        mapear(0);
+    }
+
+    private void mapear(long desde) throws IOException {
+        base = desde;
+        buffer = canal.map(FileChannel.MapMode.READ_ONLY, desde, Math.min(VENTANA, tamaño - desde));
+        posicion = 0;
+    }
+
+    long getTamaño() {
+        return tamaño;
+    }
+
+    long getNumeroLinea() {
+        return numeroLinea;
+    }
+
+    /**
+     * Cantidad de saltos de línea del archivo (cota de la cantidad de registros)
+     */
+    long contarLineas() throws IOException {
+        long lineas = 0;
+        long desde = 0;
+        while (desde < tamaño) {
+            MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, desde,
+                    Math.min(VENTANA, tamaño - desde));
+            for (int i = 0, fin = ventana.limit(); i < fin; i++) {
+                if (ventana.get(i) == '\n') {
+                    lineas++;
+                }
+            }
+            desde += ventana.limit();
+        }
+        return tamaño > 0 ? lineas + 1 : 0;
+    }
+
+    /**
+     * Avanza a la próxima línea con datos; retorna false al terminar el archivo
+     */
+    boolean siguienteLinea() throws IOException {
+        while (true) {
+            int limite = buffer.limit();
+            if (posicion >= limite) {
+                if (base + limite >= tamaño) {
+                    return false;
+                }
+                mapear(base + posicion);
+                continue;
+            }
+
+            int fin = posicion;
+            while (fin < limite && buffer.get(fin) != '\n') {
+                fin++;
+            }
+            if (fin == limite && base + limite < tamaño) {
+                // La línea sigue en la próxima ventana: remapear desde su inicio
+                if (posicion == 0) {
+                    throw new IOException("Línea " + (numeroLinea + 1) + " demasiado larga");
+                }
+                mapear(base + posicion);
+                continue;
+            }
+
+            int inicio = posicion;
+            posicion = fin + 1;
+            numeroLinea++;
+            while (inicio < fin && esEspacio(buffer.get(inicio))) {
+                inicio++;
+            }
+            while (fin > inicio && esEspacio(buffer.get(fin - 1))) {
+                fin--;
+            }
+            if (inicio == fin || buffer.get(inicio) == '#') {
+                continue;
+            }
+            finLinea = fin;
+            cursor = inicio;
+            return true;
+        }
+    }
+
+    private static boolean esEspacio(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Avanza al próximo campo de la línea; retorna false si no quedan campos
+     */
+    boolean siguienteCampo() {
+        if (cursor > finLinea) {
+            return false;
+        }
+        int fin = cursor;
+        while (fin < finLinea && buffer.get(fin) != ',') {
+            fin++;
+        }
+        int inicio = cursor;
+        cursor = fin + 1;
+        while (inicio < fin && esEspacio(buffer.get(inicio))) {
+            inicio++;
+        }
+        while (fin > inicio && esEspacio(buffer.get(fin - 1))) {
+            fin--;
+        }
+        if (fin - inicio >= 2 && buffer.get(inicio) == '"' && buffer.get(fin - 1) == '"') {
+            inicio++;
+            fin--;
+        }
+        campoInicio = inicio;
+        campoFin = fin;
+        return true;
+    }
+
+    boolean campoVacio() {
+        return campoInicio == campoFin;
+    }
+
+    /**
+     * Copia el campo actual a un String (UTF-8)
+     */
+    String campoTexto() {
+        byte[] bytes = new byte[campoFin - campoInicio];
+        buffer.get(campoInicio, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copia los bytes del campo actual
+     */
+    byte[] campoBytes() {
+        byte[] bytes = new byte[campoFin - campoInicio];
+        buffer.get(campoInicio, bytes);
+        return bytes;
+    }
+
+    /**
+     * Hash de los bytes del campo actual (el mismo que hash(byte[]))
+     */
+    int hashCampo() {
+        int h = 1;
+        for (int i = campoInicio; i < campoFin; i++) {
+            h = 31 * h + buffer.get(i);
+        }
+        return h;
+    }
+
+    static int hash(byte[] bytes) {
+        int h = 1;
+        for (byte b : bytes) {
+            h = 31 * h + b;
+        }
+        return h;
+    }
+
+    /**
+     * Compara el campo actual con los bytes indicados
+     */
+    boolean campoIgual(byte[] bytes) {
+        if (bytes.length != campoFin - campoInicio) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(campoInicio + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Interpreta el campo actual como número decimal
+     * Los casos comunes (hasta 15 dígitos, sin exponente) se resuelven sin crear
+     * objetos y con redondeo exacto; el resto pasa por Double.parseDouble.
+     */
+    double campoDouble() {
+        int i = campoInicio;
+        if (i == campoFin) {
+            throw new NumberFormatException("Campo numérico vacío");
+        }
+        boolean negativo = buffer.get(i) == '-';
+        if (negativo || buffer.get(i) == '+') {
+            i++;
+        }
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = 0;
+        boolean punto = false;
+        for (; i < campoFin; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (digitos == 15) {
+                    return campoDoubleGeneral();
+                }
+                mantisa = mantisa * 10 + (b - '0');
+                digitos++;
+                if (punto) {
+                    decimales++;
+                }
+            } else if (b == '.' && !punto) {
+                punto = true;
+            } else {
+                // Exponente u otra notación: lo resuelve la biblioteca (o lanza)
+                return campoDoubleGeneral();
+            }
+        }
+        if (digitos == 0) {
+            throw new NumberFormatException("Número inválido: " + campoTexto());
+        }
+        double valor = mantisa / POTENCIAS[decimales];
+        return negativo ? -valor : valor;
+    }
+
+    private double campoDoubleGeneral() {
+        String texto = campoTexto();
+        try {
+            return Double.parseDouble(texto);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Número inválido: " + texto);
+        }
+    }
+
+    /**
+     * Interpreta el campo actual como booleano: true/false, 1/0, si/no, s/n
+     * (sin distinguir mayúsculas)
+     */
+    boolean campoBooleano() {
+        if (campoInicio == campoFin) {
+            throw new IllegalArgumentException("Campo booleano vacío");
+        }
+        switch (buffer.get(campoInicio) | 0x20) {
+            case 't':
+            case 's':
+            case 'y':
+            case '1':
+                return true;
+            case 'f':
+            case 'n':
+            case '0':
+                return false;
+            default:
+                throw new IllegalArgumentException("Booleano inválido: " + campoTexto());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
@@ -0,0 +1,426 @@
+package org.siglo21.persistencia;
+
+import org.siglo21.avion.ConfiguracionCabina;
+import org.siglo21.vuelo.Reserva;
+import org.siglo21.vuelo.Vuelo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Registro de cambios (write-ahead log) de vuelos, reservas y cancelaciones
+ * <p>
+ * Cada cambio se agrega como un registro con número de secuencia creciente:
+ * {@code largo, crc, secuencia, tipo, datos}, donde el CRC32 cubre secuencia,
+ * tipo y datos. Agregar solo copia el registro a un buffer en memoria; un hilo
+ * escritor vuelca todo lo acumulado y hace un único fsync por tanda (group
+ * commit), así que los cambios que llegan mientras se sincroniza la tanda
+ * anterior comparten el próximo fsync. Quien necesita que un cambio sea
+ * durable llama a esperar(secuencia).
+ * <p>
+ * Al arrancar, reproducir() lee el archivo hasta el último registro completo
+ * y válido y trunca lo que sigue (la tanda que quedó a medio escribir si el
+ * proceso murió durante un fsync).
+ */
+public final class RegistroCambios implements Closeable {
+
+    private static final int ENCABEZADO = 4 + 4; // largo + crc
+    private static final int MAX_DATOS = 1 << 20;
+    private static final long SIN_HORARIO = Long.MIN_VALUE;
+
+    private final FileChannel canal;
+    private final Thread escritor;
+    private ByteBuffer pendiente = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer enEscritura = ByteBuffer.allocate(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private int inicioRegistro;     // posición en pendiente del registro que se está escribiendo
+    private long ultimaSecuencia;   // último registro agregado
+    private long secuenciaDurable;  // último registro sincronizado en disco
+    private long sincronizaciones;
+    private long registros;
+    private IOException error;
+    private boolean cerrado;
+
+    /**
+     * Abre el registro para agregar al final. Llamar después de reproducir(),
+     * que deja el archivo sin registros truncados.
+     *
+     * @param ultimaSecuencia secuencia del último cambio ya aplicado (del
+     *                        snapshot o del registro reproducido)
+     */
+    public RegistroCambios(Path archivo, long ultimaSecuencia) throws IOException {
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        canal.position(canal.size());
+        this.ultimaSecuencia = ultimaSecuencia;
+        this.secuenciaDurable = ultimaSecuencia;
+        this.escritor = new Thread(this::escribirTandas, "registro-cambios");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Agrega el alta de un vuelo; retorna su número de secuencia
+     */
+    public long vueloCreado(Vuelo vuelo) {
+        byte[][] textos = {
+                bytes(vuelo.getCodigoVuelo()),
+                bytes(vuelo.getOrigen().getNombre()),
+                bytes(vuelo.getDestino().getNombre())
+        };
+        long salida = vuelo.tieneHorario() ? vuelo.getSalida().toEpochSecond(ZoneOffset.UTC) : SIN_HORARIO;
+        ConfiguracionCabina cabina = vuelo.getAvion().getConfiguracion();
+        byte[][] secciones = new byte[cabina.getCantidadSecciones()][];
+        for (int s = 0; s < secciones.length; s++) {
+            secciones[s] = bytes(cabina.getNombre(s));
+        }
+        synchronized (this) {
+            ByteBuffer datos = empezar(EventoRegistro.Tipo.VUELO_CREADO,
+                    largo(textos) + 8 + 8 + 1 + 8 + 4 + largo(secciones) + 4 * secciones.length);
+            for (byte[] texto : textos) {
+                putTexto(datos, texto);
+            }
+            datos.putDouble(vuelo.getPrecioBase());
+            datos.putDouble(vuelo.getTiempo());
+            datos.put((byte) (vuelo.esDirecto() ? 1 : 0));
+            datos.putLong(salida);
+            // Al final: los registros anteriores a las cabinas terminan en la salida
+            datos.putInt(secciones.length);
+            for (int s = 0; s < secciones.length; s++) {
+                putTexto(datos, secciones[s]);
+                datos.putInt(cabina.getCapacidad(s));
+            }
+            return terminar();
+        }
+    }
+
+    /**
+     * Agrega una reserva con su asiento; retorna su número de secuencia
+     */
+    public long reservaCreada(Reserva reserva) {
+        byte[][] textos = {
+                bytes(reserva.getCodigoReserva()),
+                bytes(reserva.getCodigoVuelo()),
+                bytes(reserva.getAsiento())
+        };
+        byte[] itinerario = bytes(reserva.getCodigoItinerario());
+        synchronized (this) {
+            ByteBuffer datos = empezar(EventoRegistro.Tipo.RESERVA_CREADA,
+                    largo(textos) + 8 + 4 + itinerario.length);
+            for (byte[] texto : textos) {
+                putTexto(datos, texto);
+            }
+            datos.putDouble(reserva.getPrecioFinal());
+            // Al final: los registros anteriores al itinerario terminan en el precio
+            putTexto(datos, itinerario);
+            return terminar();
+        }
+    }
+
+    /**
+     * Agrega la cancelación de una reserva; retorna su número de secuencia
+     */
+    public long cancelacion(String codigoReserva) {
+        byte[] codigo = bytes(codigoReserva);
+        synchronized (this) {
+            ByteBuffer datos = empezar(EventoRegistro.Tipo.CANCELACION, 4 + codigo.length);
+            putTexto(datos, codigo);
+            return terminar();
+        }
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int largo(byte[][] textos) {
+        int largo = 0;
+        for (byte[] texto : textos) {
+            largo += 4 + texto.length;
+        }
+        return largo;
+    }
+
+    private static void putTexto(ByteBuffer datos, byte[] texto) {
+        datos.putInt(texto.length);
+        datos.put(texto);
+    }
+
+    /**
+     * Reserva lugar en el buffer pendiente para un registro y escribe su secuencia y tipo
+     */
+    private ByteBuffer empezar(EventoRegistro.Tipo tipo, int largoDatos) {
+        if (cerrado) {
+            throw new IllegalStateException("El registro de cambios está cerrado");
+        }
+        if (error != null) {
+            throw new UncheckedIOException("El registro de cambios falló", error);
+        }
+        int largo = 8 + 1 + largoDatos;
+        if (pendiente.remaining() < ENCABEZADO + largo) {
+            ByteBuffer mayor = ByteBuffer.allocate(Math.max(pendiente.capacity() * 2,
+                    pendiente.position() + ENCABEZADO + largo));
+            pendiente.flip();
+            mayor.put(pendiente);
+            pendiente = mayor;
+        }
+        inicioRegistro = pendiente.position();
+        pendiente.putInt(largo);
+        pendiente.putInt(0); // CRC, se completa en terminar()
+        pendiente.putLong(ultimaSecuencia + 1);
+        pendiente.put((byte) tipo.ordinal());
+        return pendiente;
+    }
+
+    /**
+     * Completa el CRC del registro recién escrito y avisa al escritor
+     */
+    private long terminar() {
+        int fin = pendiente.position();
+        crc.reset();
+        crc.update(pendiente.duplicate().position(inicioRegistro + ENCABEZADO).limit(fin));
+        pendiente.putInt(inicioRegistro + 4, (int) crc.getValue());
+        registros++;
+        ultimaSecuencia++;
+        notifyAll();
+        return ultimaSecuencia;
+    }
+
+    /**
+     * Bloquea hasta que el cambio con la secuencia indicada (y todos los
+     * anteriores) esté sincronizado en disco
+     *
+     * @throws UncheckedIOException si el escritor no pudo escribir o sincronizar
+     */
+    public synchronized void esperar(long secuencia) {
+        boolean interrumpido = false;
+        while (secuenciaDurable < secuencia && error == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrumpido = true;
+            }
+        }
+        if (interrumpido) {
+            Thread.currentThread().interrupt();
+        }
+        if (secuenciaDurable < secuencia) {
+            throw new UncheckedIOException("El registro de cambios falló", error);
+        }
+    }
+
+    public synchronized long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    /**
+     * Cantidad de fsync hechos (cada uno cubre una tanda de registros)
+     */
+    public synchronized long getSincronizaciones() {
+        return sincronizaciones;
+    }
+
+    public synchronized long getRegistros() {
+        return registros;
+    }
+
+    /**
+     * Vacía el archivo si todo lo registrado ya está incluido en un snapshot
+     * con la secuencia indicada; si hubo cambios posteriores no hace nada
+     * (al reproducir se saltean los registros ya incluidos)
+     */
+    public synchronized void descartarHasta(long secuencia) throws IOException {
+        esperar(ultimaSecuencia);
+        if (ultimaSecuencia <= secuencia) {
+            canal.truncate(0);
+            canal.position(0);
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Hilo escritor: vuelca lo pendiente y sincroniza, una tanda por vez
+     */
+    private void escribirTandas() {
+        while (true) {
+            long hasta;
+            synchronized (this) {
+                while (pendiente.position() == 0 && !cerrado) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Solo se termina al cerrar
+                    }
+                }
+                if (pendiente.position() == 0) {
+                    return;
+                }
+                ByteBuffer tanda = pendiente;
+                pendiente = enEscritura;
+                enEscritura = tanda;
+                hasta = ultimaSecuencia;
+            }
+            try {
+                enEscritura.flip();
+                while (enEscritura.hasRemaining()) {
+                    canal.write(enEscritura);
+                }
+                enEscritura.clear();
+                canal.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    error = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                secuenciaDurable = hasta;
+                sincronizaciones++;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Sincroniza lo pendiente, detiene el escritor y cierra el archivo
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            notifyAll();
+        }
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Lee el registro y entrega, en orden, los cambios con secuencia mayor que
+     * desdeSecuencia. Se detiene en el primer registro incompleto o dañado y
+     * trunca el archivo ahí. Retorna la secuencia del último registro válido
+     * (o desdeSecuencia si no hay ninguno posterior).
+     */
+    public static long reproducir(Path archivo, long desdeSecuencia, Consumer<EventoRegistro> aplicar)
+            throws IOException {
+        if (!Files.exists(archivo)) {
+            return desdeSecuencia;
+        }
+        long ultima = desdeSecuencia;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tamaño = canal.size();
+            if (tamaño > Integer.MAX_VALUE) {
+                throw new IOException("Registro de cambios demasiado grande para mapearlo; guarde un snapshot");
+            }
+            MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamaño);
+            CRC32 crc = new CRC32();
+            long anterior = -1;
+            int posicion = 0;
+            while (tamaño - posicion >= ENCABEZADO) {
+                int largo = datos.getInt(posicion);
+                if (largo < 9 || largo > MAX_DATOS || largo > tamaño - posicion - ENCABEZADO) {
+                    break;
+                }
+                crc.reset();
+                crc.update(datos.duplicate().position(posicion + ENCABEZADO).limit(posicion + ENCABEZADO + largo));
+                if ((int) crc.getValue() != datos.getInt(posicion + 4)) {
+                    break;
+                }
+                ByteBuffer registro = datos.duplicate().position(posicion + ENCABEZADO)
+                        .limit(posicion + ENCABEZADO + largo);
+                long secuencia = registro.getLong();
+                if (secuencia <= anterior) {
+                    break;
+                }
+                anterior = secuencia;
+                if (secuencia > desdeSecuencia) {
+                    aplicar.accept(leerEvento(secuencia, registro));
+                    ultima = secuencia;
+                }
+                posicion += ENCABEZADO + largo;
+            }
+            if (posicion < tamaño) {
+                canal.truncate(posicion);
+                canal.force(true);
+            }
+        }
+        return ultima;
+    }
+
+    private static EventoRegistro leerEvento(long secuencia, ByteBuffer datos) throws IOException {
+        int tipo = datos.get();
+        if (tipo < 0 || tipo >= EventoRegistro.Tipo.values().length) {
+            throw new IOException("Tipo de registro desconocido: " + tipo);
+        }
+        switch (EventoRegistro.Tipo.values()[tipo]) {
+            case VUELO_CREADO: {
+                String codigoVuelo = leerTexto(datos);
+                String origen = leerTexto(datos);
+                String destino = leerTexto(datos);
+                double precio = datos.getDouble();
+                double tiempo = datos.getDouble();
+                boolean esDirecto = datos.get() != 0;
+                long segundos = datos.getLong();
+                LocalDateTime salida = segundos == SIN_HORARIO ? null
+                        : LocalDateTime.ofEpochSecond(segundos, 0, ZoneOffset.UTC);
+                ConfiguracionCabina cabina = ConfiguracionCabina.ESTANDAR;
+                if (datos.hasRemaining()) {
+                    String[] nombres = new String[datos.getInt()];
+                    int[] capacidades = new int[nombres.length];
+                    for (int s = 0; s < nombres.length; s++) {
+                        nombres[s] = leerTexto(datos);
+                        capacidades[s] = datos.getInt();
+                    }
+                    try {
+                        cabina = new ConfiguracionCabina(nombres, capacidades);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Cabina inválida en el registro #" + secuencia + ": " + e.getMessage(), e);
+                    }
+                }
+                return new EventoRegistro(secuencia, EventoRegistro.Tipo.VUELO_CREADO, codigoVuelo, null, null,
+                        origen, destino, null, precio, tiempo, esDirecto, salida, cabina);
+            }
+            case RESERVA_CREADA: {
+                String codigoReserva = leerTexto(datos);
+                String codigoVuelo = leerTexto(datos);
+                String asiento = leerTexto(datos);
+                double precio = datos.getDouble();
+                String itinerario = datos.hasRemaining() ? leerTexto(datos) : codigoReserva;
+                return new EventoRegistro(secuencia, EventoRegistro.Tipo.RESERVA_CREADA, codigoVuelo,
+                        codigoReserva, itinerario, null, null, asiento, precio, 0, false, null, null);
+            }
+            default: {
+                String codigoReserva = leerTexto(datos);
+                return new EventoRegistro(secuencia, EventoRegistro.Tipo.CANCELACION, null, codigoReserva,
+                        null, null, null, null, 0, 0, false, null, null);
+            }
+        }
+    }
+
+    private static String leerTexto(ByteBuffer datos) {
+        byte[] bytes = new byte[datos.getInt()];
+        datos.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+package org.siglo21.persistencia;
+
+import org.siglo21.grafo.Grafo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de una carga masiva de la red: el grafo y las métricas de la carga
+ */
+public final class ResultadoCarga {
+
+    private final Grafo grafo;
+    private final int ciudades;
+    private final long aristas;
+    private final long lineasDescartadas;
+    private final List<String> errores;
+    private final long bytesLeidos;
+    private final long nanos;
+
+    ResultadoCarga(Grafo grafo, int ciudades, long aristas, long lineasDescartadas, List<String> errores,
+                   long bytesLeidos, long nanos) {
+        this.grafo = grafo;
+        this.ciudades = ciudades;
+        this.aristas = aristas;
+        this.lineasDescartadas = lineasDescartadas;
+        this.errores = Collections.unmodifiableList(errores);
+        this.bytesLeidos = bytesLeidos;
+        this.nanos = nanos;
+    }
+
+    public Grafo getGrafo() {
+        return grafo;
+    }
+
+    public int getCiudades() {
+        return ciudades;
+    }
+
+    /**
+     * Aristas agregadas (una ruta bidireccional cuenta como dos)
+     */
+    public long getAristas() {
+        return aristas;
+    }
+
+    public long getLineasDescartadas() {
+        return lineasDescartadas;
+    }
+
+    /**
+     * Primeros errores encontrados, con archivo y número de línea
+     */
+    public List<String> getErrores() {
+        return errores;
+    }
+
+    public long getBytesLeidos() {
+        return bytesLeidos;
+    }
+
+    public double getSegundos() {
+        return nanos / 1e9;
+    }
+
+    public double getAristasPorSegundo() {
+        return nanos == 0 ? 0 : aristas * 1e9 / nanos;
+    }
+
+    public double getMegabytesPorSegundo() {
+        return nanos == 0 ? 0 : bytesLeidos * 1e9 / nanos / (1 << 20);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Red cargada: %d ciudades, %d aristas en %.3f s (%.0f aristas/s, %.1f MB/s), "
+                        + "%d líneas descartadas", ciudades, aristas, getSegundos(), getAristasPorSegundo(),
+                getMegabytesPorSegundo(), lineasDescartadas);
+    }
+}
@@ -0,0 +1,449 @@
+package org.siglo21.persistencia;
+
+import org.siglo21.avion.ConfiguracionCabina;
+import org.siglo21.grafo.Arista;
+import org.siglo21.grafo.Ciudad;
+import org.siglo21.grafo.Grafo;
+import org.siglo21.grafo.LoteAristas;
+import org.siglo21.vuelo.Reserva;
+import org.siglo21.vuelo.Vuelo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot binario de todo el estado de la aerolínea
+ * <p>
+ * Formato (big endian), pensado para leerse de corrido desde un archivo mapeado:
+ * <ol>
+ *     <li>Encabezado: magia "SG21SNAP", versión, secuencia, próxima reserva y
+ *     cantidades de ciudades, aristas, vuelos y reservas</li>
+ *     <li>Ciudades: nombre, código, latitud y longitud, en orden de alta</li>
+ *     <li>Grafo en CSR: inicio de las salientes de cada ciudad y después, en
+ *     columnas, destino, tiempo, precio base y esDirecto de cada arista</li>
+ *     <li>Vuelos: primero las distribuciones de cabina distintas (cantidad de
+ *     secciones y nombre y capacidad de cada una; desde la versión 3) y después
+ *     los vuelos ordenados por código: código, origen, destino, precio, tiempo,
+ *     esDirecto, salida (segundos UTC, Long.MIN_VALUE sin horario) y número de
+ *     cabina (desde la versión 3; antes todos usan la estándar)</li>
+ *     <li>Asientos: mapa de bits de ocupación de cada vuelo</li>
+ *     <li>Reservas de cada vuelo ordenadas por número (el orden del árbol),
+ *     para armar los árboles en tiempo lineal: código, asiento,
+ *     precio final e itinerario (null si es la propia reserva; la versión 1
+ *     no lo guarda)</li>
+ *     <li>CRC32 de todo lo anterior</li>
+ * </ol>
+ * Cada sección empieza con su número para detectar archivos corruptos. Los
+ * textos van como largo (int, -1 para null) y bytes UTF-8. Se escribe en un
+ * archivo temporal que reemplaza al anterior recién cuando está completo y
+ * sincronizado en disco.
+ */
+public final class SnapshotSistema {
+
+    static final long MAGIA = 0x53473231534E4150L; // "SG21SNAP"
+    static final int VERSION = 3;
+    private static final int VERSION_ITINERARIOS = 2; // primera con el itinerario de cada reserva
+    private static final int VERSION_CABINAS = 3;     // primera con la cabina de cada vuelo
+
+    private static final int SECCION_CIUDADES = 1;
+    private static final int SECCION_GRAFO = 2;
+    private static final int SECCION_VUELOS = 3;
+    private static final int SECCION_ASIENTOS = 4;
+    private static final int SECCION_RESERVAS = 5;
+    private static final long SIN_HORARIO = Long.MIN_VALUE;
+
+    private SnapshotSistema() {
+    }
+
+    /**
+     * Escribe el snapshot del estado indicado
+     *
+     * @param proximaReserva número que debe usar la próxima reserva
+     * @param secuencia      número del último cambio incluido (para el registro de cambios)
+     */
+    public static void escribir(Path archivo, Grafo grafo, Collection<Vuelo> vuelos, int proximaReserva,
+                                long secuencia) throws IOException {
+        // Ciudades en orden de alta; las de vuelos fuera del grafo van al final
+        List<Ciudad> ciudades = new ArrayList<>(grafo.getCiudades());
+        Map<Ciudad, Integer> ids = new HashMap<>(ciudades.size() * 2);
+        for (Ciudad ciudad : ciudades) {
+            ids.put(ciudad, ids.size());
+        }
+        List<Vuelo> ordenados = new ArrayList<>(vuelos);
+        ordenados.sort(Comparator.comparing(Vuelo::getCodigoVuelo));
+        long cantidadReservas = 0;
+        List<List<Reserva>> reservasPorVuelo = new ArrayList<>(ordenados.size());
+        for (Vuelo vuelo : ordenados) {
+            for (Ciudad ciudad : new Ciudad[]{vuelo.getOrigen(), vuelo.getDestino()}) {
+                if (!ids.containsKey(ciudad)) {
+                    ids.put(ciudad, ids.size());
+                    ciudades.add(ciudad);
+                }
+            }
+            List<Reserva> reservas = vuelo.getReservas().inOrder();
+            reservasPorVuelo.add(reservas);
+            cantidadReservas += reservas.size();
+        }
+        long cantidadAristas = 0;
+        for (Ciudad ciudad : ciudades) {
+            cantidadAristas += grafo.getAdyacentes(ciudad).size();
+        }
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Escritor salida = new Escritor(canal);
+            salida.putLong(MAGIA);
+            salida.putInt(VERSION);
+            salida.putLong(secuencia);
+            salida.putInt(proximaReserva);
+            salida.putInt(ciudades.size());
+            salida.putLong(cantidadAristas);
+            salida.putInt(ordenados.size());
+            salida.putLong(cantidadReservas);
+
+            salida.putInt(SECCION_CIUDADES);
+            for (Ciudad ciudad : ciudades) {
+                salida.putTexto(ciudad.getNombre());
+                salida.putTexto(ciudad.getCodigo());
+                salida.putDouble(ciudad.getLatitud());
+                salida.putDouble(ciudad.getLongitud());
+            }
+
+            salida.putInt(SECCION_GRAFO);
+            long posicion = 0;
+            for (Ciudad ciudad : ciudades) {
+                salida.putLong(posicion);
+                posicion += grafo.getAdyacentes(ciudad).size();
+            }
+            salida.putLong(posicion);
+            for (Ciudad ciudad : ciudades) {
+                for (Arista arista : grafo.getAdyacentes(ciudad)) {
+                    salida.putInt(ids.get(arista.getDestino()));
+                }
+            }
+            for (Ciudad ciudad : ciudades) {
+                for (Arista arista : grafo.getAdyacentes(ciudad)) {
+                    salida.putDouble(arista.getTiempo());
+                }
+            }
+            for (Ciudad ciudad : ciudades) {
+                for (Arista arista : grafo.getAdyacentes(ciudad)) {
+                    salida.putDouble(arista.getPrecioBase());
+                }
+            }
+            for (Ciudad ciudad : ciudades) {
+                for (Arista arista : grafo.getAdyacentes(ciudad)) {
+                    salida.putByte(arista.isEsDirecto() ? 1 : 0);
+                }
+            }
+
+            salida.putInt(SECCION_VUELOS);
+            Map<ConfiguracionCabina, Integer> cabinas = new LinkedHashMap<>();
+            for (Vuelo vuelo : ordenados) {
+                cabinas.putIfAbsent(vuelo.getAvion().getConfiguracion(), cabinas.size());
+            }
+            salida.putInt(cabinas.size());
+            for (ConfiguracionCabina cabina : cabinas.keySet()) {
+                salida.putInt(cabina.getCantidadSecciones());
+                for (int s = 0; s < cabina.getCantidadSecciones(); s++) {
+                    salida.putTexto(cabina.getNombre(s));
+                    salida.putInt(cabina.getCapacidad(s));
+                }
+            }
+            for (Vuelo vuelo : ordenados) {
+                salida.putTexto(vuelo.getCodigoVuelo());
+                salida.putInt(ids.get(vuelo.getOrigen()));
+                salida.putInt(ids.get(vuelo.getDestino()));
+                salida.putDouble(vuelo.getPrecioBase());
+                salida.putDouble(vuelo.getTiempo());
+                salida.putByte(vuelo.esDirecto() ? 1 : 0);
+                salida.putLong(vuelo.tieneHorario() ? vuelo.getSalida().toEpochSecond(ZoneOffset.UTC) : SIN_HORARIO);
+                salida.putInt(cabinas.get(vuelo.getAvion().getConfiguracion()));
+            }
+
+            salida.putInt(SECCION_ASIENTOS);
+            for (Vuelo vuelo : ordenados) {
+                long[] mapa = vuelo.getAvion().getMapaOcupacion();
+                salida.putInt(mapa.length);
+                for (long palabra : mapa) {
+                    salida.putLong(palabra);
+                }
+            }
+
+            salida.putInt(SECCION_RESERVAS);
+            for (List<Reserva> reservas : reservasPorVuelo) {
+                salida.putInt(reservas.size());
+                for (Reserva reserva : reservas) {
+                    salida.putTexto(reserva.getCodigoReserva());
+                    salida.putTexto(reserva.getAsiento());
+                    salida.putDouble(reserva.getPrecioFinal());
+                    String itinerario = reserva.getCodigoItinerario();
+                    salida.putTexto(itinerario.equals(reserva.getCodigoReserva()) ? null : itinerario);
+                }
+            }
+
+            salida.terminar();
+            canal.force(true);
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee un snapshot mapeando el archivo en memoria
+     *
+     * @throws IOException si el archivo no existe, no es un snapshot, es de otra
+     *                     versión o está dañado
+     */
+    public static EstadoSnapshot leer(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamaño = canal.size();
+            if (tamaño > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot demasiado grande para mapearlo: " + tamaño + " bytes");
+            }
+            if (tamaño < 8 + 4 + 8) {
+                throw new IOException("Snapshot incompleto: " + archivo);
+            }
+            MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamaño);
+            if (datos.getLong() != MAGIA) {
+                throw new IOException("No es un snapshot del sistema: " + archivo);
+            }
+            int version = datos.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Versión de snapshot no soportada: " + version);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(datos.duplicate().position(0).limit((int) tamaño - 8));
+            if (crc.getValue() != datos.getLong((int) tamaño - 8)) {
+                throw new IOException("Snapshot dañado (CRC inválido): " + archivo);
+            }
+            return leerSecciones(datos, version);
+        }
+    }
+
+    private static EstadoSnapshot leerSecciones(ByteBuffer datos, int version) throws IOException {
+        long secuencia = datos.getLong();
+        int proximaReserva = datos.getInt();
+        int cantidadCiudades = datos.getInt();
+        long cantidadAristas = datos.getLong();
+        int cantidadVuelos = datos.getInt();
+        long cantidadReservas = datos.getLong();
+        if (cantidadAristas > Integer.MAX_VALUE) {
+            throw new IOException("Demasiadas aristas: " + cantidadAristas);
+        }
+        int aristas = (int) cantidadAristas;
+
+        seccion(datos, SECCION_CIUDADES);
+        List<Ciudad> ciudades = new ArrayList<>(cantidadCiudades);
+        Grafo grafo = new Grafo(cantidadCiudades);
+        for (int i = 0; i < cantidadCiudades; i++) {
+            String nombre = leerTexto(datos);
+            String codigo = leerTexto(datos);
+            double latitud = datos.getDouble();
+            double longitud = datos.getDouble();
+            Ciudad ciudad = new Ciudad(nombre, codigo, latitud, longitud);
+            ciudades.add(ciudad);
+            grafo.agregarCiudad(ciudad);
+        }
+
+        seccion(datos, SECCION_GRAFO);
+        int[] origen = new int[aristas];
+        long anterior = datos.getLong();
+        for (int i = 0; i < cantidadCiudades; i++) {
+            long siguiente = datos.getLong();
+            for (long a = anterior; a < siguiente; a++) {
+                origen[(int) a] = i;
+            }
+            anterior = siguiente;
+        }
+        int[] destino = new int[aristas];
+        double[] tiempo = new double[aristas];
+        double[] precio = new double[aristas];
+        datos.asIntBuffer().get(destino);
+        datos.position(datos.position() + 4 * aristas);
+        datos.asDoubleBuffer().get(tiempo);
+        datos.position(datos.position() + 8 * aristas);
+        datos.asDoubleBuffer().get(precio);
+        datos.position(datos.position() + 8 * aristas);
+        LoteAristas lote = new LoteAristas(ciudades, aristas);
+        for (int a = 0; a < aristas; a++) {
+            lote.agregar(origen[a], destino[a], tiempo[a], precio[a], datos.get() != 0);
+        }
+        grafo.agregarAristas(lote);
+
+        seccion(datos, SECCION_VUELOS);
+        ConfiguracionCabina[] cabinas = {ConfiguracionCabina.ESTANDAR};
+        if (version >= VERSION_CABINAS) {
+            cabinas = new ConfiguracionCabina[datos.getInt()];
+            for (int c = 0; c < cabinas.length; c++) {
+                String[] nombres = new String[datos.getInt()];
+                int[] capacidades = new int[nombres.length];
+                for (int s = 0; s < nombres.length; s++) {
+                    nombres[s] = leerTexto(datos);
+                    capacidades[s] = datos.getInt();
+                }
+                try {
+                    cabinas[c] = new ConfiguracionCabina(nombres, capacidades);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Snapshot dañado: " + e.getMessage(), e);
+                }
+            }
+        }
+        List<Vuelo> vuelos = new ArrayList<>(cantidadVuelos);
+        for (int i = 0; i < cantidadVuelos; i++) {
+            String codigo = leerTexto(datos);
+            Ciudad desde = ciudades.get(datos.getInt());
+            Ciudad hasta = ciudades.get(datos.getInt());
+            double precioBase = datos.getDouble();
+            double tiempoVuelo = datos.getDouble();
+            boolean esDirecto = datos.get() != 0;
+            long segundos = datos.getLong();
+            LocalDateTime salida = segundos == SIN_HORARIO ? null
+                    : LocalDateTime.ofEpochSecond(segundos, 0, ZoneOffset.UTC);
+            ConfiguracionCabina cabina = version >= VERSION_CABINAS ? cabinas[datos.getInt()] : cabinas[0];
+            vuelos.add(new Vuelo(codigo, desde, hasta, precioBase, tiempoVuelo, esDirecto, salida, cabina));
+        }
+
+        seccion(datos, SECCION_ASIENTOS);
+        for (Vuelo vuelo : vuelos) {
+            long[] mapa = new long[datos.getInt()];
+            for (int w = 0; w < mapa.length; w++) {
+                mapa[w] = datos.getLong();
+            }
+            vuelo.getAvion().restaurarOcupacion(mapa);
+        }
+
+        seccion(datos, SECCION_RESERVAS);
+        for (Vuelo vuelo : vuelos) {
+            int cantidad = datos.getInt();
+            Reserva[] ordenadas = new Reserva[cantidad];
+            for (int r = 0; r < cantidad; r++) {
+                String codigo = leerTexto(datos);
+                String asiento = leerTexto(datos);
+                double precioFinal = datos.getDouble();
+                String itinerario = version < VERSION_ITINERARIOS ? null : leerTexto(datos);
+                ordenadas[r] = new Reserva(codigo, itinerario == null ? codigo : itinerario,
+                        vuelo.getCodigoVuelo(), asiento, vuelo.getOrigen(), vuelo.getDestino(), precioFinal);
+            }
+            // Vienen en el orden del árbol: se arma en tiempo lineal
+            try {
+                vuelo.getReservas().insertarOrdenadas(Arrays.asList(ordenadas).iterator(), cantidad);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Snapshot dañado: reservas del vuelo " + vuelo.getCodigoVuelo()
+                        + " fuera de orden", e);
+            }
+        }
+
+        return new EstadoSnapshot(grafo, vuelos, proximaReserva, secuencia, cantidadReservas);
+    }
+
+    private static void seccion(ByteBuffer datos, int esperada) throws IOException {
+        int seccion = datos.getInt();
+        if (seccion != esperada) {
+            throw new IOException("Snapshot dañado: se esperaba la sección " + esperada + " y hay " + seccion);
+        }
+    }
+
+    private static String leerTexto(ByteBuffer datos) {
+        int largo = datos.getInt();
+        if (largo < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[largo];
+        datos.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Escritura secuencial con buffer propio y CRC32 de todo lo escrito
+     */
+    private static final class Escritor {
+        private final FileChannel canal;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private final CRC32 crc = new CRC32();
+
+        Escritor(FileChannel canal) {
+            this.canal = canal;
+        }
+
+        private void asegurar(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                vaciar();
+            }
+        }
+
+        private void vaciar() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void putByte(int valor) throws IOException {
+            asegurar(1);
+            buffer.put((byte) valor);
+        }
+
+        void putInt(int valor) throws IOException {
+            asegurar(4);
+            buffer.putInt(valor);
+        }
+
+        void putLong(long valor) throws IOException {
+            asegurar(8);
+            buffer.putLong(valor);
+        }
+
+        void putDouble(double valor) throws IOException {
+            asegurar(8);
+            buffer.putDouble(valor);
+        }
+
+        void putTexto(String texto) throws IOException {
+            if (texto == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int i = 0; i < bytes.length; ) {
+                asegurar(1);
+                int parte = Math.min(buffer.remaining(), bytes.length - i);
+                buffer.put(bytes, i, parte);
+                i += parte;
+            }
+        }
+
+        /**
+         * Vacía el buffer y agrega el CRC32 de todo lo escrito
+         */
+        void terminar() throws IOException {
+            vaciar();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+        }
+    }
+}
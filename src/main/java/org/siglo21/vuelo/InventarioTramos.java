@@ -0,0 +1,265 @@
+package org.siglo21.vuelo;
+
+import org.siglo21.grafo.Ciudad;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Vuelos de cada tramo, ordenados de mejor a peor según un criterio
+ * <p>
+ * Cada ciudad recibe un id entero la primera vez que aparece en un vuelo, y
+ * el tramo se busca por el par de ids empaquetado en un long (origen en los
+ * 32 bits altos), sin armar claves de texto. Dentro de un tramo los vuelos
+ * están en un árbol ordenado por una copia de su clave (asientos libres y
+ * precio), así que el mejor se obtiene en O(log k); quien cambia la ocupación
+ * de un vuelo debe llamar a actualizar para reubicarlo. Los vuelos llenos
+ * siempre van al final: si el primero está lleno, lo están todos.
+ */
+public final class InventarioTramos {
+
+    /**
+     * Qué vuelo del tramo se prefiere
+     */
+    public enum Criterio {
+        /** El que tiene más asientos libres (reparte la ocupación) */
+        MAS_LIBRES,
+        /** El más barato después del recargo por ocupación (llena primero los baratos) */
+        MENOR_PRECIO
+    }
+
+    private final Map<Ciudad, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger proximoId = new AtomicInteger();
+    private final Map<Long, Tramo> tramos = new ConcurrentHashMap<>(); // par de ids empaquetado (ver clave) -> tramo
+    private final BooleanSupplier retencionesEnRecargo;
+    private volatile Criterio criterio = Criterio.MAS_LIBRES;
+
+    /**
+     * @param retencionesEnRecargo si los asientos retenidos cuentan para el
+     *                             recargo por ocupación (criterio MENOR_PRECIO)
+     */
+    public InventarioTramos(BooleanSupplier retencionesEnRecargo) {
+        this.retencionesEnRecargo = retencionesEnRecargo;
+    }
+
+    /**
+     * Posición de un vuelo en su tramo: copia de la clave con la que se ordenó
+     */
+    private static final class Entrada {
+        final Vuelo vuelo;
+        int libres;
+        double precio;
+
+        Entrada(Vuelo vuelo) {
+            this.vuelo = vuelo;
+        }
+    }
+
+    /**
+     * Vuelos de un tramo; se sincroniza sobre sí mismo
+     */
+    private static final class Tramo {
+        final Map<Vuelo, Entrada> entradas = new HashMap<>();
+        Criterio criterio; // con el que está ordenado el árbol
+        TreeSet<Entrada> orden;
+    }
+
+    private static int comparar(Criterio criterio, Entrada a, Entrada b) {
+        boolean llenoA = a.libres == 0;
+        boolean llenoB = b.libres == 0;
+        if (llenoA != llenoB) {
+            return llenoA ? 1 : -1;
+        }
+        if (criterio == Criterio.MENOR_PRECIO) {
+            int porPrecio = Double.compare(a.precio, b.precio);
+            if (porPrecio != 0) {
+                return porPrecio;
+            }
+        }
+        int porLibres = Integer.compare(b.libres, a.libres);
+        if (porLibres != 0) {
+            return porLibres;
+        }
+        return a.vuelo.getCodigoVuelo().compareTo(b.vuelo.getCodigoVuelo());
+    }
+
+    private void tomarClave(Entrada entrada) {
+        Vuelo vuelo = entrada.vuelo;
+        entrada.libres = vuelo.getAvion().getTotalAsientos() - vuelo.getAvion().getTotalOcupados();
+        entrada.precio = vuelo.alcanza95Porciento(retencionesEnRecargo.getAsBoolean())
+                ? vuelo.getPrecioBase() * 1.10 : vuelo.getPrecioBase();
+    }
+
+    /**
+     * Ordena el tramo con el criterio vigente si no lo estaba (con el tramo sincronizado)
+     */
+    private void alDia(Tramo tramo) {
+        Criterio vigente = criterio;
+        if (tramo.criterio == vigente) {
+            return;
+        }
+        tramo.criterio = vigente;
+        tramo.orden = new TreeSet<>((a, b) -> comparar(vigente, a, b));
+        for (Entrada entrada : tramo.entradas.values()) {
+            tomarClave(entrada);
+            tramo.orden.add(entrada);
+        }
+    }
+
+    private Tramo tramo(Ciudad origen, Ciudad destino) {
+        Integer idOrigen = ids.get(origen);
+        Integer idDestino = idOrigen == null ? null : ids.get(destino);
+        return idDestino == null ? null : tramos.get(clave(idOrigen, idDestino));
+    }
+
+    /**
+     * Origen en los 32 bits altos y destino en los bajos, mezclado con el
+     * origen: sigue siendo un par único, pero Long.hashCode (altos ^ bajos)
+     * ya no choca para ids chicos
+     */
+    private static long clave(int idOrigen, int idDestino) {
+        return ((long) idOrigen << 32) | ((idDestino ^ idOrigen * 0x9E3779B9) & 0xFFFFFFFFL);
+    }
+
+    private int id(Ciudad ciudad) {
+        return ids.computeIfAbsent(ciudad, c -> proximoId.getAndIncrement());
+    }
+
+    public Criterio getCriterio() {
+        return criterio;
+    }
+
+    /**
+     * Cambia el criterio y reordena todos los tramos
+     */
+    public void setCriterio(Criterio criterio) {
+        if (criterio == null) {
+            throw new IllegalArgumentException("El criterio no puede ser nulo");
+        }
+        this.criterio = criterio;
+        reordenar();
+    }
+
+    /**
+     * Agrega un vuelo a su tramo
+     */
+    public void agregar(Vuelo vuelo) {
+        long clave = clave(id(vuelo.getOrigen()), id(vuelo.getDestino()));
+        Tramo tramo = tramos.computeIfAbsent(clave, k -> new Tramo());
+        synchronized (tramo) {
+            alDia(tramo);
+            if (tramo.entradas.containsKey(vuelo)) {
+                return;
+            }
+            Entrada entrada = new Entrada(vuelo);
+            tomarClave(entrada);
+            tramo.entradas.put(vuelo, entrada);
+            tramo.orden.add(entrada);
+        }
+    }
+
+    /**
+     * Reubica un vuelo en su tramo después de un cambio en su ocupación
+     */
+    public void actualizar(Vuelo vuelo) {
+        Tramo tramo = tramo(vuelo.getOrigen(), vuelo.getDestino());
+        if (tramo == null) {
+            return;
+        }
+        synchronized (tramo) {
+            Entrada entrada = tramo.entradas.get(vuelo);
+            if (entrada == null) {
+                return;
+            }
+            alDia(tramo);
+            tramo.orden.remove(entrada);
+            tomarClave(entrada);
+            tramo.orden.add(entrada);
+        }
+    }
+
+    /**
+     * Vuelve a calcular la clave de todos los vuelos (por ejemplo, al cambiar
+     * si las retenciones cuentan para el recargo)
+     */
+    public void reordenar() {
+        for (Tramo tramo : tramos.values()) {
+            synchronized (tramo) {
+                tramo.criterio = null;
+                alDia(tramo);
+            }
+        }
+    }
+
+    /**
+     * Mejor vuelo del tramo según el criterio (puede estar lleno si lo están
+     * todos), o null si el tramo no tiene vuelos
+     */
+    public Vuelo mejor(Ciudad origen, Ciudad destino) {
+        Tramo tramo = tramo(origen, destino);
+        if (tramo == null) {
+            return null;
+        }
+        synchronized (tramo) {
+            alDia(tramo);
+            return tramo.orden.isEmpty() ? null : tramo.orden.first().vuelo;
+        }
+    }
+
+    /**
+     * Mejor vuelo del tramo con asientos libres, o null si no hay ninguno
+     * La clave de un vuelo se actualiza después de tomar el asiento: si el
+     * primero ya se llenó, sigue con los que todavía figuran con lugar
+     */
+    public Vuelo mejorConLugar(Ciudad origen, Ciudad destino) {
+        Tramo tramo = tramo(origen, destino);
+        if (tramo == null) {
+            return null;
+        }
+        synchronized (tramo) {
+            alDia(tramo);
+            for (Entrada entrada : tramo.orden) {
+                if (entrada.libres == 0) {
+                    break; // de acá en adelante, llenos
+                }
+                if (entrada.vuelo.getAvion().hayAsientosLibres()) {
+                    return entrada.vuelo;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Verifica si el tramo tiene al menos un vuelo
+     */
+    public boolean tieneVuelos(Ciudad origen, Ciudad destino) {
+        return mejor(origen, destino) != null;
+    }
+
+    /**
+     * Vuelos del tramo de mejor a peor
+     */
+    public List<Vuelo> getVuelos(Ciudad origen, Ciudad destino) {
+        List<Vuelo> resultado = new ArrayList<>();
+        Tramo tramo = tramo(origen, destino);
+        if (tramo != null) {
+            synchronized (tramo) {
+                alDia(tramo);
+                for (Entrada entrada : tramo.orden) {
+                    resultado.add(entrada.vuelo);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cantidad de tramos con vuelos
+     */
+    public int getCantidadTramos() {
+        return tramos.size();
+    }
+}
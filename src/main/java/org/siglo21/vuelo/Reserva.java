@@ -7,7 +7,11 @@ import org.siglo21.grafo.Ciudad;
  */
 public class Reserva {
 
+    private static final String PREFIJO = "RES-";
+
     private String codigoReserva;
+    private long numero; // parte numérica del código, clave de los árboles de reservas
+    private String codigoItinerario; // código de la primera reserva del itinerario
     private String codigoVuelo;
     private String asiento;
     private Ciudad origen;
@@ -15,7 +19,21 @@ public class Reserva {
     private double precioFinal;
 
     public Reserva(String codigoReserva, String codigoVuelo, String asiento, Ciudad origen, Ciudad destino, double precioFinal) {
+        this(codigoReserva, codigoReserva, codigoVuelo, asiento, origen, destino, precioFinal);
+    }
+
+    /**
+     * Reserva de un tramo de un itinerario de varios tramos; el itinerario se
+     * identifica con el código de la reserva de su primer tramo
+     */
+    public Reserva(String codigoReserva, String codigoItinerario, String codigoVuelo, String asiento,
+                   Ciudad origen, Ciudad destino, double precioFinal) {
         this.codigoReserva = codigoReserva;
+        this.numero = numeroDeCodigo(codigoReserva);
+        if (numero < 0) {
+            throw new IllegalArgumentException("Código de reserva inválido: " + codigoReserva);
+        }
+        this.codigoItinerario = codigoItinerario;
         this.codigoVuelo = codigoVuelo;
         this.asiento = asiento;
         this.origen = origen;
@@ -23,10 +41,45 @@ public class Reserva {
         this.precioFinal = precioFinal;
     }
 
+    /**
+     * Código de reserva para un número ("RES-" y al menos seis dígitos)
+     */
+    public static String codigoDeNumero(long numero) {
+        return PREFIJO + String.format("%06d", numero);
+    }
+
+    /**
+     * Número de un código de reserva ("RES-000123" -> 123), o -1 si el texto no
+     * es un código de reserva
+     */
+    public static long numeroDeCodigo(String codigo) {
+        if (codigo == null || !codigo.startsWith(PREFIJO) || codigo.length() == PREFIJO.length()
+                || codigo.length() > PREFIJO.length() + 18) {
+            return -1;
+        }
+        long numero = 0;
+        for (int i = PREFIJO.length(); i < codigo.length(); i++) {
+            char c = codigo.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            numero = numero * 10 + (c - '0');
+        }
+        return numero;
+    }
+
     public String getCodigoReserva() {
         return codigoReserva;
     }
 
+    public long getNumero() {
+        return numero;
+    }
+
+    public String getCodigoItinerario() {
+        return codigoItinerario;
+    }
+
     public String getCodigoVuelo() {
         return codigoVuelo;
     }
@@ -0,0 +1,186 @@
+package org.siglo21.vuelo;
+
+import org.siglo21.grafo.Ciudad;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabla de conexiones (vuelos con horario) ordenadas por hora de salida, con
+ * búsqueda de llegada más temprana por barrido de conexiones (Connection Scan)
+ * <p>
+ * Cada conexión ocupa la misma posición en arreglos paralelos de primitivos,
+ * así que una consulta recorre memoria contigua y solo toca el objeto Vuelo
+ * de las conexiones que efectivamente mejoran una llegada. Los horarios se
+ * guardan en minutos desde la época. La tabla es inmutable: si cambian los
+ * vuelos hay que construir una nueva.
+ */
+public final class TablaConexiones {
+
+    private static final int INALCANZABLE = Integer.MAX_VALUE;
+
+    private final Map<Ciudad, Integer> ids;
+    private final int[] conexionMinima; // minutos de escala mínima por ciudad
+    private final int[] salida;
+    private final int[] llegada;
+    private final int[] origen;
+    private final int[] destino;
+    private final Vuelo[] vuelos;
+
+    /**
+     * Construye la tabla con los vuelos que tienen horario (el resto se ignora)
+     *
+     * @param conexionMinimaMinutos   escala mínima entre un vuelo y el siguiente
+     * @param conexionMinimaPorCiudad escalas mínimas propias de algunas ciudades
+     */
+    public TablaConexiones(Collection<Vuelo> todos, int conexionMinimaMinutos,
+                           Map<Ciudad, Integer> conexionMinimaPorCiudad) {
+        List<Vuelo> conHorario = new ArrayList<>();
+        for (Vuelo vuelo : todos) {
+            if (vuelo.tieneHorario()) {
+                conHorario.add(vuelo);
+            }
+        }
+        int cantidad = conHorario.size();
+
+        // Ordenar por salida con claves primitivas: (salida relativa << 32) | posición
+        int[] minutosSalida = new int[cantidad];
+        int base = Integer.MAX_VALUE;
+        for (int i = 0; i < cantidad; i++) {
+            minutosSalida[i] = aMinutos(conHorario.get(i).getSalida());
+            base = Math.min(base, minutosSalida[i]);
+        }
+        long[] claves = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            claves[i] = ((long) (minutosSalida[i] - base) << 32) | i;
+        }
+        Arrays.sort(claves);
+
+        this.ids = new HashMap<>();
+        this.salida = new int[cantidad];
+        this.llegada = new int[cantidad];
+        this.origen = new int[cantidad];
+        this.destino = new int[cantidad];
+        this.vuelos = new Vuelo[cantidad];
+        for (int c = 0; c < cantidad; c++) {
+            int i = (int) claves[c];
+            Vuelo vuelo = conHorario.get(i);
+            salida[c] = minutosSalida[i];
+            llegada[c] = aMinutos(vuelo.getLlegada());
+            origen[c] = idDe(vuelo.getOrigen());
+            destino[c] = idDe(vuelo.getDestino());
+            vuelos[c] = vuelo;
+        }
+
+        this.conexionMinima = new int[ids.size()];
+        Arrays.fill(conexionMinima, conexionMinimaMinutos);
+        for (Map.Entry<Ciudad, Integer> entrada : conexionMinimaPorCiudad.entrySet()) {
+            Integer id = ids.get(entrada.getKey());
+            if (id != null) {
+                conexionMinima[id] = entrada.getValue();
+            }
+        }
+    }
+
+    private int idDe(Ciudad ciudad) {
+        Integer id = ids.get(ciudad);
+        if (id == null) {
+            id = ids.size();
+            ids.put(ciudad, id);
+        }
+        return id;
+    }
+
+    private static int aMinutos(LocalDateTime fecha) {
+        return (int) (fecha.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    /**
+     * Cantidad de conexiones de la tabla
+     */
+    public int getCantidadConexiones() {
+        return vuelos.length;
+    }
+
+    /**
+     * Vuelos que llegan lo antes posible de origen a destino saliendo desde
+     * salidaMinima, respetando la escala mínima de cada ciudad de conexión y
+     * evitando los vuelos llenos.
+     * Retorna los vuelos en orden, o null si no hay forma de llegar.
+     */
+    public List<Vuelo> llegadaMasTemprana(Ciudad desde, Ciudad hasta, LocalDateTime salidaMinima) {
+        Integer idOrigen = ids.get(desde);
+        Integer idDestino = ids.get(hasta);
+        if (idOrigen == null || idDestino == null) {
+            return null;
+        }
+        if (idOrigen.equals(idDestino)) {
+            return Collections.emptyList();
+        }
+
+        int n = ids.size();
+        int[] llegadaCiudad = new int[n];
+        int[] embarque = new int[n]; // primer minuto en que se puede abordar en la ciudad
+        int[] conexionPrevia = new int[n];
+        Arrays.fill(llegadaCiudad, INALCANZABLE);
+        Arrays.fill(embarque, INALCANZABLE);
+        Arrays.fill(conexionPrevia, -1);
+
+        int inicio = aMinutos(salidaMinima);
+        llegadaCiudad[idOrigen] = inicio;
+        embarque[idOrigen] = inicio;
+        int objetivo = idDestino;
+
+        for (int c = primeraConSalidaDesde(inicio); c < salida.length; c++) {
+            // Ninguna conexión que sale después de la mejor llegada puede mejorarla
+            if (salida[c] >= llegadaCiudad[objetivo]) {
+                break;
+            }
+            int o = origen[c];
+            int d = destino[c];
+            if (salida[c] < embarque[o] || llegada[c] >= llegadaCiudad[d]) {
+                continue;
+            }
+            if (!vuelos[c].getAvion().hayAsientosLibres()) {
+                continue;
+            }
+            llegadaCiudad[d] = llegada[c];
+            embarque[d] = llegada[c] + conexionMinima[d];
+            conexionPrevia[d] = c;
+        }
+
+        if (conexionPrevia[objetivo] < 0) {
+            return null;
+        }
+        List<Vuelo> recorrido = new ArrayList<>();
+        for (int ciudad = objetivo; ciudad != idOrigen; ciudad = origen[conexionPrevia[ciudad]]) {
+            recorrido.add(vuelos[conexionPrevia[ciudad]]);
+        }
+        Collections.reverse(recorrido);
+        return recorrido;
+    }
+
+    /**
+     * Búsqueda binaria de la primera conexión que sale en el minuto indicado o después
+     */
+    private int primeraConSalidaDesde(int minuto) {
+        int bajo = 0;
+        int alto = salida.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (salida[medio] < minuto) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+}
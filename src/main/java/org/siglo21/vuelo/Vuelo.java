@@ -1,9 +1,13 @@
 package org.siglo21.vuelo;
 
 import org.siglo21.avion.Avion;
-import org.siglo21.estructuras.ArbolAVL;
+import org.siglo21.avion.ConfiguracionCabina;
+import org.siglo21.estructuras.ArbolReservas;
 import org.siglo21.grafo.Ciudad;
 
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Representa un vuelo con su avión y reservas
  */
@@ -12,21 +16,70 @@ public class Vuelo {
     private Ciudad origen;
     private Ciudad destino;
     private Avion avion;
-    private ArbolAVL reservas;
+    private ArbolReservas reservas; // Número de reserva -> Reserva
     private double precioBase;
     private double tiempo;
     private boolean esDirecto;
-    private static int contadorVuelos = 1;
+    private LocalDateTime salida;  // null si el vuelo no tiene horario
+    private LocalDateTime llegada;
+    private static final AtomicInteger contadorVuelos = new AtomicInteger(1);
 
     public Vuelo(Ciudad origen, Ciudad destino, double precioBase, double tiempo, boolean esDirecto) {
-        this.codigoVuelo = "VUELO-" + String.format("%04d", contadorVuelos++);
+        this(origen, destino, precioBase, tiempo, esDirecto, null);
+    }
+
+    /**
+     * Crea un vuelo con fecha y hora de salida; la llegada es la salida más el tiempo de vuelo
+     */
+    public Vuelo(Ciudad origen, Ciudad destino, double precioBase, double tiempo, boolean esDirecto,
+                 LocalDateTime salida) {
+        this(origen, destino, precioBase, tiempo, esDirecto, salida, ConfiguracionCabina.ESTANDAR);
+    }
+
+    /**
+     * Crea un vuelo con un avión de la distribución de asientos indicada
+     */
+    public Vuelo(Ciudad origen, Ciudad destino, double precioBase, double tiempo, boolean esDirecto,
+                 LocalDateTime salida, ConfiguracionCabina cabina) {
+        this(siguienteCodigo(), origen, destino, precioBase, tiempo, esDirecto, salida, cabina);
+    }
+
+    /**
+     * Crea un vuelo con un código ya asignado (por ejemplo, al restaurar un snapshot)
+     * Los códigos automáticos siguientes no repiten el número de este
+     */
+    public Vuelo(String codigoVuelo, Ciudad origen, Ciudad destino, double precioBase, double tiempo,
+                 boolean esDirecto, LocalDateTime salida) {
+        this(codigoVuelo, origen, destino, precioBase, tiempo, esDirecto, salida, ConfiguracionCabina.ESTANDAR);
+    }
+
+    public Vuelo(String codigoVuelo, Ciudad origen, Ciudad destino, double precioBase, double tiempo,
+                 boolean esDirecto, LocalDateTime salida, ConfiguracionCabina cabina) {
+        this.codigoVuelo = codigoVuelo;
+        avanzarContador(codigoVuelo);
         this.origen = origen;
         this.destino = destino;
         this.precioBase = precioBase;
         this.tiempo = tiempo;
         this.esDirecto = esDirecto;
-        this.avion = new Avion();
-        this.reservas = new ArbolAVL();
+        this.salida = salida;
+        this.llegada = salida == null ? null : salida.plusMinutes(Math.round(tiempo * 60));
+        this.avion = new Avion(cabina);
+        this.reservas = new ArbolReservas();
+    }
+
+    private static String siguienteCodigo() {
+        return "VUELO-" + String.format("%04d", contadorVuelos.getAndIncrement());
+    }
+
+    private static void avanzarContador(String codigoVuelo) {
+        if (codigoVuelo.startsWith("VUELO-")) {
+            try {
+                contadorVuelos.accumulateAndGet(Integer.parseInt(codigoVuelo.substring(6)) + 1, Math::max);
+            } catch (NumberFormatException e) {
+                // Código con otro formato: no choca con los automáticos
+            }
+        }
     }
 
     public String getCodigoVuelo() {
@@ -45,7 +98,7 @@ public class Vuelo {
         return avion;
     }
 
-    public ArbolAVL getReservas() {
+    public ArbolReservas getReservas() {
         return reservas;
     }
 
@@ -61,6 +114,21 @@ public class Vuelo {
         return esDirecto;
     }
 
+    public LocalDateTime getSalida() {
+        return salida;
+    }
+
+    public LocalDateTime getLlegada() {
+        return llegada;
+    }
+
+    /**
+     * Verifica si el vuelo tiene fecha y hora de salida
+     */
+    public boolean tieneHorario() {
+        return salida != null;
+    }
+
     /**
      * Obtiene el porcentaje de ocupación del vuelo
      */
@@ -69,14 +137,25 @@ public class Vuelo {
     }
 
     /**
-     * Verifica si el vuelo alcanza ≥95% de ocupación
+     * Verifica si el vuelo alcanza ≥95% de ocupación (los asientos retenidos cuentan)
      */
     public boolean alcanza95Porciento() {
-        return getPorcentajeOcupacion() >= 95.0;
+        return alcanza95Porciento(true);
+    }
+
+    /**
+     * Verifica si el vuelo alcanza ≥95% de ocupación, contando o no los asientos retenidos
+     */
+    public boolean alcanza95Porciento(boolean contarRetenidos) {
+        return avion.getPorcentajeDeOcupacion(contarRetenidos) >= 95.0;
     }
 
     @Override
     public String toString() {
+        if (salida != null) {
+            return String.format("%s: %s → %s (Sale: %s, Llega: %s, Precio: $%.0f)",
+                    codigoVuelo, origen, destino, salida, llegada, precioBase);
+        }
         return String.format("%s: %s → %s (Tiempo: %.1fh, Precio: $%.0f)",
                 codigoVuelo, origen, destino, tiempo, precioBase);
     }
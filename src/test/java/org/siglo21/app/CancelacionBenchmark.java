@@ -0,0 +1,126 @@
+package org.siglo21.app;
+
+import org.siglo21.grafo.Ciudad;
+import org.siglo21.grafo.Grafo;
+import org.siglo21.vuelo.Reserva;
+import org.siglo21.vuelo.Vuelo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Latencia de cancelación a medida que crece la cantidad de vuelos
+ * <p>
+ * Compara la cancelación por el índice global de reservas con el recorrido
+ * de todos los vuelos que hacía antes cancelarReserva (una búsqueda en el
+ * árbol de cada vuelo hasta encontrar el código). No corre con los tests:
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes org.siglo21.app.CancelacionBenchmark
+ * </pre>
+ */
+public final class CancelacionBenchmark {
+
+    private static final int[] CANTIDADES_VUELOS = {100, 1_000, 10_000, 50_000};
+    private static final int RESERVAS_POR_VUELO = 3;
+    private static final int CANCELACIONES = 2_000;
+    private static final int ITINERARIOS = 1_000;
+
+    public static void main(String[] args) {
+        medir(1_000, false); // calentamiento del JIT para todas las rutas de código
+        System.out.printf("%8s %14s %14s %16s%n", "vuelos", "índice ns/op", "itin. ns/op", "recorrido ns/op");
+        for (int cantidad : CANTIDADES_VUELOS) {
+            medir(cantidad, true);
+        }
+    }
+
+    private static void medir(int cantidadVuelos, boolean mostrar) {
+        // Estrella: un vuelo desde el centro a cada ciudad, y una segunda escala para los itinerarios
+        Grafo grafo = new Grafo(cantidadVuelos + 2);
+        SistemaAerolinea sistema = new SistemaAerolinea(grafo);
+        Ciudad centro = new Ciudad("Centro");
+        Ciudad escala = new Ciudad("Escala");
+        grafo.agregarArista(centro, escala, 1, 100, true);
+        List<Ciudad> destinos = new ArrayList<>();
+        for (int i = 0; i < cantidadVuelos - 1; i++) {
+            Ciudad destino = new Ciudad("Ciudad " + i);
+            grafo.agregarArista(escala, destino, 1, 100, true);
+            destinos.add(destino);
+            sistema.crearVuelo(escala, destino, 100, 1, true);
+        }
+        sistema.crearVuelo(centro, escala, 100, 1, true);
+
+        List<String> codigos = new ArrayList<>();
+        for (Ciudad destino : destinos) {
+            for (int r = 0; r < RESERVAS_POR_VUELO; r++) {
+                codigos.add(sistema.realizarReserva(escala, destino).get(0).getCodigoReserva());
+            }
+        }
+        // Itinerarios de dos tramos: centro -> escala -> destino (el primer tramo abre vuelos al llenarse)
+        Random azar = new Random(cantidadVuelos);
+        List<String> itinerarios = new ArrayList<>();
+        for (int i = 0; i < ITINERARIOS; i++) {
+            List<Reserva> reservas = sistema.realizarReserva(centro, destinos.get(azar.nextInt(destinos.size())));
+            if (reservas != null) {
+                itinerarios.add(reservas.get(0).getCodigoReserva());
+            }
+        }
+        Collections.shuffle(codigos, azar);
+
+        // Calentamiento y medición del recorrido sobre los mismos códigos, sin cancelar
+        int cantidadMuestra = Math.min(CANCELACIONES, codigos.size() / 2);
+        List<String> muestra = codigos.subList(0, cantidadMuestra);
+        recorrer(sistema, muestra.subList(0, Math.min(200, muestra.size())));
+        System.gc();
+        long inicio = System.nanoTime();
+        int encontrados = recorrer(sistema, muestra);
+        long recorrido = (System.nanoTime() - inicio) / muestra.size();
+        if (encontrados != muestra.size()) {
+            throw new IllegalStateException("El recorrido no encontró todas las reservas");
+        }
+
+        for (String codigo : codigos.subList(cantidadMuestra, codigos.size())) {
+            sistema.cancelarReserva(codigo); // calentamiento
+        }
+        System.gc();
+        inicio = System.nanoTime();
+        for (String codigo : muestra) {
+            if (!sistema.cancelarReserva(codigo)) {
+                throw new IllegalStateException("No se canceló " + codigo);
+            }
+        }
+        long indice = (System.nanoTime() - inicio) / muestra.size();
+
+        System.gc();
+        inicio = System.nanoTime();
+        for (String codigo : itinerarios) {
+            if (sistema.cancelarItinerario(codigo) != 2) {
+                throw new IllegalStateException("No se canceló el itinerario " + codigo);
+            }
+        }
+        long porItinerario = (System.nanoTime() - inicio) / itinerarios.size();
+
+        if (mostrar) {
+            System.out.printf("%8d %14d %14d %16d%n", cantidadVuelos, indice, porItinerario, recorrido);
+        }
+    }
+
+    /**
+     * Búsqueda como la de antes del índice: prueba el árbol de cada vuelo hasta encontrar el código
+     */
+    private static int recorrer(SistemaAerolinea sistema, List<String> codigos) {
+        int encontrados = 0;
+        for (String codigo : codigos) {
+            long numero = Reserva.numeroDeCodigo(codigo);
+            for (Vuelo vuelo : sistema.getAllVuelos()) {
+                if (vuelo.getReservas().buscar(numero) != null) {
+                    encontrados++;
+                    break;
+                }
+            }
+        }
+        return encontrados;
+    }
+}
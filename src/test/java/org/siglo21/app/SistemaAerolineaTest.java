@@ -0,0 +1,263 @@
+package org.siglo21.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.siglo21.avion.ConfiguracionCabina;
+import org.siglo21.grafo.Ciudad;
+import org.siglo21.grafo.Grafo;
+import org.siglo21.vuelo.Reserva;
+import org.siglo21.vuelo.Vuelo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reservas y cancelaciones sobre la red de ejemplo
+ */
+class SistemaAerolineaTest {
+
+    private final SistemaAerolinea sistema = new SistemaAerolinea();
+
+    private Ciudad ciudad(String codigo) {
+        return sistema.getGrafo().getCiudadPorNombre(codigo);
+    }
+
+    private static int totalReservas(SistemaAerolinea sistema) {
+        int total = 0;
+        for (Vuelo vuelo : sistema.getAllVuelos()) {
+            total += vuelo.getReservas().tamano();
+        }
+        return total;
+    }
+
+    /**
+     * A -> B directo en 1 h, o A -> C -> B en 3 h; vuelos de dos asientos
+     */
+    private static SistemaAerolinea triangulo() {
+        Grafo grafo = new Grafo();
+        Ciudad a = new Ciudad("A");
+        Ciudad b = new Ciudad("B");
+        Ciudad c = new Ciudad("C");
+        grafo.agregarArista(a, b, 1, 100, true);
+        grafo.agregarArista(a, c, 1.5, 60, true);
+        grafo.agregarArista(c, b, 1.5, 60, true);
+        SistemaAerolinea triangulo = new SistemaAerolinea(grafo);
+        triangulo.setConfiguracionCabina(new ConfiguracionCabina(new String[]{"A"}, new int[]{2}));
+        return triangulo;
+    }
+
+    @Test
+    void cancelaUnItinerarioConElCodigoEnMinusculasYConEspacios() {
+        // Buenos Aires -> Santa Cruz no tiene vuelo directo: dos tramos
+        List<Reserva> reservas = sistema.realizarReserva(ciudad("AEP"), ciudad("RGL"));
+        assertEquals(2, reservas.size());
+        String codigo = "  " + reservas.get(0).getCodigoReserva().toLowerCase() + " ";
+
+        assertEquals(2, sistema.getItinerario(codigo).size());
+        assertEquals(2, sistema.cancelarItinerario(codigo));
+        for (Reserva reserva : reservas) {
+            assertNull(sistema.getReserva(reserva.getCodigoReserva()));
+            Vuelo vuelo = sistema.getVuelo(reserva.getCodigoVuelo());
+            assertEquals(0, vuelo.getAvion().getTotalOcupados());
+            assertEquals(0, vuelo.getReservas().tamano());
+        }
+        assertEquals(0, sistema.cancelarItinerario(codigo));
+    }
+
+    @Test
+    void cancelaUnaReservaConElCodigoSinNormalizar() {
+        Reserva reserva = sistema.realizarReserva(ciudad("AEP"), ciudad("COR")).get(0);
+        String codigo = " " + reserva.getCodigoReserva().toLowerCase();
+
+        assertSame(reserva, sistema.getReserva(codigo));
+        assertTrue(sistema.cancelarReserva(codigo));
+        assertFalse(sistema.cancelarReserva(codigo));
+        assertNull(sistema.getReserva(reserva.getCodigoReserva()));
+    }
+
+    @Test
+    void cancelarUnTramoDejaElRestoDelItinerario() {
+        List<Reserva> reservas = sistema.realizarReserva(ciudad("AEP"), ciudad("RGL"));
+        assertTrue(sistema.cancelarReserva(reservas.get(1).getCodigoReserva()));
+
+        List<Reserva> vigentes = sistema.getItinerario(reservas.get(0).getCodigoReserva());
+        assertEquals(List.of(reservas.get(0)), vigentes);
+        assertEquals(1, sistema.cancelarItinerario(reservas.get(0).getCodigoReserva()));
+    }
+
+    @Test
+    void codigosInvalidosNoCancelanNada() {
+        sistema.realizarReserva(ciudad("AEP"), ciudad("COR"));
+        assertFalse(sistema.cancelarReserva(null));
+        assertFalse(sistema.cancelarReserva("VUELO-0001"));
+        assertEquals(0, sistema.cancelarItinerario(null));
+        assertEquals(0, sistema.cancelarItinerario("RES-999999"));
+    }
+
+    @Test
+    void cadaSistemaNumeraSusReservas() {
+        String primera = sistema.realizarReserva(ciudad("AEP"), ciudad("COR")).get(0).getCodigoReserva();
+        sistema.realizarReserva(ciudad("AEP"), ciudad("COR"));
+
+        SistemaAerolinea otro = new SistemaAerolinea();
+        Ciudad origen = otro.getGrafo().getCiudadPorNombre("AEP");
+        Ciudad destino = otro.getGrafo().getCiudadPorNombre("COR");
+        assertEquals(primera, otro.realizarReserva(origen, destino).get(0).getCodigoReserva());
+    }
+
+    @Test
+    void alRecuperarSigueLaNumeracionDelSnapshotYElRegistro(@TempDir Path carpeta) throws IOException {
+        Path snapshot = carpeta.resolve("sistema.snap");
+        Path registro = carpeta.resolve("cambios.wal");
+        SistemaAerolinea antes = SistemaAerolinea.recuperar(snapshot, registro);
+        Ciudad origen = antes.getGrafo().getCiudadPorNombre("AEP");
+        Ciudad destino = antes.getGrafo().getCiudadPorNombre("COR");
+        for (int i = 0; i < 3; i++) {
+            antes.realizarReserva(origen, destino);
+        }
+        antes.guardarSnapshot(snapshot);
+        String ultima = null;
+        for (int i = 0; i < 2; i++) {
+            ultima = antes.realizarReserva(origen, destino).get(0).getCodigoReserva();
+        }
+        antes.cerrar();
+
+        // Otro sistema en la misma JVM no corre la numeración del recuperado
+        sistema.realizarReserva(ciudad("AEP"), ciudad("COR"));
+
+        SistemaAerolinea despues = SistemaAerolinea.recuperar(snapshot, registro);
+        try {
+            Ciudad o = despues.getGrafo().getCiudadPorNombre("AEP");
+            Ciudad d = despues.getGrafo().getCiudadPorNombre("COR");
+            String siguiente = despues.realizarReserva(o, d).get(0).getCodigoReserva();
+            assertEquals(Reserva.numeroDeCodigo(ultima) + 1, Reserva.numeroDeCodigo(siguiente));
+        } finally {
+            despues.cerrar();
+        }
+    }
+
+    @Test
+    void conElTramoLlenoUsaLaRutaAlternativa() {
+        SistemaAerolinea red = triangulo();
+        red.setAbrirVuelosAutomaticamente(false);
+        Ciudad a = red.getGrafo().getCiudadPorNombre("A");
+        Ciudad b = red.getGrafo().getCiudadPorNombre("B");
+        for (int i = 0; i < 2; i++) {
+            assertEquals(1, red.realizarReserva(a, b).size());
+        }
+        for (int i = 0; i < 2; i++) {
+            List<Reserva> escala = red.realizarReserva(a, b);
+            assertEquals(2, escala.size(), "Debe pasar por C");
+            assertEquals("C", escala.get(0).getDestino().getNombre());
+        }
+        assertNull(red.realizarReserva(a, b), "Sin lugar en ninguna ruta ni vuelos nuevos");
+        assertEquals(1, red.getVuelosTramo(a, b).size());
+    }
+
+    @Test
+    void abreUnVueloSoloSiNingunaRutaTieneLugar() {
+        SistemaAerolinea red = triangulo();
+        Ciudad a = red.getGrafo().getCiudadPorNombre("A");
+        Ciudad b = red.getGrafo().getCiudadPorNombre("B");
+        Ciudad c = red.getGrafo().getCiudadPorNombre("C");
+        for (int i = 0; i < 2; i++) {
+            assertEquals(1, red.realizarReserva(a, b).size());
+        }
+        for (int i = 0; i < 2; i++) {
+            assertEquals(2, red.realizarReserva(a, b).size());
+        }
+        assertEquals(1, red.getVuelosTramo(a, b).size(), "Las alternativas con lugar van antes de abrir");
+
+        // Todas llenas: un vuelo nuevo en la ruta mínima, no en la alternativa
+        assertEquals(1, red.realizarReserva(a, b).size());
+        assertEquals(2, red.getVuelosTramo(a, b).size());
+        assertEquals(1, red.getVuelosTramo(a, c).size());
+        assertEquals(1, red.getVuelosTramo(c, b).size());
+    }
+
+    @Test
+    void variosHilosNoAbrenVuelosDeMas() throws InterruptedException {
+        // Con un asiento por vuelo, el vuelo recién abierto suele llenarlo otro hilo
+        int[] capacidades = {1, 2, 5};
+        for (int ronda = 0; ronda < 30; ronda++) {
+            int capacidad = capacidades[ronda % capacidades.length];
+            Grafo grafo = new Grafo();
+            Ciudad a = new Ciudad("A");
+            Ciudad b = new Ciudad("B");
+            grafo.agregarArista(a, b, 1, 100, true);
+            SistemaAerolinea red = new SistemaAerolinea(grafo);
+            red.setConfiguracionCabina(new ConfiguracionCabina(new String[]{"A"}, new int[]{capacidad}));
+
+            int hilos = 16;
+            int porHilo = 50;
+            AtomicInteger fallidas = new AtomicInteger();
+            List<Thread> lista = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                Thread hilo = new Thread(() -> {
+                    for (int i = 0; i < porHilo; i++) {
+                        if (red.realizarReserva(a, b) == null) {
+                            fallidas.incrementAndGet();
+                        }
+                    }
+                });
+                hilo.start();
+                lista.add(hilo);
+            }
+            for (Thread hilo : lista) {
+                hilo.join();
+            }
+
+            assertEquals(0, fallidas.get(), "Capacidad " + capacidad);
+            List<Vuelo> vuelos = red.getVuelosTramo(a, b);
+            assertEquals(hilos * porHilo / capacidad, vuelos.size(),
+                    "Solo se abre un vuelo cuando los demás están llenos");
+            for (Vuelo vuelo : vuelos) {
+                assertFalse(vuelo.getAvion().hayAsientosLibres(), vuelo.getCodigoVuelo());
+            }
+        }
+    }
+
+    @Test
+    void elRegistroConVuelosAbiertosEnParaleloSePuedeRecuperar(@TempDir Path carpeta) throws Exception {
+        Path snapshot = carpeta.resolve("sistema.snap");
+        Path registro = carpeta.resolve("cambios.wal");
+        SistemaAerolinea antes = SistemaAerolinea.recuperar(snapshot, registro);
+        antes.setConfiguracionCabina(new ConfiguracionCabina(new String[]{"A"}, new int[]{1}));
+        Ciudad origen = antes.getGrafo().getCiudadPorNombre("AEP");
+        Ciudad destino = antes.getGrafo().getCiudadPorNombre("COR");
+        AtomicInteger fallidas = new AtomicInteger();
+        List<Thread> lista = new ArrayList<>();
+        for (int h = 0; h < 8; h++) {
+            Thread hilo = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    if (antes.realizarReserva(origen, destino) == null) {
+                        fallidas.incrementAndGet();
+                    }
+                }
+            });
+            hilo.start();
+            lista.add(hilo);
+        }
+        for (Thread hilo : lista) {
+            hilo.join();
+        }
+        assertEquals(0, fallidas.get());
+        int vuelos = antes.getAllVuelos().size();
+        int reservas = totalReservas(antes);
+        antes.cerrar();
+
+        // Cada reserva tiene que venir después del alta de su vuelo
+        SistemaAerolinea despues = SistemaAerolinea.recuperar(snapshot, registro);
+        try {
+            assertEquals(vuelos, despues.getAllVuelos().size());
+            assertEquals(reservas, totalReservas(despues));
+        } finally {
+            despues.cerrar();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.siglo21.avion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Muchos hilos toman y liberan asientos del mismo avión a la vez
+ */
+class AvionConcurrenciaTest {
+
+    private static final int HILOS = 32;
+
+    // Capacidades que no son múltiplos de 64: secciones que comparten el borde de una palabra
+    private static final ConfiguracionCabina CABINA = new ConfiguracionCabina(
+            new String[]{"A", "B", "C", "DX"}, new int[]{70, 130, 5, 64});
+
+    /**
+     * Corre la tarea en HILOS hilos que arrancan juntos y relanza el primer error
+     */
+    private static void enParalelo(Runnable tarea) throws InterruptedException {
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> hilos = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    largada.await();
+                    tarea.run();
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            hilo.start();
+            hilos.add(hilo);
+        }
+        largada.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        if (error.get() != null) {
+            fail(error.get());
+        }
+    }
+
+    /**
+     * Mapa de ocupación con el formato de getMapaOcupacion para esos asientos
+     */
+    private static long[] mapaEsperado(Map<String, Asiento> asientos) {
+        long[] mapa = new long[(CABINA.getTotalAsientos() + 63) / 64];
+        int base = 0;
+        for (int s = 0; s < CABINA.getCantidadSecciones(); s++) {
+            for (int numero = 1; numero <= CABINA.getCapacidad(s); numero++) {
+                if (asientos.containsKey(CABINA.getNombre(s) + numero)) {
+                    int bit = base + numero - 1;
+                    mapa[bit >>> 6] |= 1L << bit;
+                }
+            }
+            base += CABINA.getCapacidad(s);
+        }
+        return mapa;
+    }
+
+    /**
+     * Compara contadores, mapa de ocupación y asientos uno por uno con los
+     * asientos que los hilos dicen tener (ninguno retenido)
+     */
+    private static void verificar(Avion avion, Map<String, Asiento> tomados) {
+        int[] porSeccion = new int[CABINA.getCantidadSecciones()];
+        for (int s = 0; s < CABINA.getCantidadSecciones(); s++) {
+            for (int numero = 1; numero <= CABINA.getCapacidad(s); numero++) {
+                String etiqueta = CABINA.getNombre(s) + numero;
+                boolean tomado = tomados.containsKey(etiqueta);
+                assertEquals(tomado, avion.isAsientoOcupado(etiqueta), etiqueta);
+                if (tomado) {
+                    porSeccion[s]++;
+                }
+            }
+        }
+
+        long[] mapa = avion.getMapaOcupacion();
+        assertArrayEquals(mapaEsperado(tomados), mapa);
+        int popcount = 0;
+        for (long palabra : mapa) {
+            popcount += Long.bitCount(palabra);
+        }
+        assertEquals(tomados.size(), popcount);
+        assertEquals(popcount, avion.getTotalOcupados());
+        for (int s = 0; s < porSeccion.length; s++) {
+            assertEquals(porSeccion[s], avion.getOcupacionSeccion(s), CABINA.getNombre(s));
+        }
+        assertEquals(tomados.size() < CABINA.getTotalAsientos(), avion.hayAsientosLibres());
+    }
+
+    @Test
+    void ningunAsientoSeEntregaDosVecesAlLlenar() throws InterruptedException {
+        for (int ronda = 0; ronda < 50; ronda++) {
+            Avion avion = new Avion(CABINA);
+            Map<String, Asiento> tomados = new ConcurrentHashMap<>();
+            enParalelo(() -> {
+                Asiento asiento;
+                while ((asiento = avion.asignarAsiento()) != null) {
+                    assertNull(tomados.putIfAbsent(asiento.toString(), asiento), "Asiento repetido: " + asiento);
+                }
+            });
+            assertEquals(CABINA.getTotalAsientos(), tomados.size());
+            assertNull(avion.asignarAsiento());
+            verificar(avion, tomados);
+        }
+    }
+
+    @Test
+    void tomarYLiberarAlMismoTiempo() throws InterruptedException {
+        Avion avion = new Avion(CABINA);
+        Map<String, Asiento> tomados = new ConcurrentHashMap<>();
+        enParalelo(() -> {
+            ThreadLocalRandom azar = ThreadLocalRandom.current();
+            List<Asiento> propios = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                if (propios.isEmpty() || azar.nextInt(100) < 55) {
+                    Asiento asiento = avion.asignarAsiento();
+                    if (asiento != null) {
+                        assertNull(tomados.putIfAbsent(asiento.toString(), asiento), "Asiento repetido: " + asiento);
+                        propios.add(asiento);
+                    }
+                } else {
+                    // Se deja de reclamar antes de liberar: otro hilo puede tomarlo enseguida
+                    Asiento asiento = propios.remove(azar.nextInt(propios.size()));
+                    assertNotNull(tomados.remove(asiento.toString()));
+                    avion.liberarAsiento(asiento.toString());
+                }
+            }
+        });
+        verificar(avion, tomados);
+
+        // Lo que quedó libre se puede volver a tomar hasta llenar, sin repetir
+        Asiento asiento;
+        while ((asiento = avion.asignarAsiento()) != null) {
+            assertNull(tomados.putIfAbsent(asiento.toString(), asiento), "Asiento repetido: " + asiento);
+        }
+        assertEquals(CABINA.getTotalAsientos(), tomados.size());
+        verificar(avion, tomados);
+    }
+
+    @Test
+    void retencionesConcurrentesQuedanFueraDelMapa() throws InterruptedException {
+        Avion avion = new Avion(CABINA);
+        Map<String, Asiento> vendidos = new ConcurrentHashMap<>();
+        Map<String, Asiento> retenidos = new ConcurrentHashMap<>();
+        enParalelo(() -> {
+            ThreadLocalRandom azar = ThreadLocalRandom.current();
+            List<Asiento> propios = new ArrayList<>();
+            for (int i = 0; i < 5_000; i++) {
+                if (propios.isEmpty() || azar.nextBoolean()) {
+                    Asiento asiento = avion.retenerAsiento();
+                    if (asiento != null) {
+                        assertNull(retenidos.putIfAbsent(asiento.toString(), asiento));
+                        assertFalse(vendidos.containsKey(asiento.toString()));
+                        propios.add(asiento);
+                    }
+                    continue;
+                }
+                Asiento asiento = propios.remove(azar.nextInt(propios.size()));
+                assertNotNull(retenidos.remove(asiento.toString()));
+                if (azar.nextBoolean()) {
+                    assertNull(vendidos.putIfAbsent(asiento.toString(), asiento));
+                    assertTrue(avion.confirmarAsiento(asiento.toString()));
+                } else {
+                    assertTrue(avion.liberarRetencion(asiento.toString()));
+                }
+            }
+        });
+
+        assertEquals(retenidos.size(), avion.getTotalRetenidos());
+        assertEquals(vendidos.size() + retenidos.size(), avion.getTotalOcupados());
+        for (String etiqueta : retenidos.keySet()) {
+            assertTrue(avion.isAsientoRetenido(etiqueta));
+        }
+        // El mapa solo tiene los vendidos; al liberar las retenciones coincide todo
+        assertArrayEquals(mapaEsperado(vendidos), avion.getMapaOcupacion());
+        for (String etiqueta : retenidos.keySet()) {
+            assertTrue(avion.liberarRetencion(etiqueta));
+        }
+        assertEquals(0, avion.getTotalRetenidos());
+        verificar(avion, vendidos);
+    }
+}
@@ -0,0 +1,189 @@
+package org.siglo21.grafo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara las rutas de la jerarquía de contracción con las de Dijkstra
+ */
+class JerarquiaContraccionTest {
+
+    /**
+     * Red aleatoria con tiempos en centésimas de hora y precios en centavos,
+     * con aristas paralelas y ciudades sin salida
+     */
+    private static Grafo grafoAleatorio(Random azar, int ciudades, int aristas, double escalaTiempo) {
+        Grafo grafo = new Grafo();
+        List<Ciudad> lista = new ArrayList<>();
+        for (int i = 0; i < ciudades; i++) {
+            Ciudad ciudad = new Ciudad("C" + i);
+            lista.add(ciudad);
+            grafo.agregarCiudad(ciudad);
+        }
+        for (int k = 0; k < aristas; k++) {
+            Ciudad origen = lista.get(azar.nextInt(ciudades));
+            Ciudad destino = lista.get(azar.nextInt(ciudades));
+            double tiempo = (1 + azar.nextInt(1200)) / 100.0 * escalaTiempo;
+            double precio = (100 + azar.nextInt(90000)) / 100.0;
+            grafo.agregarArista(origen, destino, tiempo, precio, azar.nextBoolean());
+        }
+        return grafo;
+    }
+
+    private static void compararTodosLosPares(GrafoCompilado g, JerarquiaContraccion jerarquia) {
+        int n = g.getCantidadCiudades();
+        for (int s = 0; s < n; s++) {
+            for (int t = 0; t < n; t++) {
+                Ciudad origen = g.getCiudad(s);
+                Ciudad destino = g.getCiudad(t);
+                Itinerario esperado = MotorDijkstra.rutaMinima(g, origen, destino);
+                Itinerario obtenido = jerarquia.rutaMinima(origen, destino);
+                String par = origen + " -> " + destino;
+                if (esperado == null) {
+                    assertNull(obtenido, par);
+                    continue;
+                }
+                assertNotNull(obtenido, par);
+                assertEquals(esperado.getTiempoTotal(), obtenido.getTiempoTotal(),
+                        1e-9 * Math.max(1, esperado.getTiempoTotal()), par);
+                // Dijkstra compara sumas en double: entre dos rutas del mismo tiempo puede
+                // quedarse con la que el redondeo hace apenas más rápida; la jerarquía
+                // suma enteros, ve el empate y elige la más barata
+                assertTrue(obtenido.getPrecioBaseTotal() <= esperado.getPrecioBaseTotal() + 1e-6, par);
+                verificarCamino(obtenido, origen, destino);
+            }
+        }
+    }
+
+    /**
+     * El itinerario expandido encadena aristas reales del origen al destino
+     */
+    private static void verificarCamino(Itinerario itinerario, Ciudad origen, Ciudad destino) {
+        List<Ciudad> ciudades = itinerario.getCiudades();
+        assertEquals(origen, ciudades.get(0));
+        assertEquals(destino, ciudades.get(ciudades.size() - 1));
+        assertEquals(itinerario.getAristas().size(), ciudades.size() - 1);
+        double tiempo = 0;
+        for (int i = 0; i < itinerario.getAristas().size(); i++) {
+            assertEquals(ciudades.get(i + 1), itinerario.getAristas().get(i).getDestino());
+            tiempo += itinerario.getAristas().get(i).getTiempo();
+        }
+        assertEquals(itinerario.getTiempoTotal(), tiempo, 1e-9 * Math.max(1, tiempo));
+    }
+
+    @Test
+    void coincideConDijkstraEnRedesAleatorias() {
+        Random azar = new Random(20240611L);
+        for (int ronda = 0; ronda < 30; ronda++) {
+            int ciudades = 5 + azar.nextInt(60);
+            int aristas = ciudades + azar.nextInt(ciudades * 4);
+            GrafoCompilado g = grafoAleatorio(azar, ciudades, aristas, 1).getCompilado();
+            compararTodosLosPares(g, JerarquiaContraccion.construir(g, ronda % 2 == 0));
+        }
+    }
+
+    @Test
+    void coincideConDijkstraConPesosEnormes() {
+        // Con la escala fija de 1e9 estas sumas pasaban de 2^53 y dejaban de ser exactas
+        Random azar = new Random(7L);
+        GrafoCompilado g = grafoAleatorio(azar, 50, 250, 1e6).getCompilado();
+        compararTodosLosPares(g, JerarquiaContraccion.construir(g));
+    }
+
+    @Test
+    void desempataPorPrecio() {
+        Grafo grafo = new Grafo();
+        Ciudad a = new Ciudad("A");
+        Ciudad b = new Ciudad("B");
+        Ciudad c = new Ciudad("C");
+        grafo.agregarArista(a, b, 1.5, 100, false);
+        grafo.agregarArista(b, c, 1.5, 100, false);
+        grafo.agregarArista(a, c, 3.0, 150, true);
+
+        Itinerario ruta = grafo.dijkstra(a, c, ModoRuteo.JERARQUIA);
+        assertEquals(1, ruta.getAristas().size());
+        assertEquals(150, ruta.getPrecioBaseTotal(), 1e-9);
+    }
+
+    @Test
+    void seReconstruyeConCadaCambioDelGrafo() {
+        Grafo grafo = new Grafo();
+        Ciudad a = new Ciudad("A");
+        Ciudad b = new Ciudad("B");
+        Ciudad c = new Ciudad("C");
+        grafo.agregarArista(a, b, 2, 100, true);
+        grafo.agregarArista(b, c, 2, 100, true);
+
+        JerarquiaContraccion antes = grafo.getCompilado().getJerarquia();
+        assertSame(antes, grafo.getCompilado().getJerarquia());
+        assertEquals(4, grafo.dijkstra(a, c, ModoRuteo.JERARQUIA).getTiempoTotal(), 1e-9);
+
+        grafo.agregarArista(a, c, 3, 500, true);
+        assertNotSame(antes, grafo.getCompilado().getJerarquia());
+        assertEquals(3, grafo.dijkstra(a, c, ModoRuteo.JERARQUIA).getTiempoTotal(), 1e-9);
+
+        Ciudad d = new Ciudad("D");
+        assertNull(grafo.dijkstra(a, d, ModoRuteo.JERARQUIA));
+        grafo.agregarArista(c, d, 1, 10, true);
+        assertEquals(4, grafo.dijkstra(a, d, ModoRuteo.JERARQUIA).getTiempoTotal(), 1e-9);
+    }
+
+    @Test
+    void guardarYCargarDaLasMismasRutas(@TempDir Path carpeta) throws IOException {
+        GrafoCompilado g = grafoAleatorio(new Random(3L), 40, 160, 1).getCompilado();
+        Path archivo = carpeta.resolve("jerarquia.bin");
+        JerarquiaContraccion.construir(g).guardar(archivo);
+        compararTodosLosPares(g, JerarquiaContraccion.cargar(archivo, g));
+    }
+
+    @Test
+    void laJerarquiaCargadaSeUsaEnLasConsultas(@TempDir Path carpeta) throws IOException {
+        Path archivo = carpeta.resolve("jerarquia.bin");
+        grafoAleatorio(new Random(11L), 30, 120, 1).guardarJerarquia(archivo);
+
+        // Misma red armada de nuevo (por ejemplo, al reiniciar)
+        Grafo grafo = grafoAleatorio(new Random(11L), 30, 120, 1);
+        GrafoCompilado g = grafo.getCompilado();
+        JerarquiaContraccion cargada = JerarquiaContraccion.cargar(archivo, g);
+        g.instalarJerarquia(cargada);
+        assertSame(cargada, g.getJerarquia());
+        compararTodosLosPares(g, g.getJerarquia());
+
+        grafo.cargarJerarquia(archivo);
+        assertNotSame(cargada, grafo.getCompilado().getJerarquia());
+        Ciudad origen = g.getCiudad(0);
+        Ciudad destino = g.getCiudad(29);
+        Itinerario esperado = grafo.dijkstra(origen, destino);
+        Itinerario obtenido = grafo.dijkstra(origen, destino, ModoRuteo.JERARQUIA);
+        assertEquals(esperado == null, obtenido == null);
+
+        // Después de un cambio la vista es otra: se vuelve a construir
+        grafo.agregarArista(origen, destino, 0.01, 1, true);
+        assertEquals(0.01, grafo.dijkstra(origen, destino, ModoRuteo.JERARQUIA).getTiempoTotal(), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> grafo.getCompilado().instalarJerarquia(cargada));
+    }
+
+    @Test
+    void noCargaLaJerarquiaDeOtraRed(@TempDir Path carpeta) throws IOException {
+        Path archivo = carpeta.resolve("jerarquia.bin");
+        grafoAleatorio(new Random(5L), 20, 80, 1).guardarJerarquia(archivo);
+        // Mismas cantidades de ciudades y aristas, otros pesos
+        Grafo otra = grafoAleatorio(new Random(5L), 20, 80, 2);
+        assertThrows(IOException.class, () -> otra.cargarJerarquia(archivo));
+    }
+
+    @Test
+    void rechazaPesosNegativos() {
+        Grafo grafo = new Grafo();
+        grafo.agregarArista(new Ciudad("A"), new Ciudad("B"), -1, 100, true);
+        assertThrows(IllegalArgumentException.class, () -> JerarquiaContraccion.construir(grafo.getCompilado()));
+    }
+}
@@ -0,0 +1,240 @@
+package org.siglo21.persistencia;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recuperación del registro de cambios después de una caída
+ */
+class RegistroCambiosTest {
+
+    /**
+     * Escribe cancelaciones desde varios hilos y anota cada secuencia en el
+     * archivo de confirmadas (un long por escritura) después de que esperar()
+     * confirma que está en disco. Corre en un proceso aparte para poder
+     * matarlo en cualquier momento.
+     */
+    public static final class Escritor {
+        public static void main(String[] args) throws Exception {
+            RegistroCambios registro = new RegistroCambios(Path.of(args[0]), 0);
+            FileChannel confirmadas = FileChannel.open(Path.of(args[1]), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            List<Thread> hilos = new ArrayList<>();
+            for (int h = 0; h < 4; h++) {
+                int hilo = h;
+                Thread t = new Thread(() -> {
+                    ByteBuffer buffer = ByteBuffer.allocate(8);
+                    for (int i = 0; ; i++) {
+                        long secuencia = registro.cancelacion("RES-" + hilo + "-" + i);
+                        registro.esperar(secuencia);
+                        buffer.clear();
+                        buffer.putLong(secuencia).flip();
+                        try {
+                            confirmadas.write(buffer);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+                t.start();
+                hilos.add(t);
+            }
+            for (Thread t : hilos) {
+                t.join();
+            }
+        }
+    }
+
+    /**
+     * Secuencias anotadas por el escritor; un long cortado por la muerte del proceso no cuenta
+     */
+    private static Set<Long> leerConfirmadas(Path archivo) throws IOException {
+        Set<Long> confirmadas = new HashSet<>();
+        if (!Files.exists(archivo)) {
+            return confirmadas;
+        }
+        ByteBuffer datos = ByteBuffer.wrap(Files.readAllBytes(archivo));
+        while (datos.remaining() >= 8) {
+            confirmadas.add(datos.getLong());
+        }
+        return confirmadas;
+    }
+
+    private static List<EventoRegistro> reproducir(Path archivo, long desde) throws IOException {
+        List<EventoRegistro> eventos = new ArrayList<>();
+        RegistroCambios.reproducir(archivo, desde, eventos::add);
+        return eventos;
+    }
+
+    private static void escribir(Path archivo, long desde, int cantidad) throws IOException {
+        try (RegistroCambios registro = new RegistroCambios(archivo, desde)) {
+            long ultima = 0;
+            for (int i = 0; i < cantidad; i++) {
+                ultima = registro.cancelacion("RES-" + (desde + i + 1));
+            }
+            registro.esperar(ultima);
+        }
+    }
+
+    private static void verificarSecuencias(List<EventoRegistro> eventos, long primera) {
+        for (int i = 0; i < eventos.size(); i++) {
+            assertEquals(primera + i, eventos.get(i).getSecuencia());
+            assertEquals(EventoRegistro.Tipo.CANCELACION, eventos.get(i).getTipo());
+            assertEquals("RES-" + (primera + i), eventos.get(i).getCodigoReserva());
+        }
+    }
+
+    @Test
+    void conservaTodoLoConfirmadoAlMatarElProceso(@TempDir Path carpeta) throws Exception {
+        Path archivo = carpeta.resolve("cambios.wal");
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Path archivoConfirmadas = carpeta.resolve("confirmadas.bin");
+        for (int ronda = 0; ronda < 3; ronda++) {
+            Files.deleteIfExists(archivo);
+            Files.deleteIfExists(archivoConfirmadas);
+            Process proceso = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                    Escritor.class.getName(), archivo.toString(), archivoConfirmadas.toString())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+
+            // Muere con tandas a medio volcar y registros que todavía no se sincronizaron
+            long objetivo = 8L * (2000 + 1500 * ronda);
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (proceso.isAlive() && System.nanoTime() < limite
+                    && (!Files.exists(archivoConfirmadas) || Files.size(archivoConfirmadas) < objetivo)) {
+                Thread.sleep(1);
+            }
+            assertTrue(proceso.isAlive(), "El escritor terminó antes de matarlo");
+            proceso.destroyForcibly();
+            assertTrue(proceso.waitFor(30, TimeUnit.SECONDS));
+
+            Set<Long> confirmadas = leerConfirmadas(archivoConfirmadas);
+            assertFalse(confirmadas.isEmpty(), "El escritor no confirmó ningún registro");
+
+            List<EventoRegistro> eventos = reproducir(archivo, 0);
+            Set<Long> reproducidas = new HashSet<>();
+            for (int i = 0; i < eventos.size(); i++) {
+                assertEquals(i + 1, eventos.get(i).getSecuencia(), "Secuencias sin huecos");
+                reproducidas.add(eventos.get(i).getSecuencia());
+            }
+            for (long secuencia : confirmadas) {
+                assertTrue(reproducidas.contains(secuencia), "Se perdió la secuencia confirmada " + secuencia);
+            }
+
+            // El archivo quedó cortado en un registro completo: se puede seguir agregando
+            long ultima = eventos.size();
+            try (RegistroCambios registro = new RegistroCambios(archivo, ultima)) {
+                registro.esperar(registro.cancelacion("RES-NUEVA"));
+            }
+            List<EventoRegistro> despues = reproducir(archivo, ultima);
+            assertEquals(1, despues.size());
+            assertEquals(ultima + 1, despues.get(0).getSecuencia());
+        }
+    }
+
+    @Test
+    void descartaElUltimoRegistroIncompleto(@TempDir Path carpeta) throws IOException {
+        Path archivo = carpeta.resolve("cambios.wal");
+        escribir(archivo, 0, 50);
+        long completo = Files.size(archivo);
+        escribir(archivo, 50, 1);
+        long conUltimo = Files.size(archivo);
+
+        // Cortar el último registro en cada posición posible, encabezado incluido
+        for (long corte = completo + 1; corte < conUltimo; corte++) {
+            Path copia = carpeta.resolve("copia.wal");
+            Files.copy(archivo, copia, StandardCopyOption.REPLACE_EXISTING);
+            try (RandomAccessFile raf = new RandomAccessFile(copia.toFile(), "rw")) {
+                raf.setLength(corte);
+            }
+            List<EventoRegistro> eventos = reproducir(copia, 0);
+            assertEquals(50, eventos.size(), "Corte en " + corte);
+            verificarSecuencias(eventos, 1);
+            assertEquals(completo, Files.size(copia), "Se trunca en el último registro válido");
+        }
+    }
+
+    @Test
+    void cortaEnElPrimerCrcInvalido(@TempDir Path carpeta) throws IOException {
+        Path archivo = carpeta.resolve("cambios.wal");
+        escribir(archivo, 0, 10);
+        // Dañar un byte de los datos del sexto registro (después de largo, crc, secuencia y tipo)
+        long hastaCinco = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(archivo.toFile(), "rw")) {
+            for (int i = 0; i < 5; i++) {
+                raf.seek(hastaCinco);
+                hastaCinco += 8 + raf.readInt();
+            }
+            long posicion = hastaCinco + 8 + 8 + 1 + 4;
+            raf.seek(posicion);
+            int b = raf.read();
+            raf.seek(posicion);
+            raf.write(b ^ 0x40);
+        }
+        List<EventoRegistro> eventos = reproducir(archivo, 0);
+        assertEquals(5, eventos.size(), "Los registros posteriores al dañado no se aplican");
+        verificarSecuencias(eventos, 1);
+        assertEquals(hastaCinco, Files.size(archivo));
+    }
+
+    @Test
+    void ignoraBasuraConLargoInvalido(@TempDir Path carpeta) throws IOException {
+        Path archivo = carpeta.resolve("cambios.wal");
+        escribir(archivo, 0, 3);
+        long valido = Files.size(archivo);
+        Files.write(archivo, new byte[]{0x7f, 0x7f, 0x7f, 0x7f, 1, 2, 3, 4, 5, 6, 7, 8},
+                StandardOpenOption.APPEND);
+        assertEquals(3, reproducir(archivo, 0).size());
+        assertEquals(valido, Files.size(archivo));
+    }
+
+    @Test
+    void descartarHastaVaciaSoloSiElSnapshotCubreTodo(@TempDir Path carpeta) throws IOException {
+        Path archivo = carpeta.resolve("cambios.wal");
+        try (RegistroCambios registro = new RegistroCambios(archivo, 0)) {
+            for (int i = 1; i <= 10; i++) {
+                registro.cancelacion("RES-" + i);
+            }
+            // Un snapshot hasta la 7 no cubre todo: el archivo queda como está
+            registro.descartarHasta(7);
+            assertEquals(10, reproducir(archivo, 0).size());
+
+            registro.descartarHasta(10);
+            assertEquals(0, Files.size(archivo));
+
+            registro.esperar(registro.cancelacion("RES-11"));
+        }
+        List<EventoRegistro> eventos = reproducir(archivo, 10);
+        assertEquals(1, eventos.size());
+        verificarSecuencias(eventos, 11);
+    }
+
+    @Test
+    void salteaLoIncluidoEnElSnapshot(@TempDir Path carpeta) throws IOException {
+        Path archivo = carpeta.resolve("cambios.wal");
+        escribir(archivo, 0, 20);
+        List<EventoRegistro> eventos = new ArrayList<>();
+        assertEquals(20, RegistroCambios.reproducir(archivo, 12, eventos::add));
+        assertEquals(8, eventos.size());
+        verificarSecuencias(eventos, 13);
+        assertEquals(7, RegistroCambios.reproducir(carpeta.resolve("no-existe.wal"), 7, e -> fail()));
+    }
+}